@@ -4,6 +4,8 @@
 
 package ataxx;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 
@@ -18,11 +20,22 @@ class AI extends Player {
 
     /** Maximum minimax search depth before going to static evaluation. */
     private static final int MAX_DEPTH = 4;
+    /** Deepest search tried when the number of nodes is limited. */
+    private static final int MAX_LIMITED_DEPTH = 32;
+    /** A timed or interruptible search checks the time and for requests
+     *  to stop whenever the number of nodes it has visited, masked with
+     *  this value, is 0. */
+    private static final long TIME_CHECK_MASK = 0x3ff;
     /** A position magnitude indicating a win (for red if positive, blue
-     *  if negative). */
-    private static final int WINNING_VALUE = Integer.MAX_VALUE - 20;
+     *  if negative).  Leaves room for adding any search depth without
+     *  reaching INFTY. */
+    private static final int WINNING_VALUE =
+        Integer.MAX_VALUE - MAX_LIMITED_DEPTH - 1;
     /** A magnitude greater than a normal value. */
     private static final int INFTY = Integer.MAX_VALUE;
+    /** Number of distinct move codes (see Move.code). */
+    private static final int MOVE_CODES = Board.EXTENDED_SIDE
+        * Board.EXTENDED_SIDE * Board.EXTENDED_SIDE * Board.EXTENDED_SIDE;
 
     /** A new AI for GAME that will play MYCOLOR. SEED is used to initialize
      *  a random-number generator for use in move computations.  Identical
@@ -30,6 +43,18 @@ class AI extends Player {
     AI(Game game, PieceColor myColor, long seed) {
         super(game, myColor);
         _random = new Random(seed);
+        _network = _defaultNetwork;
+        _accumulator = _network.newAccumulator();
+    }
+
+    /** Make NETWORK the evaluator of AIs created from now on. */
+    static void setNetwork(Network network) {
+        _defaultNetwork = network;
+    }
+
+    /** Return the evaluator given to new AIs. */
+    static Network network() {
+        return _defaultNetwork;
     }
 
     @Override
@@ -37,52 +62,294 @@ class AI extends Player {
         return true;
     }
 
+    @Override
+    void reseed(long seed) {
+        _random = new Random(seed);
+        if (_history != null) {
+            for (int[] history : _history) {
+                Arrays.fill(history, 0);
+            }
+        }
+    }
+
     @Override
     String getMove() {
         if (!getBoard().canMove(myColor())) {
             game().reportMove(Move.pass(), myColor());
             return "-";
         }
-        Main.startTiming();
+        game().timing().start();
         Move move = findMove();
-        Main.endTiming();
+        game().timing().end(_nodes);
+        if (cancelled()) {
+            return "manual " + myColor().toString().toLowerCase();
+        }
         game().reportMove(move, myColor());
         return move.toString();
     }
 
     /** Return a move for me from the current position, assuming there
-     *  is a move. */
-    private Move findMove() {
-        Board b = new Board(getBoard());
-        _lastFoundMove = null;
-        if (myColor() == RED) {
-            minMax(b, MAX_DEPTH, true, 1, -INFTY, INFTY);
+     *  is a move.  The transposition table (which belongs to my game, and
+     *  may be saved and reloaded with it) and history scores are kept
+     *  from earlier calls, so that work done on previous moves (or before
+     *  an undo) is reused.  The value of the position found by the search
+     *  is available afterwards from lastScore().
+     *
+     *  Normally, searches to MAX_DEPTH.  If my game has a node limit (see
+     *  Game.nodeLimit), instead searches to depths 1, 2, ... until a
+     *  search visits more than that many nodes, and returns the result of
+     *  the deepest search completed.  The depth-1 search always
+     *  completes.
+     *
+     *  If my game has a search listener (see Game.searchListener), the
+     *  search always proceeds by increasing depths, reporting each to the
+     *  listener, and after depth 1 it also stops early, with the result
+     *  of the deepest search completed, if asked to (see stop).  If that
+     *  request was to cancel, getMove returns a command making my side
+     *  manual instead of a move.
+     *
+     *  If my game has no node limit but has clocks running (see
+     *  Game.clock), instead searches to increasing depths for as long as
+     *  a TimeManager allows, given the time left on my clock. */
+    Move findMove() {
+        long limit = game().nodeLimit();
+        Clock clock = game().clock();
+        if (limit == 0 && clock != null) {
+            TimeManager time =
+                new TimeManager(clock.remaining(myColor()), clock.increment(),
+                                getBoard().numPieces(EMPTY));
+            return search(getBoard(), MAX_LIMITED_DEPTH, 0, time.hardMillis(),
+                          game().searchListener(), time);
+        }
+        return search(getBoard(), limit == 0 ? MAX_DEPTH : MAX_LIMITED_DEPTH,
+                      limit, 0, game().searchListener(), null);
+    }
+
+    /** Return a move for the player to move on BOARD, which must have a
+     *  move, found by searching to DEPTH, whatever node limit my game
+     *  has.  Otherwise as for findMove(). */
+    Move findMove(Board board, int depth) {
+        return search(board, depth, 0, 0, null, null);
+    }
+
+    /** Return a move for the player to move on BOARD, which must have a
+     *  move, found by searching to increasing depths until more than
+     *  NODELIMIT nodes have been visited or MILLIS milliseconds have
+     *  passed (no limit if 0; at least one must be positive).  Reports
+     *  the result of each completed depth to LISTENER, if it is not
+     *  null.  Otherwise as for findMove(). */
+    Move findMove(Board board, long nodeLimit, long millis,
+                  Listener listener) {
+        return search(board, MAX_LIMITED_DEPTH, nodeLimit, millis, listener,
+                      null);
+    }
+
+    /** Receives progress reports from searches.  Its methods are called
+     *  on the searching thread. */
+    interface Listener {
+        /** Report that a search for a move from POSITION has started. */
+        default void searchStarted(Snapshot position) {
+        }
+
+        /** Report that the search to DEPTH has finished, having visited
+         *  NODES nodes in all so far, with MOVE as the best move and
+         *  SCORE (positive if good for red) as its value.  PV is the
+         *  principal variation: MOVE and the best replies to it found
+         *  by the search. */
+        void iteration(int depth, Move move, int score, long nodes,
+                       List<Move> pv);
+
+        /** Report that the search has finished, choosing MOVE. */
+        default void searchFinished(Move move) {
+        }
+    }
+
+    /** Return a description of the position value SCORE, which is
+     *  positive if good for red, for display to a user. */
+    static String describeScore(int score) {
+        if (score >= WINNING_VALUE) {
+            return "Red wins";
+        } else if (score <= -WINNING_VALUE) {
+            return "Blue wins";
         } else {
-            minMax(b, MAX_DEPTH, true, -1, -INFTY, INFTY);
+            return String.format("%+d", score);
+        }
+    }
+
+    /** Return a move for the player to move on BOARD.  If NODELIMIT and
+     *  MILLIS are both 0, searches to DEPTH.  Otherwise, searches to
+     *  increasing depths up to DEPTH until more than NODELIMIT nodes have
+     *  been visited or MILLIS milliseconds have passed, where a limit of
+     *  0 means none, as described for findMove and findMove(Board, long,
+     *  long, Listener).  Reports each completed depth to LISTENER, if it
+     *  is not null, and, if TIME is not null, also stops after any depth
+     *  at which TIME says to. */
+    private Move search(Board board, int depth, long nodeLimit, long millis,
+                        Listener listener, TimeManager time) {
+        Board b = new Board(board);
+        b.setAccumulator(_accumulator);
+        _lastFoundMove = null;
+        _table = game().table();
+        _table.newSearch();
+        if (_history == null) {
+            _history = new int[2][MOVE_CODES];
+        }
+        ageHistory();
+        _nodes = 0;
+        _nodeLimit = Long.MAX_VALUE;
+        _interruptible = _timed = false;
+        _stopped = false;
+        clearStop();
+        int sense = board.whoseMove() == RED ? 1 : -1;
+        if (nodeLimit == 0 && millis == 0 && listener == null) {
+            _lastScore = minMax(b, depth, true, sense, -INFTY, INFTY);
+            return _lastFoundMove;
+        }
+        if (listener != null) {
+            listener.searchStarted(board.snapshot());
+        }
+        long start = System.nanoTime();
+        _deadline = start + millis * 1_000_000;
+        Move move = null;
+        int score = 0;
+        for (int d = 1; d <= depth; d += 1) {
+            int value = minMax(b, d, true, sense, -INFTY, INFTY);
+            if (_stopped) {
+                break;
+            }
+            move = _lastFoundMove;
+            score = value;
+            if (listener != null) {
+                listener.iteration(d, move, score, _nodes,
+                                   principalVariation(b, move, d));
+            }
+            _nodeLimit = nodeLimit == 0 ? Long.MAX_VALUE : nodeLimit;
+            _timed = millis > 0;
+            _interruptible = true;
+            if (stopRequested()
+                || time != null
+                   && time.stop(move, score,
+                                (System.nanoTime() - start) / 1_000_000)) {
+                break;
+            }
+        }
+        _lastFoundMove = move;
+        _lastScore = score;
+        if (listener != null) {
+            listener.searchFinished(move);
+        }
+        return move;
+    }
+
+    /** Return the principal variation from BOARD, whose best move is
+     *  MOVE: MOVE followed by the best moves recorded in the
+     *  transposition table for the positions that follow, up to DEPTH
+     *  moves in all. */
+    private List<Move> principalVariation(Board board, Move move,
+                                          int depth) {
+        List<Move> pv = new ArrayList<>();
+        Board b = new Board(board);
+        while (move != null && b.legalMove(move) && pv.size() < depth) {
+            pv.add(move);
+            b.makeMove(move);
+            if (b.getWinner() != null) {
+                break;
+            }
+            Symmetry sym = b.canonicalSymmetry();
+            int slot = _table.find(b.key(sym));
+            move = slot < 0 ? null : sym.inverse().move(_table.move(slot));
         }
-        return _lastFoundMove;
+        return pv;
+    }
+
+    /** Return the number of positions visited by the last call to
+     *  findMove. */
+    long nodes() {
+        return _nodes;
+    }
+
+    /** Return the value (positive if good for red) that the last call to
+     *  findMove gave its position. */
+    int lastScore() {
+        return _lastScore;
     }
 
     /** The move found by the last call to the findMove method
      *  above. */
     private Move _lastFoundMove;
 
+    /** The value found by the last call to findMove. */
+    private int _lastScore;
+
+    /** Number of calls to minMax in the current search. */
+    private long _nodes;
+    /** Number of calls to minMax after which the current search stops. */
+    private long _nodeLimit;
+    /** True iff the current search stops at _deadline. */
+    private boolean _timed;
+    /** True iff the current search stops when _deadline is reached (if
+     *  _timed) or a stop is requested.  False until the depth-1 search
+     *  is complete. */
+    private boolean _interruptible;
+    /** Value of System.nanoTime() at which a timed search stops. */
+    private long _deadline;
+    /** True iff the current search has exceeded _nodeLimit or _deadline,
+     *  in which case minMax returns meaningless values and records
+     *  nothing. */
+    private boolean _stopped;
+
     /** Find a move from position BOARD and return its value, recording
      *  the move found in _foundMove iff SAVEMOVE. The move
      *  should have maximal value or have value > BETA if SENSE==1,
      *  and minimal value or value < ALPHA if SENSE==-1. Searches up to
      *  DEPTH levels.  Searching at level 0 simply returns a static estimate
      *  of the board value and does not set _foundMove. If the game is over
-     *  on BOARD, does not set _foundMove. */
+     *  on BOARD, does not set _foundMove.  If several moves have the best
+     *  value, the one saved is chosen with my random-number generator. */
     private int minMax(Board board, int depth, boolean saveMove, int sense,
                        int alpha, int beta) {
         /* We use WINNING_VALUE + depth as the winning value so as to favor
          * wins that happen sooner rather than later (depth is larger the
          * fewer moves have been made. */
+        _nodes += 1;
+        if (_nodes > _nodeLimit
+            || (_interruptible && (_nodes & TIME_CHECK_MASK) == 0
+                && (stopRequested()
+                    || _timed && System.nanoTime() - _deadline > 0))) {
+            _stopped = true;
+        }
+        if (_stopped) {
+            return 0;
+        }
         if (depth == 0 || board.getWinner() != null) {
             return staticScore(board, WINNING_VALUE + depth);
         }
 
+        Symmetry sym = board.canonicalSymmetry();
+        long key = board.key(sym);
+        Move hashMove = null;
+        int slot = _table.find(key);
+        if (slot >= 0) {
+            hashMove = sym.inverse().move(_table.move(slot));
+            if (!saveMove && _table.depth(slot) >= depth) {
+                int score = _table.score(slot);
+                switch (_table.bound(slot)) {
+                case TranspositionTable.EXACT:
+                    return score;
+                case TranspositionTable.LOWER:
+                    alpha = max(alpha, score);
+                    break;
+                default:
+                    beta = min(beta, score);
+                    break;
+                }
+                if (alpha >= beta) {
+                    return score;
+                }
+            }
+        }
+        int alpha0 = alpha, beta0 = beta;
+
         Move best = null;
         int bestScore;
         if (sense == 1) {
@@ -91,22 +358,47 @@ class AI extends Player {
             bestScore = INFTY;
         }
         List<Move> moves = board.possibleMoves(board.whoseMove());
+        if (saveMove) {
+            moves = distinctMoves(board, moves);
+        }
+        int[] history = _history[board.whoseMove() == RED ? 0 : 1];
+        moves.sort((m0, m1) -> history[m1.code()] - history[m0.code()]);
+        int hashIndex = moves.indexOf(hashMove);
+        if (hashIndex > 0) {
+            moves.set(hashIndex, moves.get(0));
+            moves.set(0, hashMove);
+        }
 
         if (moves.size() == 0) {
             bestScore = staticScore(board, WINNING_VALUE);
             best = Move.pass();
         }
 
+        /* At the root, the window is kept one wider than the best value
+         * so far, so that values equal to it are exact and ties can be
+         * broken at random. */
+        int slack = saveMove ? 1 : 0, ties = 0;
         for (Move m : moves) {
-            Board b = new Board(board);
-            b.makeMove(m);
-            int response = minMax(b, depth - 1, false, sense * -1, alpha, beta);
-            if (sense == 1) {
+            board.makeMove(m);
+            int response =
+                minMax(board, depth - 1, false, sense * -1, alpha, beta);
+            board.undo();
+            if (_stopped) {
+                return bestScore;
+            }
+            if (saveMove && response == bestScore) {
+                ties += 1;
+                if (_random.nextInt(ties) == 0) {
+                    best = m;
+                }
+            } else if (sense == 1) {
                 if (response > bestScore) {
                     bestScore = response;
                     best = m;
-                    alpha = max(alpha, bestScore);
+                    ties = 1;
+                    alpha = max(alpha, bestScore - slack);
                     if (alpha >= beta) {
+                        history[m.code()] += depth * depth;
                         break;
                     }
                 }
@@ -114,8 +406,10 @@ class AI extends Player {
                 if (response < bestScore) {
                     bestScore = response;
                     best = m;
-                    beta = min(beta, bestScore);
+                    ties = 1;
+                    beta = min(beta, bestScore + slack);
                     if (alpha >= beta) {
+                        history[m.code()] += depth * depth;
                         break;
                     }
                 }
@@ -125,11 +419,61 @@ class AI extends Player {
         if (saveMove) {
             _lastFoundMove = best;
         }
+        int bound;
+        if (bestScore <= alpha0) {
+            bound = TranspositionTable.UPPER;
+        } else if (bestScore >= beta0) {
+            bound = TranspositionTable.LOWER;
+        } else {
+            bound = TranspositionTable.EXACT;
+        }
+        _table.store(key, depth, bound, bestScore, sym.move(best));
         return bestScore;
     }
 
-    /** Return a heuristic value for BOARD.  This value is +- WINNINGVALUE in
-     *  won positions, and 0 for ties. */
+    /** Reduce all history scores, so that cutoffs found while searching
+     *  earlier moves count for less than new ones. */
+    private void ageHistory() {
+        for (int[] history : _history) {
+            for (int k = 0; k < history.length; k += 1) {
+                history[k] >>= 1;
+            }
+        }
+    }
+
+    /** Return the moves in MOVES, which are the legal moves on BOARD,
+     *  leaving out any move whose image under a symmetry of BOARD's
+     *  position (one that maps the position to itself) is an earlier
+     *  move.  Such moves lead to equivalent positions. */
+    private List<Move> distinctMoves(Board board, List<Move> moves) {
+        List<Symmetry> syms = new ArrayList<>();
+        for (Symmetry sym : Symmetry.values()) {
+            if (sym != Symmetry.IDENTITY && board.key(sym) == board.key()) {
+                syms.add(sym);
+            }
+        }
+        if (syms.isEmpty()) {
+            return moves;
+        }
+        List<Move> result = new ArrayList<>();
+        for (Move m : moves) {
+            boolean seen = false;
+            for (Symmetry sym : syms) {
+                if (result.contains(sym.move(m))) {
+                    seen = true;
+                    break;
+                }
+            }
+            if (!seen) {
+                result.add(m);
+            }
+        }
+        return result;
+    }
+
+    /** Return a heuristic value for BOARD, which must have my accumulator
+     *  attached.  This value is +- WINNINGVALUE in won positions, and 0
+     *  for ties. */
     private int staticScore(Board board, int winningValue) {
         PieceColor winner = board.getWinner();
         if (winner != null) {
@@ -139,9 +483,30 @@ class AI extends Player {
             default -> 0;
             };
         }
-        return board.redPieces() - board.bluePieces();
+        return _accumulator.evaluate();
     }
 
+    /** Search results by canonical position key, shared with the other
+     *  players of my game.  Scores are from red's point of view, so both
+     *  sides can use the same entries. */
+    private TranspositionTable _table;
+
+    /** _history[0][m] and _history[1][m] measure how often the move with
+     *  code M by red and by blue, respectively, has caused a cutoff,
+     *  weighted by depth.  Moves are tried in decreasing order of this
+     *  score.  Allocated by my first search, so that an AI that never
+     *  moves costs little. */
+    private int[][] _history;
+
+    /** The evaluator given to new AIs. */
+    private static Network _defaultNetwork = Network.material();
+
+    /** My position evaluator. */
+    private final Network _network;
+
+    /** Accumulator for _network attached to the board being searched. */
+    private final Network.Accumulator _accumulator;
+
     /** Pseudo-random number generator for move computation. */
     private Random _random = new Random();
 
@@ -0,0 +1,192 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static ataxx.PieceColor.*;
+
+/** Continuous analysis of a game's current position on a background
+ *  thread, used to give hints.  An Analyzer subscribes to its game's
+ *  Publisher, and searches each new position by increasing depths until
+ *  the position changes, when it abandons the search and starts on the
+ *  new one.  The result of the deepest search completed for the current
+ *  position is available at any moment from current().
+ *
+ *  The search uses its own AI and transposition table (those of a
+ *  private Game), so that it never interferes with the game's own
+ *  players.  Its thread runs at low priority, so that it mostly uses a
+ *  spare core, and runs until the analyzer is closed.
+ *
+ *  An analyzer may instead be given an Executor shared with other
+ *  searches (as by the games of a server, whose pool bounds the number
+ *  of searches under way at once).  It then has no thread of its own:
+ *  it analyzes each position in a task on that Executor, and for at
+ *  most POOLED_MILLIS milliseconds, so that it never holds a thread of
+ *  the pool for long.
+ *  @author Aayush Gupta
+ */
+class Analyzer {
+
+    /** Longest analysis of one position, in milliseconds, when analyzing
+     *  on a shared Executor. */
+    static final long POOLED_MILLIS = 5000;
+
+    /** An analyzer of the positions published by PUBLISHER, reporting
+     *  errors to REPORTER, that searches on SEARCHES, or on a thread of
+     *  its own if SEARCHES is null. */
+    Analyzer(Publisher publisher, Reporter reporter, Executor searches) {
+        _game = new Game(null, (b) -> { }, reporter, false);
+        _ai = new AI(_game, RED, 0);
+        _searches = searches;
+        if (searches == null) {
+            Thread thread = new Thread(this::run, "analyzer");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.start();
+        }
+        _subscription =
+            publisher.subscribe(this::setPosition, Runnable::run, 0);
+    }
+
+    /** Stop analyzing: cease receiving positions, abandon any search under
+     *  way, and let my thread end. */
+    synchronized void close() {
+        _subscription.cancel();
+        _closed = true;
+        _ai.stop(false);
+        notifyAll();
+    }
+
+    /** Return the result of the deepest search of the position last
+     *  published that has completed, or null if there is none yet. */
+    Analysis current() {
+        Analysis result = _result;
+        if (result == null || !result.position.equals(_position)) {
+            return null;
+        }
+        return result;
+    }
+
+    /** The result of a search. */
+    static class Analysis {
+        /** The result of searching POSITION to DEPTH, which found MOVE to
+         *  be best, with value SCORE (positive if good for red). */
+        Analysis(Snapshot position, int depth, Move move, int score) {
+            this.position = position;
+            this.depth = depth;
+            this.move = move;
+            this.score = score;
+        }
+
+        /** Position searched. */
+        final Snapshot position;
+        /** Depth of the search. */
+        final int depth;
+        /** Best move found. */
+        final Move move;
+        /** Value found. */
+        final int score;
+    }
+
+    /** Make POSITION the one to analyze, abandoning any search of
+     *  another, and if I search on a shared Executor and no task of mine
+     *  is under way, start one. */
+    private synchronized void setPosition(Snapshot position) {
+        _position = position;
+        _ai.stop(false);
+        if (_searches != null && !_running && !_closed) {
+            _running = true;
+            _searches.execute(this::runPooled);
+        }
+        notifyAll();
+    }
+
+    /** Wait for a position other than LAST to analyze, and return it,
+     *  or return null if I am closed. */
+    private synchronized Snapshot nextPosition(Snapshot last) {
+        while (!_closed && (_position == null || _position == last)) {
+            try {
+                wait();
+            } catch (InterruptedException excp) {
+                /* Ignore InterruptedException */
+            }
+        }
+        return _closed ? null : _position;
+    }
+
+    /** Analyze each position in turn, as described above, until I am
+     *  closed. */
+    private void run() {
+        for (Snapshot position = nextPosition(null); position != null;
+             position = nextPosition(position)) {
+            analyze(position, 0);
+        }
+    }
+
+    /** Analyze the position last published, and then any published
+     *  meanwhile, each for at most POOLED_MILLIS milliseconds, until I am
+     *  closed or there are no more. */
+    private void runPooled() {
+        Snapshot position = null;
+        while (true) {
+            synchronized (this) {
+                if (_closed || _position == position) {
+                    _running = false;
+                    return;
+                }
+                position = _position;
+            }
+            analyze(position, POOLED_MILLIS);
+        }
+    }
+
+    /** Search POSITION to increasing depths, recording the result of each
+     *  in _result, until it is no longer the position to analyze, I am
+     *  closed, or MILLIS milliseconds have passed (no limit if 0). */
+    private void analyze(Snapshot position, long millis) {
+        if (position.getWinner() != null) {
+            return;
+        }
+        if (!position.canMove(position.whoseMove())) {
+            _result = new Analysis(position, 0, Move.pass(), 0);
+            return;
+        }
+        _ai.findMove(Board.fromPosition(position.toPosition()),
+                     Long.MAX_VALUE, millis, new AI.Listener() {
+                @Override
+                public void searchStarted(Snapshot unused) {
+                    if (_closed || _position != position) {
+                        _ai.stop(false);
+                    }
+                }
+
+                @Override
+                public void iteration(int depth, Move move, int score,
+                                      long nodes, List<Move> pv) {
+                    _result = new Analysis(position, depth, move, score);
+                }
+            });
+    }
+
+    /** Game providing the transposition table used by _ai. */
+    private final Game _game;
+    /** Searcher. */
+    private final AI _ai;
+    /** Position to analyze: the one last published. */
+    private volatile Snapshot _position;
+    /** Latest result of analysis. */
+    private volatile Analysis _result;
+    /** My registration with the game's Publisher. */
+    private final Publisher.Subscription _subscription;
+    /** True iff close has been called. */
+    private volatile boolean _closed;
+    /** Executor shared with other searches on which I analyze, or null if
+     *  I have a thread of my own. */
+    private final Executor _searches;
+    /** True iff a task of mine is under way on _searches. */
+    private boolean _running;
+}
@@ -0,0 +1,172 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.function.BooleanSupplier;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/** Tests of the Analyzer class, both on a thread of its own and on an
+ *  Executor run by the test.
+ *  @author Aayush Gupta
+ */
+public class AnalyzerTest {
+
+    /** Longest wait for analysis, in milliseconds. */
+    private static final long TIMEOUT = 10000;
+
+    /** Positions in which red, to move, must pass. */
+    private static final String[] PASSES = {
+        "rbb4/bbb4/bbb4/7/7/7/7 r 0", "rbb4/bbb4/bbb4/7/7/7/6b r 0",
+    };
+
+    /** Return a reporter that discards its messages. */
+    private static Reporter quiet() {
+        PrintStream discard = new PrintStream(new ByteArrayOutputStream());
+        return new TextReporter(discard, discard);
+    }
+
+    /** Return a snapshot of POSITION, in the form read by
+     *  Board.setPosition. */
+    private static Snapshot snapshot(String position) {
+        return Board.fromPosition(position).snapshot();
+    }
+
+    /** Return snapshots of the starting position and of the positions
+     *  after each of MOVES in turn. */
+    private static Snapshot[] positions(String... moves) {
+        Board board = new Board();
+        Snapshot[] result = new Snapshot[moves.length + 1];
+        result[0] = board.snapshot();
+        for (int k = 0; k < moves.length; k += 1) {
+            board.makeMove(Move.move(moves[k]));
+            result[k + 1] = board.snapshot();
+        }
+        return result;
+    }
+
+    /** Wait until CONDITION holds, failing with MSG if it takes more than
+     *  TIMEOUT milliseconds. */
+    private static void await(String msg, BooleanSupplier condition)
+        throws InterruptedException {
+        long end = System.currentTimeMillis() + TIMEOUT;
+        while (!condition.getAsBoolean()) {
+            assertTrue(msg, System.currentTimeMillis() < end);
+            Thread.sleep(5);
+        }
+    }
+
+    /** Wait until ANALYZER has a result for POSITION, and check that it
+     *  is sensible. */
+    private static void awaitResult(Analyzer analyzer, Snapshot position)
+        throws InterruptedException {
+        await("analysis of " + position.toPosition(), () ->
+            analyzer.current() != null);
+        Analyzer.Analysis result = analyzer.current();
+        assertSame(position, result.position);
+        assertTrue(result.depth >= 1);
+        assertTrue(Board.fromPosition(position.toPosition())
+                   .legalMove(result.move));
+    }
+
+    /** Check that ANALYZER, which has just been given POSITION, has no
+     *  result for any other position. */
+    private static void checkDiscarded(Analyzer analyzer,
+                                       Snapshot position) {
+        Analyzer.Analysis result = analyzer.current();
+        assertTrue("old result discarded",
+                   result == null || result.position == position);
+    }
+
+    /** Return the number of live threads named "analyzer". */
+    private static int analyzerThreads() {
+        int n = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("analyzer") && thread.isAlive()) {
+                n += 1;
+            }
+        }
+        return n;
+    }
+
+    @Test
+    public void testOwnThread() throws InterruptedException {
+        Snapshot[] p = positions("a7-b6", "g7-f6");
+        Publisher publisher = new Publisher();
+        int threads = analyzerThreads();
+        Analyzer analyzer = new Analyzer(publisher, quiet(), null);
+        assertEquals("thread started", threads + 1, analyzerThreads());
+        assertNull("nothing to analyze", analyzer.current());
+        publisher.publish(p[0]);
+        awaitResult(analyzer, p[0]);
+        for (int k = 1; k < p.length; k += 1) {
+            publisher.publish(p[k]);
+            checkDiscarded(analyzer, p[k]);
+            awaitResult(analyzer, p[k]);
+        }
+        analyzer.close();
+        await("thread ends", () -> analyzerThreads() == threads);
+        publisher.publish(p[0]);
+        assertSame("positions ignored after close", p[p.length - 1],
+                   analyzer.current().position);
+    }
+
+    @Test
+    public void testPooled() throws InterruptedException {
+        Snapshot[] p = positions("a7-b6", "g7-f6");
+        Publisher publisher = new Publisher();
+        PublisherTest.ManualExecutor executor =
+            new PublisherTest.ManualExecutor();
+        Analyzer analyzer = new Analyzer(publisher, quiet(), executor);
+        assertEquals("no task before a position", 0, executor.waiting());
+        publisher.publish(p[0]);
+        publisher.publish(p[1]);
+        assertEquals("one task at a time", 1, executor.waiting());
+        assertNull(analyzer.current());
+        Thread task = new Thread(executor::run);
+        task.start();
+        try {
+            awaitResult(analyzer, p[1]);
+            publisher.publish(p[2]);
+            checkDiscarded(analyzer, p[2]);
+            awaitResult(analyzer, p[2]);
+            assertEquals("running task takes the new position", 0,
+                         executor.waiting());
+            analyzer.close();
+            task.join(TIMEOUT);
+            assertFalse("task ends on close", task.isAlive());
+        } finally {
+            analyzer.close();
+        }
+        publisher.publish(p[0]);
+        assertEquals("no task after close", 0, executor.waiting());
+    }
+
+    @Test
+    public void testPooledTasksEnd() {
+        Publisher publisher = new Publisher();
+        PublisherTest.ManualExecutor executor =
+            new PublisherTest.ManualExecutor();
+        Analyzer analyzer = new Analyzer(publisher, quiet(), executor);
+        for (String position : PASSES) {
+            Snapshot pass = snapshot(position);
+            assertNull(pass.getWinner());
+            publisher.publish(pass);
+            assertEquals("task started", 1, executor.waiting());
+            assertEquals("task ends with nothing more to do", 1,
+                         executor.run());
+            Analyzer.Analysis result = analyzer.current();
+            assertSame(pass, result.position);
+            assertEquals(Move.pass(), result.move);
+        }
+        analyzer.close();
+        publisher.publish(snapshot(PASSES[0]));
+        assertEquals("no task after close", 0, executor.waiting());
+    }
+}
@@ -0,0 +1,105 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** Plays each of a list of input files as a separate session (the
+ *  --batch option), several at once, in one program.  Each session has
+ *  its own Game, which collects everything that session prints (on the
+ *  standard output and standard error) in buffers of its own.  When a
+ *  session ends, and all those for earlier files have been printed, its
+ *  output is printed, so that the output is the same as if each file
+ *  had been run by itself in turn.
+ *  @author Aayush Gupta
+ */
+class Batch {
+
+    /** A batch of sessions reading FILES, playing THREADS at once, and
+     *  logging commands if LOGGING. */
+    Batch(List<String> files, int threads, boolean logging) {
+        _files = new ArrayList<>(files);
+        _threads = threads;
+        _logging = logging;
+    }
+
+    /** Play all my sessions, printing their output in order, and return
+     *  the largest of their exit codes. */
+    int run() {
+        ExecutorService pool = Executors.newFixedThreadPool(_threads, (r) -> {
+            Thread thread = new Thread(r, "batch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<Output>> outputs = new ArrayList<>();
+            for (String file : _files) {
+                outputs.add(pool.submit(() -> play(file)));
+            }
+            int exit = 0;
+            for (Future<Output> future : outputs) {
+                Output output = future.get();
+                byte[] bytes = output.out.toByteArray();
+                System.out.write(bytes, 0, bytes.length);
+                System.out.flush();
+                bytes = output.err.toByteArray();
+                System.err.write(bytes, 0, bytes.length);
+                System.err.flush();
+                exit = Math.max(exit, output.exit);
+            }
+            return exit;
+        } catch (InterruptedException | ExecutionException excp) {
+            System.err.printf("Batch failed: %s%n", excp);
+            return 1;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Play a session reading commands from the file named FILE, and
+     *  return its output and exit code. */
+    private Output play(String file) {
+        Output output = new Output();
+        PrintStream out = new PrintStream(output.out, true);
+        PrintStream err = new PrintStream(output.err, true);
+        try (FileReader input = new FileReader(file)) {
+            Game game = new Game(new TextSource(List.of(input), out),
+                                 (b) -> { }, new TextReporter(out, err),
+                                 out, err, _logging);
+            output.exit = game.play();
+            game.timing().report();
+        } catch (IOException excp) {
+            err.printf("Could not open %s%n", file);
+            output.exit = 1;
+        }
+        return output;
+    }
+
+    /** The output of one session. */
+    private static class Output {
+        /** What the session printed on the standard output. */
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        /** What the session printed on the standard error. */
+        final ByteArrayOutputStream err = new ByteArrayOutputStream();
+        /** The session's exit code. */
+        int exit;
+    }
+
+    /** Names of the input files. */
+    private final List<String> _files;
+    /** Number of sessions played at once. */
+    private final int _threads;
+    /** True iff sessions log their commands. */
+    private final boolean _logging;
+}
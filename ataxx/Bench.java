@@ -0,0 +1,137 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+import static ataxx.PieceColor.*;
+import static ataxx.GameException.error;
+
+/** A fixed benchmark of the AI's search.  Searches each of a built-in
+ *  set of positions (openings with different blocks, midgames, and
+ *  endgames) to a fixed depth, starting each search with an empty
+ *  transposition table and fresh history, and reports the total number
+ *  of nodes searched and the rate at which they were searched.
+ *
+ *  The node count depends only on the search algorithm, not on the speed
+ *  of the machine, so it serves as a signature: a change that should not
+ *  alter the search (such as an optimization) must leave it unchanged,
+ *  while the rate measures speed.
+ *  @author Aayush Gupta
+ */
+class Bench {
+
+    /** Depth to which positions are searched unless otherwise
+     *  requested. */
+    static final int DEFAULT_DEPTH = 5;
+
+    /** Seed for the AI's random-number generator. */
+    private static final long SEED = 0;
+
+    /** The positions searched, as the blocks and moves that lead to them
+     *  from the initial position, in the format of game archives (see
+     *  Replayer). */
+    private static final String[] POSITIONS = {
+        "",
+        "c3 g1-f1 g7-g6",
+        "b2 d2 a7-b7",
+        "a7-b7 a1-a2 a7-a6 g7-f6 a6-a5 a2-b3 b7-c6 b3-a4 g1-f2 b3-b4 "
+        + "b7-b6 b3-c2 f2-g2 a2-b2 g2-g3 c2-d2",
+        "b4 a7-b5 g7-g6 b5-c6 a1-b1 c6-d6 g7-f7 b5-c4 b1-d1 b5-a6 "
+        + "d1-c2 c4-c5 f7-f5 c5-d5 c2-b1 c4-b3 f5-e4 b5-a5 e4-e2 d6-d7 "
+        + "b1-b2",
+        "c2 a4 g1-g2 g7-g6 g1-f2 a1-b1 g2-f1 g6-f5 g2-f3 g7-f7 f2-d3 "
+        + "a1-a2 a7-b7 f5-e4 b7-a6 f3-f4 g2-f2 e4-d5 a6-b6 g6-g5 a6-b5 "
+        + "g7-f6 b6-a5 d3-e3 b6-c5 f2-e1",
+        "d3 g1-g2 a1-a2 g1-g3 g7-e5 a7-b7 e5-f5 g3-f3 f5-e4 g3-f2 "
+        + "f5-g6 b7-c7 a2-b2 f2-e3 g6-g7 e4-f4 b2-b1 f5-g4 b2-a3 e3-d2 "
+        + "g6-f7 d2-e1 b2-c1 e1-d1 a3-c4 f5-g5 b1-c2 e5-d4 f7-e7 e5-f6 "
+        + "c2-c3",
+        "a7-b7 g7-e7 b7-c6 a1-b2 c6-d6 a1-b1 g1-f2 b2-a3 f2-f4 a3-b3 "
+        + "f4-d5 a3-b4 b7-c7 b3-a4 c7-b6 a4-b5 d6-d7 b4-c3 d6-e6 b1-c1 "
+        + "d5-c4 b6-c5 c3-d2 c6-e5 d2-e1 e5-f4 d2-d1 b6-a5 d2-e2 e5-d4 "
+        + "e2-f2 c4-d3 e7-g5 b2-c2 g5-f6 d5-e3 g5-g4 c5-d5 f6-f7 b1-a2",
+        "b3 g1-f2 a1-c3 f2-g2 g7-f6 g1-g3 c3-c4 f2-e1 f6-g5 a7-b7 "
+        + "c3-b2 b7-c6 b2-d1 f2-e2 c3-c1 f2-e4 c4-c3 b7-d6 d1-d2 d6-e6 "
+        + "c4-c5 e6-d7 e2-f1 f6-d5 c3-d4 d6-e7 c5-b6 e6-g4 d2-c2 g3-f2 "
+        + "c3-b4 e7-e5 c1-b2 f2-e3 g7-g6 d7-f7 b6-a6 d5-e6 b2-a3 g3-f4 "
+        + "d1-b1 f7-e7 c5-b7 e3-d3 b6-c7",
+        "c1 b4 g1-f1 a1-a2 a7-b6 g7-f7 b6-a6 f7-g6 b6-b7 a2-b2 g1-f2 "
+        + "b2-c2 f2-f3 c2-b1 f3-e3 b2-b3 b6-c5 a2-a3 e3-e4 b2-c3 c5-d7 "
+        + "g7-e5 a6-a5 f7-f6 f2-g2 e4-d4 d7-d6 f6-f5 a6-b5 c2-d2 b5-c4 "
+        + "e4-d5 b3-c5 e5-e6 c4-d3 b2-b3 a5-a4 d5-c6 d2-e2 f5-g4 d2-d1 "
+        + "g4-g3",
+    };
+
+    /** Search all positions to DEPTH, reporting each result and the
+     *  totals to REPORTER.  Returns the total number of nodes searched. */
+    static long run(int depth, Reporter reporter) {
+        Game game = new Game(null, (b) -> { }, reporter, false);
+        AI ai = new AI(game, RED, SEED);
+        long nodes = 0, nanos = 0;
+        for (int k = 0; k < POSITIONS.length; k += 1) {
+            Board board = position(POSITIONS[k]);
+            game.table().clear();
+            ai.reseed(SEED);
+            long start = System.nanoTime();
+            Move move = ai.findMove(board, depth);
+            nanos += System.nanoTime() - start;
+            nodes += ai.nodes();
+            reporter.msg("[bench] position %d: best %s, value %d, %d nodes",
+                         k + 1, move, ai.lastScore(), ai.nodes());
+        }
+        long msec = Math.max(1, nanos / 1_000_000);
+        reporter.msg("[bench] depth %d, %d positions: %d nodes, %d msec, "
+                     + "%d nodes/sec", depth, POSITIONS.length, nodes, msec,
+                     nodes * 1000 / msec);
+        return nodes;
+    }
+
+    /** Return boards with the positions searched by the benchmark. */
+    static Board[] positions() {
+        Board[] boards = new Board[POSITIONS.length];
+        for (int k = 0; k < POSITIONS.length; k += 1) {
+            boards[k] = position(POSITIONS[k]);
+        }
+        return boards;
+    }
+
+    /** Return a board with the position reached by the blocks and moves
+     *  in GAME, which has the format of a line of a game archive (see
+     *  Replayer) without an outcome, or with the position GAME itself, if
+     *  it is in the form read by Board.setPosition. */
+    static Board position(String game) {
+        if (game.indexOf('/') >= 0) {
+            return Board.fromPosition(game);
+        }
+        Board board = new Board();
+        for (String token : game.trim().split("\\s+")) {
+            if (token.isEmpty()) {
+                continue;
+            } else if (token.length() == 2 && isSquare(token, 0)) {
+                if (!board.legalBlock(token)) {
+                    throw error("illegal block: %s", token);
+                }
+                board.setBlock(token);
+            } else if (token.equals("-") || token.length() == 5
+                       && isSquare(token, 0) && token.charAt(2) == '-'
+                       && isSquare(token, 3)) {
+                Move move = Move.move(token);
+                if (move == null || board.getWinner() != null
+                    || !board.legalMove(move)) {
+                    throw error("illegal move: %s", token);
+                }
+                board.makeMove(move);
+            } else {
+                throw error("bad block or move: %s", token);
+            }
+        }
+        return board;
+    }
+
+    /** Return true iff S[K .. K+1] designates a square. */
+    private static boolean isSquare(String s, int k) {
+        char c = s.charAt(k), r = s.charAt(k + 1);
+        return c >= 'a' && c <= 'g' && r >= '1' && r <= '7';
+    }
+}
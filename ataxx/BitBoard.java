@@ -0,0 +1,329 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static ataxx.PieceColor.*;
+
+/** A compact, mutable Ataxx position for fast simulation.  Sets of
+ *  squares are represented as bits of a long: square C R is bit
+ *  (R - '1') * 7 + (C - 'a').  A BitBoard keeps no history and never
+ *  allocates, which makes it suitable for random playouts.
+ *
+ *  Moves are encoded as ints (see moveCode).  Since all extends to the
+ *  same square have the same effect, an extend is encoded by its
+ *  destination alone; toMove picks an origin for it.
+ *  @author Aayush Gupta
+ */
+class BitBoard {
+
+    /** Number of squares on the board. */
+    static final int SQUARES = Board.SIDE * Board.SIDE;
+    /** The set of all squares on the board. */
+    static final long ALL = (1L << SQUARES) - 1;
+    /** Origin in the code of an extend. */
+    static final int ANY = 63;
+    /** The code of a pass. */
+    static final int PASS = moveCode(ANY, ANY);
+    /** Maximum number of distinct moves in any position. */
+    static final int MAX_MOVES = SQUARES * (1 + Board.MAX_MOVES);
+
+    /** Return the bit index of the square with linearized index SQ. */
+    static int bit(int sq) {
+        return BITS[sq];
+    }
+
+    /** Return the linearized index of the square with bit index BIT. */
+    static int square(int bit) {
+        return (bit / Board.SIDE + 2) * Board.EXTENDED_SIDE
+            + bit % Board.SIDE + 2;
+    }
+
+    /** Return the set of squares adjacent to the square with bit index
+     *  BIT. */
+    static long adjacent(int bit) {
+        return ADJACENT[bit];
+    }
+
+    /** Return the set of squares at distance exactly two from the square
+     *  with bit index BIT. */
+    static long jumpable(int bit) {
+        return JUMPABLE[bit];
+    }
+
+    /** Return the code of the move from bit FROM to bit TO, where FROM is
+     *  ANY for an extend. */
+    static int moveCode(int from, int to) {
+        return (from << 6) | to;
+    }
+
+    /** Return the origin of move CODE (ANY for an extend or pass). */
+    static int from(int code) {
+        return code >>> 6;
+    }
+
+    /** Return the destination of move CODE. */
+    static int to(int code) {
+        return code & 63;
+    }
+
+    /** Set me to the position on BOARD. */
+    void set(Board board) {
+        _red = board.bits(RED);
+        _blue = board.bits(BLUE);
+        _blocks = board.bits(BLOCKED);
+        _redToMove = board.whoseMove() == RED;
+        _jumps = board.numJumps();
+    }
+
+    /** Set me to the position on BITBOARD. */
+    void set(BitBoard bitboard) {
+        _red = bitboard._red;
+        _blue = bitboard._blue;
+        _blocks = bitboard._blocks;
+        _redToMove = bitboard._redToMove;
+        _jumps = bitboard._jumps;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof BitBoard)) {
+            return false;
+        }
+        BitBoard other = (BitBoard) obj;
+        return _red == other._red && _blue == other._blue
+            && _blocks == other._blocks && _redToMove == other._redToMove
+            && _jumps == other._jumps;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(_red * 31 + _blue) ^ Long.hashCode(_blocks)
+            ^ (_redToMove ? 1 : 0);
+    }
+
+    /** Return the set of squares containing COLOR. */
+    long bits(PieceColor color) {
+        switch (color) {
+        case RED:
+            return _red;
+        case BLUE:
+            return _blue;
+        case BLOCKED:
+            return _blocks;
+        default:
+            return ALL & ~(_red | _blue | _blocks);
+        }
+    }
+
+    /** Return the player to move. */
+    PieceColor whoseMove() {
+        return _redToMove ? RED : BLUE;
+    }
+
+    /** Return the set of empty squares that pieces in OWN can reach. */
+    private long targets(long own) {
+        long empty = ALL & ~(_red | _blue | _blocks);
+        long reach = grow(grow(own));
+        return reach & empty;
+    }
+
+    /** Return true iff the player with pieces OWN has a move. */
+    private boolean canMove(long own) {
+        return targets(own) != 0;
+    }
+
+    /** Return the winner (EMPTY for a draw) if the game is over, and
+     *  otherwise null. */
+    PieceColor winner() {
+        if (_jumps < Board.JUMP_LIMIT && _red != 0 && _blue != 0
+            && (_red | _blue | _blocks) != ALL
+            && (canMove(_red) || canMove(_blue))) {
+            return null;
+        }
+        int red = Long.bitCount(_red), blue = Long.bitCount(_blue);
+        return red > blue ? RED : red < blue ? BLUE : EMPTY;
+    }
+
+    /** Store the codes of all moves for the player to move in MOVES,
+     *  returning their number.  If there are none, stores PASS. */
+    int moves(int[] moves) {
+        long own = _redToMove ? _red : _blue;
+        long empty = ALL & ~(_red | _blue | _blocks);
+        int n = 0;
+        for (long t = grow(grow(own)) & empty; t != 0; t &= t - 1) {
+            int to = Long.numberOfTrailingZeros(t);
+            if ((ADJACENT[to] & own) != 0) {
+                moves[n++] = moveCode(ANY, to);
+            }
+            for (long f = JUMPABLE[to] & own; f != 0; f &= f - 1) {
+                moves[n++] = moveCode(Long.numberOfTrailingZeros(f), to);
+            }
+        }
+        if (n == 0) {
+            moves[n++] = PASS;
+        }
+        return n;
+    }
+
+    /** Return the number of opposing pieces that move CODE would
+     *  capture, plus one if it is an extend. */
+    int gain(int code) {
+        if (code == PASS) {
+            return 0;
+        }
+        long opp = _redToMove ? _blue : _red;
+        int gain = Long.bitCount(ADJACENT[to(code)] & opp);
+        return from(code) == ANY ? gain + 1 : gain;
+    }
+
+    /** Make move CODE, which must be legal. */
+    void play(int code) {
+        if (code != PASS) {
+            int to = to(code);
+            long own = _redToMove ? _red : _blue;
+            long opp = _redToMove ? _blue : _red;
+            long captured = ADJACENT[to] & opp;
+            own |= captured | (1L << to);
+            opp &= ~captured;
+            if (from(code) == ANY) {
+                _jumps = 0;
+            } else {
+                own &= ~(1L << from(code));
+                _jumps += 1;
+            }
+            if (_redToMove) {
+                _red = own;
+                _blue = opp;
+            } else {
+                _blue = own;
+                _red = opp;
+            }
+        }
+        _redToMove = !_redToMove;
+    }
+
+    /** Play the game out from my position, choosing moves with RANDOM,
+     *  and return its winner (EMPTY for a draw).  Each move is the one
+     *  with greatest gain among SAMPLES random choices, which favors
+     *  captures and extends at much less cost than scoring every move. */
+    PieceColor playout(SplittableRandom random, int samples) {
+        int[] moves = _scratch;
+        for (int ply = 0; ply < MAX_PLAYOUT; ply += 1) {
+            PieceColor winner = winner();
+            if (winner != null) {
+                return winner;
+            }
+            int n = moves(moves);
+            int best = moves[random.nextInt(n)], bestGain = gain(best);
+            for (int k = 1; k < samples; k += 1) {
+                int m = moves[random.nextInt(n)], g = gain(m);
+                if (g > bestGain) {
+                    best = m;
+                    bestGain = g;
+                }
+            }
+            play(best);
+        }
+        int red = Long.bitCount(_red), blue = Long.bitCount(_blue);
+        return red > blue ? RED : red < blue ? BLUE : EMPTY;
+    }
+
+    /** Return the Move on BOARD, whose position must be the same as mine,
+     *  denoted by CODE. */
+    static Move toMove(Board board, int code) {
+        if (code == PASS) {
+            return Move.pass();
+        }
+        int to = to(code), from = from(code);
+        if (from == ANY) {
+            long own = board.bits(board.whoseMove());
+            from = Long.numberOfTrailingZeros(ADJACENT[to] & own);
+        }
+        int sq0 = square(from), sq1 = square(to);
+        return Move.move(column(sq0), row(sq0), column(sq1), row(sq1));
+    }
+
+    /** Return the code of MOVE. */
+    static int code(Move move) {
+        if (move.isPass()) {
+            return PASS;
+        }
+        int from = move.isExtend() ? ANY : bit(move.fromIndex());
+        return moveCode(from, bit(move.toIndex()));
+    }
+
+    /** Return the column letter of linearized index SQ. */
+    private static char column(int sq) {
+        return (char) ('a' + sq % Board.EXTENDED_SIDE - 2);
+    }
+
+    /** Return the row numeral of linearized index SQ. */
+    private static char row(int sq) {
+        return (char) ('1' + sq / Board.EXTENDED_SIDE - 2);
+    }
+
+    /** Return the set of squares in SET or adjacent to one in SET. */
+    static long grow(long set) {
+        long horiz = set | ((set << 1) & NOT_FIRST_COL)
+            | ((set >>> 1) & NOT_LAST_COL);
+        return (horiz | (horiz << Board.SIDE) | (horiz >>> Board.SIDE)) & ALL;
+    }
+
+    /** Maximum length of a playout before it is scored by piece count. */
+    private static final int MAX_PLAYOUT = 400;
+
+    /** Squares not in column a and not in column g, respectively. */
+    static final long NOT_FIRST_COL, NOT_LAST_COL;
+    /** Bit indices of the linearized squares (-1 for the border). */
+    private static final int[] BITS =
+        new int[Board.EXTENDED_SIDE * Board.EXTENDED_SIDE];
+    /** ADJACENT[b] is the set of squares adjacent to bit B. */
+    private static final long[] ADJACENT = new long[SQUARES];
+    /** JUMPABLE[b] is the set of squares at distance 2 from bit B. */
+    private static final long[] JUMPABLE = new long[SQUARES];
+
+    static {
+        long firstCol = 0;
+        for (int r = 0; r < Board.SIDE; r += 1) {
+            firstCol |= 1L << (r * Board.SIDE);
+        }
+        NOT_FIRST_COL = ALL & ~firstCol;
+        NOT_LAST_COL = ALL & ~(firstCol << (Board.SIDE - 1));
+        Arrays.fill(BITS, -1);
+        for (int b = 0; b < SQUARES; b += 1) {
+            BITS[square(b)] = b;
+        }
+        for (int b = 0; b < SQUARES; b += 1) {
+            int c = b % Board.SIDE, r = b / Board.SIDE;
+            for (int dc = -2; dc <= 2; dc += 1) {
+                for (int dr = -2; dr <= 2; dr += 1) {
+                    int c1 = c + dc, r1 = r + dr;
+                    if ((dc == 0 && dr == 0) || c1 < 0 || r1 < 0
+                        || c1 >= Board.SIDE || r1 >= Board.SIDE) {
+                        continue;
+                    }
+                    long sq = 1L << (r1 * Board.SIDE + c1);
+                    if (Math.abs(dc) <= 1 && Math.abs(dr) <= 1) {
+                        ADJACENT[b] |= sq;
+                    } else {
+                        JUMPABLE[b] |= sq;
+                    }
+                }
+            }
+        }
+    }
+
+    /** Squares containing red and blue pieces and blocks. */
+    private long _red, _blue, _blocks;
+    /** True iff red is to move. */
+    private boolean _redToMove;
+    /** Number of consecutive jumps. */
+    private int _jumps;
+    /** Move buffer for playouts. */
+    private final int[] _scratch = new int[MAX_MOVES];
+}
@@ -12,6 +12,7 @@ import java.util.Stack;
 import java.util.function.Consumer;
 import java.util.Formatter;
 import java.util.List;
+import java.util.Random;
 
 import static ataxx.PieceColor.*;
 import static ataxx.GameException.error;
@@ -76,14 +77,26 @@ class Board {
         _totalOpen = board0.totalOpen();
         _whoseMove = board0.whoseMove();
         _winner = board0._winner;
+        System.arraycopy(board0._keys, 0, _keys, 0, _keys.length);
+        System.arraycopy(board0._bits, 0, _bits, 0, _bits.length);
         initialize();
         setNotifier(NOP);
     }
 
+    /** Reset my undo history and move list, reusing their storage when
+     *  it has already been allocated. */
     void initialize() {
-        _undoSquares = new Stack<>();
-        _undoPieces = new Stack<>();
-        _allMoves = new ArrayList<>();
+        if (_allMoves == null) {
+            _undoSquares = new Stack<>();
+            _undoPieces = new Stack<>();
+            _undoJumps = new Stack<>();
+            _allMoves = new ArrayList<>();
+        } else {
+            _undoSquares.clear();
+            _undoPieces.clear();
+            _undoJumps.clear();
+            _allMoves.clear();
+        }
     }
 
     /** Return the linearized index of square COL ROW. */
@@ -100,6 +113,20 @@ class Board {
     /** Clear me to my starting state, with pieces in their initial
      *  positions and no blocks. */
     void clear() {
+        empty();
+        unrecordedSet('g', '1', _whoseMove);
+        unrecordedSet('a', SIDEC, _whoseMove);
+        unrecordedSet('a', '1', _whoseMove.opposite());
+        unrecordedSet('g', SIDEC, _whoseMove.opposite());
+        if (_accumulator != null) {
+            _accumulator.refresh(this);
+        }
+        announce();
+    }
+
+    /** Set me to an empty board with red to move, no jumps, and no
+     *  history. */
+    private void empty() {
         _whoseMove = RED;
         _winner = null;
         initialize();
@@ -107,18 +134,118 @@ class Board {
         _numJumps = 0;
         _totalOpen = SIDE * SIDE;
         blockBoard();
+        Arrays.fill(_bits, 0);
         for (char c = 'a'; c <= 'g'; c++) {
             for (char r = '1'; r <= SIDEC; r++) {
                 unrecordedSet(c, r, EMPTY);
             }
         }
-        unrecordedSet('g', '1', _whoseMove);
-        unrecordedSet('a', SIDEC, _whoseMove);
-        unrecordedSet('a', '1', _whoseMove.opposite());
-        unrecordedSet('g', SIDEC, _whoseMove.opposite());
+        Arrays.fill(_keys, 0);
+    }
+
+    /** Return a new board whose position is given by POSITION, in the
+     *  form returned by toPosition. */
+    static Board fromPosition(String position) {
+        Board board = new Board();
+        board.setPosition(position);
+        return board;
+    }
+
+    /** Set me to the position given by POSITION, in the form returned by
+     *  toPosition, with no undo history.  Leading and trailing blanks, and
+     *  extra blanks between fields, are ignored. */
+    void setPosition(String position) {
+        PieceColor[] squares = new PieceColor[SIDE * SIDE];
+        int n = position.length(), k = skipBlanks(position, 0);
+        for (int r = SIDE - 1; r >= 0; r -= 1) {
+            int c = 0;
+            while (c < SIDE) {
+                char ch = k < n ? position.charAt(k) : ' ';
+                k += 1;
+                if (ch >= '1' && ch - '0' <= SIDE - c) {
+                    int end = c + ch - '0';
+                    for (; c < end; c += 1) {
+                        squares[r * SIDE + c] = EMPTY;
+                    }
+                } else if (ch == 'r' || ch == 'b' || ch == 'x') {
+                    squares[r * SIDE + c] =
+                        ch == 'r' ? RED : ch == 'b' ? BLUE : BLOCKED;
+                    c += 1;
+                } else {
+                    throw error("bad position: %s", position);
+                }
+            }
+            if (r > 0 && (k >= n || position.charAt(k++) != '/')) {
+                throw error("bad position: %s", position);
+            }
+        }
+        int k1 = skipBlanks(position, k);
+        if (k1 == k || k1 >= n
+            || position.charAt(k1) != 'r' && position.charAt(k1) != 'b') {
+            throw error("bad position: %s", position);
+        }
+        PieceColor toMove = position.charAt(k1) == 'r' ? RED : BLUE;
+        int k2 = skipBlanks(position, k1 + 1), jumps = 0;
+        for (k = k2; k < n && Character.isDigit(position.charAt(k)); k += 1) {
+            jumps = jumps * 10 + position.charAt(k) - '0';
+            if (jumps > JUMP_LIMIT) {
+                throw error("too many jumps in position: %s", position);
+            }
+        }
+        if (k2 == k1 + 1 || k == k2 || skipBlanks(position, k) != n) {
+            throw error("bad position: %s", position);
+        }
+
+        empty();
+        for (int b = 0; b < squares.length; b += 1) {
+            if (squares[b] != EMPTY) {
+                unrecordedSet(BitBoard.square(b), squares[b]);
+            }
+        }
+        _numJumps = jumps;
+        if (toMove != _whoseMove) {
+            switchSides();
+        }
+        if (_accumulator != null) {
+            _accumulator.refresh(this);
+        }
+        checkGameEnd();
         announce();
     }
 
+    /** Return the index of the first non-blank character of S at or
+     *  after K, or S.length() if there is none. */
+    private static int skipBlanks(String s, int k) {
+        while (k < s.length() && Character.isWhitespace(s.charAt(k))) {
+            k += 1;
+        }
+        return k;
+    }
+
+    /** Return my position as a single line: the contents of rows 7
+     *  through 1, separated by "/", each giving columns a through g as
+     *  "r" (red), "b" (blue), or "x" (blocked), with each run of empty
+     *  squares written as its length; then the player to move ("r" or
+     *  "b"); then numJumps().  For example, the initial position is
+     *  "r5b/7/7/7/7/7/b5r r 0".  The undo history is not included. */
+    String toPosition() {
+        return snapshot().toPosition();
+    }
+
+    /** Return an immutable record of my current position.  Snapshots are
+     *  made only on demand, and the same one is returned until my
+     *  position next changes. */
+    Snapshot snapshot() {
+        if (_snapshot == null) {
+            int n = numMoves();
+            _snapshot = new Snapshot(bits(RED), bits(BLUE), bits(BLOCKED),
+                                     _whoseMove, _numJumps, n,
+                                     n == 0 ? null : _allMoves.get(n - 1),
+                                     _winner, key());
+        }
+        return _snapshot;
+    }
+
     void blockBoard() {
         Arrays.fill(_board, BLOCKED);
         _numPieces[BLOCKED.ordinal()] = MAX_PIECES;
@@ -176,6 +303,7 @@ class Board {
         addUndo(sq);
         incrPieces(v, 1);
         incrPieces(get(sq), -1);
+        update(sq, get(sq), v);
         _board[sq] = v;
     }
 
@@ -193,9 +321,80 @@ class Board {
             _totalOpen -= 1;
         }
         incrPieces(get(sq), -1);
+        update(sq, get(sq), v);
         _board[sq] = v;
     }
 
+    /** Update my position keys, bit sets, and accumulator for a change of
+     *  the contents of square SQ from OLD to V. */
+    private void update(int sq, PieceColor old, PieceColor v) {
+        long bit = 1L << BitBoard.bit(sq);
+        _bits[old.ordinal()] &= ~bit;
+        _bits[v.ordinal()] |= bit;
+        if (_accumulator != null) {
+            _accumulator.change(BitBoard.bit(sq), old, v);
+        }
+        for (int t = 0; t < _keys.length; t += 1) {
+            int image = SYMMETRIES[t].square(sq);
+            _keys[t] ^= ZOBRIST[old.ordinal()][image]
+                ^ ZOBRIST[v.ordinal()][image];
+        }
+    }
+
+    /** Make the opponent of the current player the player to move. */
+    private void switchSides() {
+        _whoseMove = _whoseMove.opposite();
+        for (int t = 0; t < _keys.length; t += 1) {
+            _keys[t] ^= BLUE_TO_MOVE;
+        }
+    }
+
+    /** Attach ACCUMULATOR to me, so that it is kept current for my
+     *  position as moves are made and undone, or detach any accumulator
+     *  if ACCUMULATOR is null. */
+    void setAccumulator(Network.Accumulator accumulator) {
+        _accumulator = accumulator;
+        if (accumulator != null) {
+            accumulator.refresh(this);
+        }
+    }
+
+    /** Return the set of squares containing COLOR, as a bit set indexed
+     *  as described in BitBoard. */
+    long bits(PieceColor color) {
+        return _bits[color.ordinal()];
+    }
+
+    /** Return a hash key for my position: the contents of all squares and
+     *  the player to move. */
+    long key() {
+        return _keys[Symmetry.IDENTITY.ordinal()];
+    }
+
+    /** Return the key of my position as transformed by SYM. */
+    long key(Symmetry sym) {
+        return _keys[sym.ordinal()];
+    }
+
+    /** Return the transformation that takes my position to its canonical
+     *  form: the one among its images with the smallest key.  Positions
+     *  that are images of each other have the same canonical form. */
+    Symmetry canonicalSymmetry() {
+        int best = 0;
+        for (int t = 1; t < _keys.length; t += 1) {
+            if (_keys[t] < _keys[best]) {
+                best = t;
+            }
+        }
+        return SYMMETRIES[best];
+    }
+
+    /** Return the key of the canonical form of my position, which is
+     *  the same for all images of it. */
+    long canonicalKey() {
+        return key(canonicalSymmetry());
+    }
+
     /** Return true iff MOVE is legal on the current board. */
     boolean legalMove(Move move) {
         if (move == null) {
@@ -236,7 +435,28 @@ class Board {
     /** Return true iff player WHO can move, ignoring whether it is
      *  that player's move and whether the game is over. */
     boolean canMove(PieceColor who) {
-        return possibleMoves(who).size() > 0;
+        for (int r = 2; r < SIDE + 2; r += 1) {
+            for (int c = 2; c < SIDE + 2; c += 1) {
+                int sq = r * EXTENDED_SIDE + c;
+                if (_board[sq] == who && hasEmptyNeighbor(sq)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Return true iff some square within two rows and columns of SQ is
+     *  empty. */
+    private boolean hasEmptyNeighbor(int sq) {
+        for (int dr = -2; dr <= 2; dr += 1) {
+            for (int dc = -2; dc <= 2; dc += 1) {
+                if (_board[neighbor(sq, dc, dr)] == EMPTY) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
     /** Returns a List of all possible legal moves player WHO can make
@@ -314,6 +534,7 @@ class Board {
         }
         _allMoves.add(move);
         startUndo();
+        _undoJumps.push(_numJumps);
         PieceColor opponent = _whoseMove.opposite();
         int origPos = index(move.col0(), move.row0());
         int destPos = index(move.col1(), move.row1());
@@ -326,22 +547,16 @@ class Board {
         if (!move.isJump()) {
             _numJumps = 0;
         }
-        HashSet<Integer> piecesToFlip = new HashSet<>();
-        if (!move.isPass()) {
-            piecesToFlip.add(destPos);
-            for (int r = -1; r <= 1; r++) {
-                for (int c = -1; c <= 1; c++) {
-                    int adj = neighbor(destPos, c, r);
-                    if (get(adj).equals(opponent)) {
-                        piecesToFlip.add(adj);
-                    }
+        set(destPos, _whoseMove);
+        for (int r = -1; r <= 1; r++) {
+            for (int c = -1; c <= 1; c++) {
+                int adj = neighbor(destPos, c, r);
+                if (_board[adj] == opponent) {
+                    set(adj, _whoseMove);
                 }
             }
         }
-        for (int piece : piecesToFlip) {
-            set(piece, _whoseMove);
-        }
-        _whoseMove = opponent;
+        switchSides();
         checkGameEnd();
         announce();
     }
@@ -365,22 +580,22 @@ class Board {
      *  is legal to do so. Passing is undoable. */
     void pass() {
         assert !canMove(_whoseMove);
+        _allMoves.add(Move.pass());
         startUndo();
-        _whoseMove = _whoseMove.opposite();
+        _undoJumps.push(_numJumps);
+        switchSides();
         announce();
     }
 
     /** Undo the last move. */
     void undo() {
-        _whoseMove = _whoseMove.opposite();
-        Move moveLast = _allMoves.remove(_allMoves.size() - 1);
+        switchSides();
+        _allMoves.remove(_allMoves.size() - 1);
         while (_undoSquares.peek() != null) {
             int undoPos = _undoSquares.pop();
             unrecordedSet(undoPos, _undoPieces.pop());
         }
-        if (moveLast.isJump()) {
-            _numJumps--;
-        }
+        _numJumps = _undoJumps.pop();
         _undoSquares.pop();
         _winner = null;
         announce();
@@ -515,11 +730,37 @@ class Board {
         announce();
     }
 
-    /** Take any action that has been set for a change in my state. */
+    /** Take any action that has been set for a change in my state.  Every
+     *  operation that changes my state ends by calling this, which also
+     *  discards my current snapshot. */
     private void announce() {
+        _snapshot = null;
         _notifier.accept(this);
     }
 
+    /** The transformations of the board, indexed by ordinal. */
+    private static final Symmetry[] SYMMETRIES = Symmetry.values();
+
+    /** ZOBRIST[p][sq] is a random key for square SQ containing a piece of
+     *  color P (by ordinal).  Empty squares contribute nothing. */
+    private static final long[][] ZOBRIST =
+        new long[PieceColor.values().length][EXTENDED_SIDE * EXTENDED_SIDE];
+
+    /** Random key contributed when blue is to move. */
+    private static final long BLUE_TO_MOVE;
+
+    static {
+        Random random = new Random(0x5eed_a7a_c5L);
+        for (PieceColor p : PieceColor.values()) {
+            if (p != EMPTY) {
+                for (int sq = 0; sq < ZOBRIST[0].length; sq += 1) {
+                    ZOBRIST[p.ordinal()][sq] = random.nextLong();
+                }
+            }
+        }
+        BLUE_TO_MOVE = random.nextLong();
+    }
+
     /** A notifier that does nothing. */
     private static final Consumer<Board> NOP = (s) -> { };
 
@@ -556,6 +797,14 @@ class Board {
      *  enumerals BLUE and RED. */
     private int[] _numPieces = new int[BLUE.ordinal() + 1];
 
+    /** Zobrist keys of my position under each of the transformations in
+     *  SYMMETRIES, maintained incrementally as squares change. */
+    private final long[] _keys = new long[SYMMETRIES.length];
+
+    /** Sets of squares with each content, indexed by the ordinal of the
+     *  content and as described in BitBoard. */
+    private final long[] _bits = new long[PieceColor.values().length];
+
     /** Set to winner when game ends (EMPTY if tie).  Otherwise is null. */
     private PieceColor _winner;
 
@@ -573,5 +822,14 @@ class Board {
     private Stack<Integer> _undoSquares;
     /** Stack of pieces formally at corresponding squares in _UNDOSQUARES. */
     private Stack<PieceColor> _undoPieces;
+    /** Stack of the values of _numJumps before each move not undone. */
+    private Stack<Integer> _undoJumps;
+
+    /** Accumulator kept current for my position, or null. */
+    private Network.Accumulator _accumulator;
+
+    /** The snapshot of my current position, or null if none has been
+     *  made since it last changed. */
+    private Snapshot _snapshot;
 
 }
@@ -274,6 +274,168 @@ public class BoardTest {
         assertEquals("copied board undone incorrectly", b2, b0);
     }
 
+    @Test
+    public void testKeys() {
+        Board b0 = new Board();
+        long start = b0.key();
+        makeMoves(b0, GAME1);
+        assertNotEquals("moves did not change key", start, b0.key());
+        for (int i = 0; i < GAME1.length; i += 1) {
+            b0.undo();
+        }
+        assertEquals("undo did not restore key", start, b0.key());
+
+        Board b1 = new Board(), b2 = new Board();
+        b1.setBlock('b', '2');
+        b2.setBlock('f', '6');
+        b1.makeMove('a', '7', 'b', '7');
+        b2.makeMove('g', '1', 'f', '1');
+        assertNotEquals("distinct positions have same key",
+                b1.key(), b2.key());
+        assertEquals("reflected positions have different canonical keys",
+                b1.canonicalKey(), b2.canonicalKey());
+    }
+
+    @Test
+    public void testPosition() {
+        Board b0 = new Board();
+        assertEquals("wrong initial position", "r5b/7/7/7/7/7/b5r r 0",
+                b0.toPosition());
+        b0.setBlock('c', '3');
+        makeMoves(b0, GAME1);
+        Board b1 = Board.fromPosition(b0.toPosition());
+        assertEquals("position not restored", b0, b1);
+        assertEquals("player to move not restored",
+                b0.whoseMove(), b1.whoseMove());
+        assertEquals("jumps not restored", b0.numJumps(), b1.numJumps());
+        assertEquals("key not restored", b0.key(), b1.key());
+        assertEquals("open squares not restored",
+                b0.totalOpen(), b1.totalOpen());
+        assertEquals("history not cleared", 0, b1.numMoves());
+
+        b1.setPosition("  x1r1b1x/7/7/7/7/7/7   b  24 ");
+        assertEquals("wrong position set", "x1r1b1x/7/7/7/7/7/7 b 24",
+                b1.toPosition());
+        assertEquals("wrong red count", 1, b1.redPieces());
+        assertEquals("wrong open squares", 47, b1.totalOpen());
+        b1.makeMove('e', '7', 'g', '5');
+        assertEquals("game not ended by jump limit", EMPTY,
+                b1.getWinner());
+
+        String last = b1.toPosition();
+        String[] bad = {
+            "r5b/7/7/7/7/7 r 0", "r5b/7/7/7/7/7/b6r r 0",
+            "r5b/7/7/7/7/7/b5r", "r5b/7/7/7/7/7/b5r g 0",
+            "r5b/7/7/7/7/7/b5r r", "r5b/7/7/7/7/7/b5r r 26",
+            "r5b/7/7/7/7/7/b5rr 0", "r5b/7/7/7/7/7/b5r r0",
+            "r5b/7/7/7/7/7/b5r r 0 x", "r5b/7/8/7/7/7/b5r r 0",
+        };
+        for (String pos : bad) {
+            try {
+                b1.setPosition(pos);
+                fail("bad position accepted: " + pos);
+            } catch (GameException excp) {
+                assertEquals("board changed by bad position",
+                        last, b1.toPosition());
+            }
+        }
+    }
+
+    @Test
+    public void testSnapshot() {
+        Board b0 = new Board();
+        b0.setBlock('c', '3');
+        Snapshot s0 = b0.snapshot();
+        assertSame("snapshot not reused", s0, b0.snapshot());
+        String pos0 = b0.toPosition();
+        makeMoves(b0, GAME1);
+        assertEquals("snapshot changed by moves", pos0, s0.toPosition());
+        Snapshot s1 = b0.snapshot();
+        assertNotSame("stale snapshot returned", s0, s1);
+        for (char c = 'a'; c <= 'g'; c += 1) {
+            for (char r = '1'; r <= '7'; r += 1) {
+                assertEquals("snapshot has wrong contents at " + c + r,
+                        b0.get(c, r), s1.get(c, r));
+            }
+        }
+        assertEquals("wrong player to move", b0.whoseMove(),
+                s1.whoseMove());
+        assertEquals("wrong number of moves", GAME1.length, s1.numMoves());
+        assertEquals("wrong last move", Move.move(GAME1[GAME1.length - 1]),
+                s1.lastMove());
+        assertNull("last move without moves", s0.lastMove());
+        assertEquals("wrong key", b0.key(), s1.key());
+        assertEquals("wrong red count", b0.redPieces(), s1.numPieces(RED));
+        assertTrue("legal move rejected", s1.legalMove(Move.move("g1-f1")));
+        assertFalse("illegal move accepted",
+                s1.legalMove(Move.move("a1-b1")));
+        b0.undo();
+        b0.undo();
+        b0.makeMove(GAME1[GAME1.length - 2]);
+        b0.makeMove(GAME1[GAME1.length - 1]);
+        assertEquals("equal positions have unequal snapshots",
+                s1, b0.snapshot());
+    }
+
+    @Test
+    public void testUndoJumps() {
+        Board b = new Board();
+        makeMoves(b, new String[] { "a7-a5", "a1-a3" });
+        assertEquals("wrong numJumps", 2, b.numJumps());
+        b.makeMove('a', '5', 'a', '4');
+        assertEquals("extend did not reset numJumps", 0, b.numJumps());
+        b.undo();
+        assertEquals("undo did not restore numJumps", 2, b.numJumps());
+    }
+
+    @Test
+    public void testAccumulator() {
+        Network net = Network.material();
+        Network.Accumulator acc = net.newAccumulator(),
+            fresh = net.newAccumulator();
+        Board b = new Board();
+        b.setBlock('c', '3');
+        b.setAccumulator(acc);
+        makeMoves(b, GAME1);
+        fresh.refresh(b);
+        assertEquals("incremental and full evaluations differ",
+                fresh.evaluate(), acc.evaluate());
+        assertEquals("material network does not count pieces",
+                b.redPieces() - b.bluePieces(), acc.evaluate());
+        for (int i = 0; i < GAME1.length; i += 1) {
+            b.undo();
+        }
+        fresh.refresh(b);
+        assertEquals("undo did not restore accumulator",
+                fresh.evaluate(), acc.evaluate());
+        assertEquals("wrong score after undo", 0, acc.evaluate());
+    }
+
+    @Test
+    public void testBatchFeatures() {
+        PositionBatch batch = new PositionBatch(20),
+            scalar = new PositionBatch(20, new Kernel());
+        Board b = new Board();
+        for (String move : UNDO2MOVES) {
+            b.makeMove(move);
+            batch.add(b);
+            scalar.add(b);
+        }
+        batch.computeFeatures();
+        scalar.computeFeatures();
+        for (int i = 0; i < batch.size(); i += 1) {
+            for (int f = 0; f < PositionBatch.FEATURES; f += 1) {
+                assertEquals("kernels disagree", scalar.feature(f, i),
+                        batch.feature(f, i));
+            }
+        }
+        int last = batch.size() - 1;
+        assertEquals("wrong red count", b.redPieces(),
+                batch.feature(PositionBatch.RED_PIECES, last));
+        assertEquals("wrong blue count", b.bluePieces(),
+                batch.feature(PositionBatch.BLUE_PIECES, last));
+    }
+
     @Test
     public void testUndo2() {
         Board b = new Board();
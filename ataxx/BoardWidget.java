@@ -9,9 +9,13 @@ import ucb.gui2.Pad;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.BasicStroke;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
 
 import java.awt.event.MouseEvent;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 
 import static ataxx.PieceColor.*;
@@ -50,11 +54,16 @@ class BoardWidget extends Pad  {
     private static final Color SELECTED_COLOR = new Color(150, 150, 150);
     /** Color of blocks. */
     private static final Color BLOCK_COLOR = Color.BLACK;
+    /** Color marking the move an AI is considering. */
+    private static final Color VARIATION_COLOR = new Color(0, 160, 0);
 
     /** Stroke for lines. */
     private static final BasicStroke LINE_STROKE = new BasicStroke(1.0f);
     /** Stroke for blocks. */
     private static final BasicStroke BLOCK_STROKE = new BasicStroke(5.0f);
+    /** Stroke for marking the move an AI is considering. */
+    private static final BasicStroke VARIATION_STROKE =
+        new BasicStroke(3.0f);
 
     /** A new widget sending commands resulting from mouse clicks
      *  to COMMANDQUEUE. */
@@ -70,26 +79,22 @@ class BoardWidget extends Pad  {
     /** Indicate that SQ (of the form CR) is selected, or that none is
      *  selected if SQ is null. */
     void selectSquare(String sq) {
+        repaintSquare(_selectedCol, _selectedRow);
         if (sq == null) {
             _selectedCol = _selectedRow = 0;
         } else {
             _selectedCol = sq.charAt(0);
             _selectedRow = sq.charAt(1);
         }
-        repaint();
+        repaintSquare(_selectedCol, _selectedRow);
     }
 
+    /** Paint the squares that intersect the clip region of G, which
+     *  normally covers only those that have changed (see update) on top
+     *  of the grid, which is drawn once and kept as an image. */
     @Override
-    public synchronized void paintComponent(Graphics2D g) {
-        g.setColor(BLANK_COLOR);
-        g.setStroke(LINE_STROKE);
-        g.setColor(LINE_COLOR);
-        for (int i = 0; i <= SIDE; i++) {
-            g.drawLine(0, SQDIM * i, _dim, SQDIM * i);
-        }
-        for (int i = 0; i <= SIDE; i++) {
-            g.drawLine(SQDIM * i, 0, SQDIM * i, _dim);
-        }
+    public void paintComponent(Graphics2D g) {
+        g.drawImage(grid(), 0, 0, null);
 
         if (_selectedCol != 0 && _selectedRow != 0 && !_blockMode) {
             g.setColor(SELECTED_COLOR);
@@ -97,10 +102,24 @@ class BoardWidget extends Pad  {
             int y = (7 - (_selectedRow - CHAR_1_INT)) * SQDIM;
             g.fillRect(x, y, SQDIM, SQDIM);
         }
+        Snapshot model = _model;
+        if (model == null) {
+            return;
+        }
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, _dim, _dim);
+        }
+        char cFirst = (char) ('a' + Math.max(0, clip.x / SQDIM)),
+            cLast = (char) ('a' + Math.min(SIDE - 1,
+                                           (clip.x + clip.width) / SQDIM)),
+            rLast = (char) ('7' - Math.max(0, clip.y / SQDIM)),
+            rFirst = (char) ('7' - Math.min(SIDE - 1,
+                                            (clip.y + clip.height) / SQDIM));
         PieceColor piece = null;
-        for (char c0 = 'a'; c0 <= 'g'; c0++) {
-            for (char r0 = '1'; r0 <= '7'; r0++) {
-                piece = _model.get(c0, r0);
+        for (char c0 = cFirst; c0 <= cLast; c0++) {
+            for (char r0 = rFirst; r0 <= rLast; r0++) {
+                piece = model.get(c0, r0);
                 int x = (c0 - CHAR_A_INT) * SQDIM;
                 int y = (7 - (r0 - CHAR_1_INT)) * SQDIM;
                 if (piece.equals(BLOCKED)) {
@@ -111,11 +130,67 @@ class BoardWidget extends Pad  {
                     case BLUE -> g.setColor(BLUE_COLOR);
                     default -> g.setColor(BLANK_COLOR);
                     }
+                    g.setStroke(LINE_STROKE);
                     g.fillOval(x + PIECE_OFFSET,
                             y + PIECE_OFFSET, PIECE_RADIUS, PIECE_RADIUS);
                 }
             }
         }
+        List<Move> variation = _variation;
+        if (variation != null && !variation.isEmpty()
+            && !variation.get(0).isPass()) {
+            Move best = variation.get(0);
+            g.setStroke(VARIATION_STROKE);
+            g.setColor(VARIATION_COLOR);
+            g.drawRect((best.col0() - 'a') * SQDIM + 2,
+                       ('7' - best.row0()) * SQDIM + 2,
+                       SQDIM - 4, SQDIM - 4);
+            g.drawRect((best.col1() - 'a') * SQDIM + 2,
+                       ('7' - best.row1()) * SQDIM + 2,
+                       SQDIM - 4, SQDIM - 4);
+        }
+    }
+
+    /** Mark the first move of VARIATION, the line of play an AI is
+     *  currently considering, or remove the mark if VARIATION is null.
+     *  May be called from any thread. */
+    void showVariation(List<Move> variation) {
+        List<Move> old = _variation;
+        _variation = variation;
+        for (List<Move> v : Arrays.asList(old, variation)) {
+            if (v != null && !v.isEmpty() && !v.get(0).isPass()) {
+                Move best = v.get(0);
+                repaintSquare(best.col0(), best.row0());
+                repaintSquare(best.col1(), best.row1());
+            }
+        }
+    }
+
+    /** Return the image of the empty grid, creating it if need be. */
+    private BufferedImage grid() {
+        if (_grid == null) {
+            _grid = new BufferedImage(_dim + 1, _dim + 1,
+                                      BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = _grid.createGraphics();
+            g.setStroke(LINE_STROKE);
+            g.setColor(LINE_COLOR);
+            for (int i = 0; i <= SIDE; i++) {
+                g.drawLine(0, SQDIM * i, _dim, SQDIM * i);
+            }
+            for (int i = 0; i <= SIDE; i++) {
+                g.drawLine(SQDIM * i, 0, SQDIM * i, _dim);
+            }
+            g.dispose();
+        }
+        return _grid;
+    }
+
+    /** Arrange to repaint square C R, if it is on the board. */
+    private void repaintSquare(char c, char r) {
+        if (c >= 'a' && c <= 'g' && r >= '1' && r <= '7') {
+            repaint((c - CHAR_A_INT) * SQDIM, (7 - (r - CHAR_1_INT)) * SQDIM,
+                    SQDIM + 1, SQDIM + 1);
+        }
     }
 
     /** Draw a block centered at (CX, CY) on G. */
@@ -130,6 +205,7 @@ class BoardWidget extends Pad  {
 
     /** Clear selected block, if any, and turn off block mode. */
     void reset() {
+        repaintSquare(_selectedCol, _selectedRow);
         _selectedRow = _selectedCol = 0;
         setBlockMode(false);
     }
@@ -137,14 +213,13 @@ class BoardWidget extends Pad  {
     /** Set block mode on iff ON. */
     void setBlockMode(boolean on) {
         _blockMode = on;
+        repaintSquare(_selectedCol, _selectedRow);
     }
 
     /** Issue move command indicated by mouse-click event WHERE. */
     private void handleClick(String unused, MouseEvent where) {
         int x = where.getX(), y = where.getY();
         char mouseCol, mouseRow;
-        getGraphics().setColor(SELECTED_COLOR);
-        getGraphics().fillRect(x, y, x + SQDIM, y + SQDIM);
         if (where.getButton() == MouseEvent.BUTTON1) {
             mouseCol = (char) (x / SQDIM + 'a');
             mouseRow = (char) ((SQDIM * SIDE - y) / SQDIM + '1');
@@ -155,33 +230,57 @@ class BoardWidget extends Pad  {
                     selectSquare("" + mouseCol + mouseRow);
                 } else {
                     if (_selectedCol != 0) {
-                        if (_model.legalMove(_selectedCol, _selectedRow,
-                                mouseCol, mouseRow)) {
+                        Snapshot model = _model;
+                        if (model != null
+                            && model.legalMove(_selectedCol, _selectedRow,
+                                               mouseCol, mouseRow)) {
                             _commandQueue.offer("" + _selectedCol
                                     + _selectedRow + '-' + mouseCol + mouseRow);
                         }
                         selectSquare("" + mouseCol + mouseRow);
                         _selectedCol = _selectedRow = 0;
                     } else {
-                        _selectedCol = mouseCol;
-                        _selectedRow = mouseRow;
+                        selectSquare("" + mouseCol + mouseRow);
                     }
                 }
             }
         }
-        repaint();
     }
 
-    public synchronized void update(Board board) {
-        _model = new Board(board);
-        repaint();
+    /** Display POSITION, repainting only the squares whose contents
+     *  differ from those of the position last displayed (at most the
+     *  origin, destination, and neighbors of a move).  Called on the
+     *  event thread. */
+    public void update(Snapshot position) {
+        Snapshot old = _model;
+        _model = position;
+        if (old == null) {
+            repaint();
+            return;
+        }
+        long changed = 0;
+        for (PieceColor color : new PieceColor[] { RED, BLUE, BLOCKED }) {
+            changed |= old.bits(color) ^ position.bits(color);
+        }
+        for (; changed != 0; changed &= changed - 1) {
+            int bit = Long.numberOfTrailingZeros(changed);
+            repaintSquare((char) ('a' + bit % SIDE), (char) ('1' + bit / SIDE));
+        }
     }
 
     /** Dimension of current drawing surface in pixels. */
     private int _dim;
 
-    /** Model being displayed. */
-    private static Board _model;
+    /** Position being displayed, or null if none has been supplied.
+     *  Replaced as a whole (never modified) by update, so readers need
+     *  no locking. */
+    private volatile Snapshot _model;
+
+    /** Image of the empty grid, or null if not yet drawn. */
+    private BufferedImage _grid;
+
+    /** Line of play marked by showVariation, or null. */
+    private volatile List<Move> _variation;
 
     /** Coordinates of currently selected square, or '\0' if no selection. */
     private char _selectedCol, _selectedRow;
@@ -0,0 +1,313 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static ataxx.PieceColor.*;
+import static ataxx.GameException.error;
+
+/** Broadcasts a game as it is played to any number of spectators, who
+ *  connect by TCP to a port on the local host.  A spectator receives a
+ *  stream of binary frames (integers in big-endian order; squares
+ *  numbered as in BitBoard, so that square c r is (r-'1') * 7 + c-'a',
+ *  and sets of squares as bit sets of those numbers):
+ *
+ *    SNAPSHOT (31 bytes): 'S', the number of moves made (4 bytes), the
+ *        sets of red, blue, and blocked squares (8 bytes each), the
+ *        player to move (0 for red, 1 for blue), and the number of
+ *        consecutive jumps (1 byte each).
+ *    DELTA (15 bytes): 'D', the number of moves made (4 bytes), the
+ *        from and to squares of the move just made (1 byte each; both
+ *        255 for a pass), and the set of opposing pieces it captured
+ *        (8 bytes).
+ *
+ *  The first frame is always a snapshot of the current position.  Each
+ *  move is then sent as a delta, and any other change (a new game, an
+ *  undo, a block) as a snapshot.
+ *
+ *  Each frame is encoded once, into a buffer shared by all spectators.
+ *  A single thread writes to all of them with non-blocking writes, so
+ *  that a spectator that reads slowly never delays the game or the
+ *  others.  Frames awaiting a slow spectator queue up to MAX_QUEUED;
+ *  beyond that, they are dropped in favor of a single snapshot of the
+ *  latest position, from which the spectator can continue.
+ *  @author Aayush Gupta
+ */
+class Broadcaster {
+
+    /** Most frames waiting to be sent to a spectator. */
+    static final int MAX_QUEUED = 64;
+    /** Frame types. */
+    static final byte SNAPSHOT = 'S', DELTA = 'D';
+    /** Square number denoting the squares of a pass. */
+    static final int PASS_SQUARE = 255;
+    /** Sizes of frames in bytes. */
+    private static final int SNAPSHOT_SIZE = 31, DELTA_SIZE = 15;
+
+    /** A broadcaster of the snapshots published by PUBLISHER to spectators
+     *  connecting to PORT. */
+    Broadcaster(Publisher publisher, int port) {
+        try {
+            _selector = Selector.open();
+            _listener = ServerSocketChannel.open();
+            _listener.bind(new InetSocketAddress(InetAddress
+                                                 .getLoopbackAddress(),
+                                                 port));
+            _listener.configureBlocking(false);
+            _listener.register(_selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException excp) {
+            throw error("cannot broadcast on port %d: %s", port,
+                        excp.getMessage());
+        }
+        Thread thread = new Thread(this::run, "broadcaster");
+        thread.setDaemon(true);
+        thread.start();
+        publisher.subscribe(this::publish, Runnable::run, 0);
+    }
+
+    /** Return the port on which I accept spectators. */
+    int port() {
+        return _listener.socket().getLocalPort();
+    }
+
+    /** Encode POSITION as a delta from the position last published, if
+     *  it follows from it by a move, and otherwise as a snapshot, and
+     *  pass it to my thread to send. */
+    private void publish(Snapshot position) {
+        Snapshot prev = _published;
+        _published = position;
+        _inbox.add(new Frame(position, frame(prev, position)));
+        _selector.wakeup();
+    }
+
+    /** Return a delta frame for the move from PREV to POSITION, if
+     *  POSITION follows from PREV by a move, and otherwise (as after an
+     *  undo, or if PREV is null) a snapshot frame for POSITION. */
+    static ByteBuffer frame(Snapshot prev, Snapshot position) {
+        if (prev != null && position.lastMove() != null
+            && position.numMoves() == prev.numMoves() + 1) {
+            return delta(prev, position);
+        } else {
+            return snapshot(position);
+        }
+    }
+
+    /** Return a snapshot frame for POSITION. */
+    static ByteBuffer snapshot(Snapshot position) {
+        ByteBuffer frame = ByteBuffer.allocate(SNAPSHOT_SIZE);
+        frame.put(SNAPSHOT).putInt(position.numMoves())
+            .putLong(position.bits(RED)).putLong(position.bits(BLUE))
+            .putLong(position.bits(BLOCKED))
+            .put((byte) (position.whoseMove() == RED ? 0 : 1))
+            .put((byte) position.numJumps());
+        return frame.flip().asReadOnlyBuffer();
+    }
+
+    /** Return a delta frame for the move from PREV to POSITION. */
+    static ByteBuffer delta(Snapshot prev, Snapshot position) {
+        Move move = position.lastMove();
+        PieceColor mover = prev.whoseMove();
+        ByteBuffer frame = ByteBuffer.allocate(DELTA_SIZE);
+        frame.put(DELTA).putInt(position.numMoves());
+        if (move.isPass()) {
+            frame.put((byte) PASS_SQUARE).put((byte) PASS_SQUARE);
+        } else {
+            frame.put((byte) square(move.col0(), move.row0()))
+                .put((byte) square(move.col1(), move.row1()));
+        }
+        frame.putLong(position.bits(mover) & prev.bits(mover.opposite()));
+        return frame.flip().asReadOnlyBuffer();
+    }
+
+    /** Return the number of square C R. */
+    private static int square(char c, char r) {
+        return (r - '1') * Board.SIDE + c - 'a';
+    }
+
+    /** Accept spectators and send them frames, as described above. */
+    private void run() {
+        while (true) {
+            try {
+                _selector.select();
+            } catch (IOException excp) {
+                return;
+            }
+            for (Frame frame = _inbox.poll(); frame != null;
+                 frame = _inbox.poll()) {
+                _latest = frame.position;
+                _latestSnapshot = null;
+                for (Spectator spectator : _spectators) {
+                    spectator.send(frame.data);
+                }
+            }
+            Iterator<SelectionKey> keys = _selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if (!key.isValid()) {
+                    continue;
+                } else if (key.isAcceptable()) {
+                    accept();
+                } else if (key.isReadable()) {
+                    ((Spectator) key.attachment()).read();
+                }
+            }
+            for (Spectator spectator : new ArrayList<>(_spectators)) {
+                spectator.flush();
+            }
+        }
+    }
+
+    /** Accept a waiting spectator, if there is one, and queue a snapshot
+     *  of the current position for it. */
+    private void accept() {
+        try {
+            SocketChannel channel = _listener.accept();
+            if (channel == null) {
+                return;
+            }
+            channel.configureBlocking(false);
+            Spectator spectator = new Spectator(channel);
+            _spectators.add(spectator);
+            if (_latest != null) {
+                spectator.send(latestSnapshot());
+            }
+        } catch (IOException excp) {
+            /* Ignore a connection lost before it could be accepted. */
+        }
+    }
+
+    /** Return a snapshot frame for the latest position, shared by all
+     *  spectators that need it. */
+    private ByteBuffer latestSnapshot() {
+        if (_latestSnapshot == null) {
+            _latestSnapshot = snapshot(_latest);
+        }
+        return _latestSnapshot;
+    }
+
+    /** A frame for a position, as passed to my thread. */
+    private static final class Frame {
+        /** The frame DATA for POSITION. */
+        Frame(Snapshot position, ByteBuffer data) {
+            this.position = position;
+            this.data = data;
+        }
+
+        /** The position after the frame. */
+        final Snapshot position;
+        /** The encoded frame. */
+        final ByteBuffer data;
+    }
+
+    /** A connected spectator, with the frames waiting to be sent to it. */
+    private final class Spectator {
+
+        /** A spectator connected by CHANNEL. */
+        Spectator(SocketChannel channel) throws IOException {
+            _channel = channel;
+            _key = channel.register(_selector, SelectionKey.OP_READ, this);
+        }
+
+        /** Queue FRAME to be sent, or, if too many frames are waiting,
+         *  drop all but any partly sent and queue a snapshot of the
+         *  latest position instead. */
+        void send(ByteBuffer frame) {
+            if (_queue.size() < MAX_QUEUED) {
+                _queue.add(frame.duplicate());
+                return;
+            }
+            ByteBuffer current = _queue.peek();
+            _queue.clear();
+            if (current.position() > 0) {
+                _queue.add(current);
+            }
+            _queue.add(latestSnapshot().duplicate());
+        }
+
+        /** Write as much of my waiting frames as my connection will take
+         *  without blocking, and ask to be told when it will take more if
+         *  some remain. */
+        void flush() {
+            try {
+                while (!_queue.isEmpty()) {
+                    ByteBuffer frame = _queue.peek();
+                    _channel.write(frame);
+                    if (frame.hasRemaining()) {
+                        break;
+                    }
+                    _queue.poll();
+                }
+                _key.interestOps(_queue.isEmpty() ? SelectionKey.OP_READ
+                                 : SelectionKey.OP_READ
+                                   | SelectionKey.OP_WRITE);
+            } catch (IOException excp) {
+                close();
+            }
+        }
+
+        /** Discard anything the spectator sends, closing the connection
+         *  when it does. */
+        void read() {
+            try {
+                _scratch.clear();
+                if (_channel.read(_scratch) < 0) {
+                    close();
+                }
+            } catch (IOException excp) {
+                close();
+            }
+        }
+
+        /** Disconnect. */
+        private void close() {
+            _spectators.remove(this);
+            _key.cancel();
+            try {
+                _channel.close();
+            } catch (IOException excp) {
+                /* Ignore IOException */
+            }
+        }
+
+        /** Connection to the spectator. */
+        private final SocketChannel _channel;
+        /** Registration of _channel with my selector. */
+        private final SelectionKey _key;
+        /** Frames waiting to be sent, the first possibly partly sent. */
+        private final Queue<ByteBuffer> _queue = new ArrayDeque<>();
+    }
+
+    /** Selects spectators that are ready for reading or writing. */
+    private final Selector _selector;
+    /** Accepts spectators. */
+    private final ServerSocketChannel _listener;
+    /** Frames published but not yet seen by my thread. */
+    private final Queue<Frame> _inbox = new ConcurrentLinkedQueue<>();
+    /** The position last published (used only by publish). */
+    private Snapshot _published;
+    /** The position of the last frame seen by my thread, or null. */
+    private Snapshot _latest;
+    /** Snapshot frame for _latest, or null if not yet needed. */
+    private ByteBuffer _latestSnapshot;
+    /** Connected spectators. */
+    private final List<Spectator> _spectators = new ArrayList<>();
+    /** Buffer for reading (and discarding) input from spectators. */
+    private final ByteBuffer _scratch = ByteBuffer.allocate(256);
+}
@@ -0,0 +1,191 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import static ataxx.PieceColor.*;
+import static org.junit.Assert.*;
+
+/** Tests of the frames sent to spectators by Broadcaster, which are
+ *  decoded here as a spectator would.
+ *  @author Aayush Gupta
+ */
+public class BroadcasterTest {
+
+    /** Return the number of square CR, as in frames. */
+    private static int sq(String cr) {
+        return (cr.charAt(1) - '1') * Board.SIDE + cr.charAt(0) - 'a';
+    }
+
+    /** Return the set of squares SQUARES, as in frames. */
+    private static long set(String... squares) {
+        long result = 0;
+        for (String cr : squares) {
+            result |= 1L << sq(cr);
+        }
+        return result;
+    }
+
+    /** A position as a spectator reconstructs it from frames. */
+    private static class View {
+        /** Apply FRAME, which must be a whole frame, to me. */
+        void apply(ByteBuffer frame) {
+            assertTrue("frame is shared read-only", frame.isReadOnly());
+            ByteBuffer data = frame.duplicate();
+            byte type = data.get();
+            moves = data.getInt();
+            if (type == Broadcaster.SNAPSHOT) {
+                assertEquals("snapshot size", 31, frame.remaining());
+                red = data.getLong();
+                blue = data.getLong();
+                blocked = data.getLong();
+                toMove = data.get() == 0 ? RED : BLUE;
+                jumps = data.get();
+            } else {
+                assertEquals("unknown frame type", Broadcaster.DELTA, type);
+                assertEquals("delta size", 15, frame.remaining());
+                int from = data.get() & 0xff, to = data.get() & 0xff;
+                long captured = data.getLong();
+                long mine = toMove == RED ? red : blue;
+                long theirs = toMove == RED ? blue : red;
+                if (from != Broadcaster.PASS_SQUARE) {
+                    int dc = Math.abs(from % Board.SIDE - to % Board.SIDE),
+                        dr = Math.abs(from / Board.SIDE - to / Board.SIDE);
+                    if (Math.max(dc, dr) == 2) {
+                        mine &= ~(1L << from);
+                        jumps += 1;
+                    } else {
+                        jumps = 0;
+                    }
+                    mine |= 1L << to;
+                }
+                assertEquals("captures are opposing pieces", captured,
+                             theirs & captured);
+                mine |= captured;
+                theirs &= ~captured;
+                red = toMove == RED ? mine : theirs;
+                blue = toMove == RED ? theirs : mine;
+                toMove = toMove.opposite();
+            }
+            assertFalse("trailing bytes", data.hasRemaining());
+        }
+
+        /** Check that I agree with POSITION. */
+        void check(Snapshot position) {
+            assertEquals("moves", position.numMoves(), moves);
+            assertEquals("red", position.bits(RED), red);
+            assertEquals("blue", position.bits(BLUE), blue);
+            assertEquals("blocks", position.bits(BLOCKED), blocked);
+            assertEquals("to move", position.whoseMove(), toMove);
+            assertEquals("jumps", position.numJumps(), jumps);
+        }
+
+        /** Reconstructed position. */
+        long red, blue, blocked;
+        /** Reconstructed player to move. */
+        PieceColor toMove;
+        /** Reconstructed move count and consecutive jumps. */
+        int moves, jumps;
+    }
+
+    @Test
+    public void testSnapshot() {
+        Board board = new Board();
+        board.setBlock("b2");
+        ByteBuffer frame = Broadcaster.frame(null, board.snapshot());
+        assertEquals(Broadcaster.SNAPSHOT, frame.get(0));
+        assertEquals(0, frame.getInt(1));
+        assertEquals(set("a7", "g1"), frame.getLong(5));
+        assertEquals(set("a1", "g7"), frame.getLong(13));
+        assertEquals(set("b2", "f2", "b6", "f6"), frame.getLong(21));
+        assertEquals(0, frame.get(29));
+        assertEquals(0, frame.get(30));
+        View view = new View();
+        view.apply(frame);
+        view.check(board.snapshot());
+    }
+
+    @Test
+    public void testDeltas() {
+        Board board = new Board();
+        View view = new View();
+        Snapshot prev = board.snapshot();
+        view.apply(Broadcaster.frame(null, prev));
+        String[] moves = { "a7-a6", "g7-e7", "a6-c6", "e7-d7" };
+        for (String move : moves) {
+            board.makeMove(Move.move(move));
+            ByteBuffer frame = Broadcaster.frame(prev, board.snapshot());
+            assertEquals(Broadcaster.DELTA, frame.get(0));
+            view.apply(frame);
+            view.check(board.snapshot());
+            prev = board.snapshot();
+        }
+
+        board.makeMove(Move.move("a7-b7"));
+        ByteBuffer clone = Broadcaster.frame(prev, board.snapshot());
+        assertEquals(5, clone.getInt(1));
+        assertEquals(sq("a7"), clone.get(5));
+        assertEquals(sq("b7"), clone.get(6));
+        assertEquals("clone recaptures c6", set("c6"), clone.getLong(7));
+        view.apply(clone);
+        view.check(board.snapshot());
+        prev = board.snapshot();
+
+        board.makeMove(Move.move("a1-b3"));
+        board.makeMove(Move.move("g1-e2"));
+        ByteBuffer skipped = Broadcaster.frame(prev, board.snapshot());
+        assertEquals("two moves at once sent as a snapshot",
+                     Broadcaster.SNAPSHOT, skipped.get(0));
+        view.apply(skipped);
+        view.check(board.snapshot());
+    }
+
+    @Test
+    public void testJumpCaptures() {
+        Board board = new Board();
+        board.makeMove(Move.move("a7-b7"));
+        board.makeMove(Move.move("g7-e7"));
+        board.makeMove(Move.move("g1-g2"));
+        board.makeMove(Move.move("e7-e6"));
+        Snapshot prev = board.snapshot();
+        board.makeMove(Move.move("b7-d6"));
+        ByteBuffer frame = Broadcaster.frame(prev, board.snapshot());
+        assertEquals(Broadcaster.DELTA, frame.get(0));
+        assertEquals(5, frame.getInt(1));
+        assertEquals(sq("b7"), frame.get(5));
+        assertEquals(sq("d6"), frame.get(6));
+        assertEquals(set("e7", "e6"), frame.getLong(7));
+        View view = new View();
+        view.apply(Broadcaster.snapshot(prev));
+        view.apply(frame);
+        view.check(board.snapshot());
+    }
+
+    @Test
+    public void testUndo() {
+        Board board = new Board();
+        board.makeMove(Move.move("a7-a6"));
+        Snapshot before = board.snapshot();
+        board.makeMove(Move.move("g7-e7"));
+        Snapshot after = board.snapshot();
+        board.undo();
+        ByteBuffer frame = Broadcaster.frame(after, board.snapshot());
+        assertEquals("undo sends a snapshot", Broadcaster.SNAPSHOT,
+                     frame.get(0));
+        assertEquals(Broadcaster.snapshot(before), frame);
+        View view = new View();
+        view.apply(Broadcaster.snapshot(after));
+        view.apply(frame);
+        view.check(before);
+
+        board.makeMove(Move.move("g7-g6"));
+        frame = Broadcaster.frame(board.snapshot(), board.snapshot());
+        assertEquals("no move between positions", Broadcaster.SNAPSHOT,
+                     frame.get(0));
+    }
+}
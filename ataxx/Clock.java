@@ -0,0 +1,85 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+import java.util.Stack;
+
+import static ataxx.PieceColor.*;
+
+/** The clocks of the two players under a time control that gives each
+ *  a base amount of time for the game plus an increment for each move
+ *  made.  A player whose time becomes negative loses.  Times are in
+ *  milliseconds.  The clocks remember their times before each move, so
+ *  that undoing a move also gives back the time it took.
+ *  @author Aayush Gupta
+ */
+class Clock {
+
+    /** Clocks each starting with BASE milliseconds, to which INCREMENT
+     *  milliseconds are added after each move. */
+    Clock(long base, long increment) {
+        _base = base;
+        _increment = increment;
+        reset();
+    }
+
+    /** Set both clocks back to the base time, forgetting all moves. */
+    void reset() {
+        _remaining[RED.ordinal()] = _remaining[BLUE.ordinal()] = _base;
+        _history.clear();
+    }
+
+    /** Return the time remaining to WHO. */
+    long remaining(PieceColor who) {
+        return _remaining[who.ordinal()];
+    }
+
+    /** Return the time added after each move. */
+    long increment() {
+        return _increment;
+    }
+
+    /** Record that WHO took MILLIS milliseconds to make a move.  If WHO
+     *  did not run out of time meanwhile, adds the increment to WHO's
+     *  clock.  Returns false iff WHO ran out of time. */
+    boolean moved(PieceColor who, long millis) {
+        _history.push(_remaining.clone());
+        _remaining[who.ordinal()] -= millis;
+        if (_remaining[who.ordinal()] < 0) {
+            return false;
+        }
+        _remaining[who.ordinal()] += _increment;
+        return true;
+    }
+
+    /** Set both clocks back to their times before the last move recorded
+     *  by moved that has not been undone.  Does nothing if there is no
+     *  such move (as when the move was made before the clocks were
+     *  started). */
+    void undo() {
+        if (!_history.isEmpty()) {
+            long[] previous = _history.pop();
+            System.arraycopy(previous, 0, _remaining, 0, previous.length);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Red %.1f s, Blue %.1f s (+%.1f s per move)",
+                             Math.max(0, remaining(RED)) / 1000.0,
+                             Math.max(0, remaining(BLUE)) / 1000.0,
+                             _increment / 1000.0);
+    }
+
+    /** Base time. */
+    private final long _base;
+    /** Increment per move. */
+    private final long _increment;
+    /** Time remaining, indexed by the ordinal of the player's color. */
+    private final long[] _remaining = new long[PieceColor.values().length];
+    /** Copies of _remaining from before each move not undone, the latest
+     *  on top. */
+    private final Stack<long[]> _history = new Stack<>();
+}
@@ -0,0 +1,118 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+import org.junit.Test;
+
+import static ataxx.PieceColor.*;
+import static org.junit.Assert.*;
+
+/** Tests of the Clock and TimeManager classes.
+ *  @author Aayush Gupta
+ */
+public class ClockTest {
+
+    @Test
+    public void testIncrement() {
+        Clock clock = new Clock(60_000, 2_000);
+        assertTrue(clock.moved(RED, 5_000));
+        assertEquals(57_000, clock.remaining(RED));
+        assertEquals(60_000, clock.remaining(BLUE));
+        assertTrue(clock.moved(BLUE, 0));
+        assertEquals(62_000, clock.remaining(BLUE));
+        assertEquals("Red 57.0 s, Blue 62.0 s (+2.0 s per move)",
+                     clock.toString());
+    }
+
+    @Test
+    public void testFlag() {
+        Clock clock = new Clock(1_000, 500);
+        assertTrue("using exactly the time left is allowed",
+                   clock.moved(RED, 1_000));
+        assertEquals(500, clock.remaining(RED));
+        assertFalse("ran out of time", clock.moved(RED, 501));
+        assertEquals("no increment after flagging", -1,
+                     clock.remaining(RED));
+        assertEquals("Red 0.0 s, Blue 1.0 s (+0.5 s per move)",
+                     clock.toString());
+    }
+
+    @Test
+    public void testUndo() {
+        Clock clock = new Clock(10_000, 1_000);
+        clock.moved(RED, 3_000);
+        clock.moved(BLUE, 4_000);
+        clock.moved(RED, 9_000);
+        assertEquals(-1_000, clock.remaining(RED));
+        clock.undo();
+        assertEquals(8_000, clock.remaining(RED));
+        assertEquals(7_000, clock.remaining(BLUE));
+        clock.undo();
+        assertEquals(10_000, clock.remaining(BLUE));
+        clock.undo();
+        assertEquals(10_000, clock.remaining(RED));
+        clock.undo();
+        assertEquals("undo past the start does nothing", 10_000,
+                     clock.remaining(RED));
+        clock.moved(RED, 2_000);
+        clock.reset();
+        clock.undo();
+        assertEquals("reset forgets moves", 10_000, clock.remaining(RED));
+    }
+
+    @Test
+    public void testLimits() {
+        TimeManager time = new TimeManager(60_020, 0, 45);
+        assertEquals("60 s over 23 moves", 2_608, time.targetMillis());
+        assertEquals(24_000, time.hardMillis());
+        time = new TimeManager(60_020, 2_000, 45);
+        assertEquals("plus 3/4 of the increment", 4_108,
+                     time.targetMillis());
+        time = new TimeManager(1_020, 0, 2);
+        assertEquals("at least 6 moves left", 166, time.targetMillis());
+        assertEquals(400, time.hardMillis());
+        time = new TimeManager(10_020, 100_000, 45);
+        assertEquals("target within hard limit", 4_000,
+                     time.targetMillis());
+        assertEquals(4_000, time.hardMillis());
+        time = new TimeManager(10, 0, 45);
+        assertEquals(1, time.targetMillis());
+        assertEquals(1, time.hardMillis());
+    }
+
+    @Test
+    public void testStop() {
+        Move a = Move.move("a7-b6"), b = Move.move("a7-b7");
+        TimeManager time = new TimeManager(60_020, 0, 45);
+        assertFalse(time.stop(a, 0, 1_000));
+        assertTrue("half the target passed", time.stop(a, 0, 1_304));
+
+        time = new TimeManager(60_020, 0, 45);
+        time.stop(a, 0, 100);
+        assertFalse("new best move stretches target",
+                    time.stop(b, 0, 1_400));
+        assertTrue(time.stop(b, 0, 2_300));
+
+        time = new TimeManager(60_020, 0, 45);
+        time.stop(a, 0, 100);
+        assertFalse("score drop stretches target", time.stop(a, -5, 1_400));
+
+        time = new TimeManager(60_020, 0, 45);
+        time.stop(a, 0, 100);
+        for (int k = 0; k < 10; k += 1) {
+            time.stop(k % 2 == 0 ? b : a, k * 10, 100);
+        }
+        assertTrue("stretch is limited", time.stop(b, 0, 3_913));
+
+        time = new TimeManager(60_020, 0, 45);
+        time.stop(a, Integer.MAX_VALUE, 100);
+        assertFalse("swing from a win is a swing", time.stop(a, -1, 1_400));
+
+        time = new TimeManager(10_020, 100_000, 45);
+        time.stop(a, 0, 10);
+        assertTrue("stretch is within hard limit",
+                   time.stop(b, 100, 2_000));
+    }
+}
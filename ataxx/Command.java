@@ -17,8 +17,15 @@ class Command {
 
     /** A list of all commands. */
     private static final String[] COMMAND_NAMES = {
-        "auto", "block", "board", "dump", "help", "manual",
-        "new", "q", "quiet", "quit", "seed", "undo", "verbose",
+        "auto", "bench", "block", "board", "dump", "explore", "h", "hash",
+        "help", "hint", "manual", "n", "new", "nodes", "q", "quiet",
+        "quit", "seed", "setpos", "time", "undo", "verbose", "warmup",
+    };
+
+    /** Commands whose operands are file names, which are not converted
+     *  to lower case. */
+    private static final String[] FILE_COMMANDS = {
+        "explore", "hash",
     };
 
     /** Command types.  PIECEMOVE indicates a move of the form
@@ -28,14 +35,25 @@ class Command {
     enum Type {
         COMMENT("#.*|$"),
         AUTO("auto\\s+(red|blue)"),
+        AUTO_MCTS("auto\\s+(red|blue)\\s+mcts"),
         BLOCK("block\\s+([a-g][1-7])"),
         MANUAL("manual\\s+(red|blue)"),
         SEED("seed\\s+(\\d+)"),
+        SETPOS("setpos\\s+(.+)"),
+        TIME("time(?:\\s+(\\d+(?:\\.\\d*)?)\\s+(\\d+(?:\\.\\d*)?))?"),
+        NODES("nodes\\s+(\\d+)"),
+        BENCH("bench(?:\\s+(\\d+))?"),
+        WARMUP("warmup(?:\\s+(\\d+))?"),
+        EXPLORE("explore(?:\\s+(\\S+))?"),
+        HASH_SAVE("hash\\s+(?i:save)(?:\\s+(\\S+))?"),
+        HASH_LOAD("hash\\s+(?i:load)\\s+(\\S+)"),
         START,
         /* Regular moves. */
         PIECEMOVE("(-|[a-g][1-7]-[a-g][1-7])"),
         QUIT("q|quit"),
-        NEW, DUMP, HELP,
+        HELP("h|help"),
+        NEW("n|new"),
+        DUMP, HINT,
         /* Extra commands. */
         BOARD, VERBOSE, QUIET, UNDO,
         /* Special "commands" internally generated. */
@@ -111,7 +129,7 @@ class Command {
         } else if (command.startsWith("#")) {
             return "#";
         }
-        command = command.toLowerCase();
+        command = lowerCase(command);
 
         int prefixLen = Math.max(command.indexOf(" "), command.length());
         String prefix = command.substring(0, prefixLen);
@@ -138,6 +156,18 @@ class Command {
         }
     }
 
+    /** Return COMMAND converted to lower case, except for the operands of
+     *  commands in FILE_COMMANDS. */
+    private static String lowerCase(String command) {
+        String name = command.split("\\s", 2)[0].toLowerCase();
+        for (String fileCommand : FILE_COMMANDS) {
+            if (fileCommand.equals(name)) {
+                return name + command.substring(name.length());
+            }
+        }
+        return command.toLowerCase();
+    }
+
     /** The command name. */
     private final Type _type;
     /** Command arguments. */
@@ -36,6 +36,8 @@ public class CommandTest {
         checkError("auto green");
         checkError("auto");
         checkError("auto red foo");
+        check("auto red mcts", AUTO_MCTS, "red");
+        check("auto blue  mcts", AUTO_MCTS, "blue");
     }
 
     @Test public void testBLOCK() {
@@ -50,6 +52,59 @@ public class CommandTest {
         checkError("seed 142 foo");
     }
 
+    @Test public void testSETPOS() {
+        check("setpos r5b/7/7/7/7/7/b5r r 0", SETPOS,
+              "r5b/7/7/7/7/7/b5r r 0");
+        check("SETPOS X5B/7/7/7/7/7/B5X B 3", SETPOS,
+              "x5b/7/7/7/7/7/b5x b 3");
+        checkError("setpos");
+    }
+
+    @Test public void testTIME() {
+        check("time 300 2", TIME, "300", "2");
+        check("time 0.5 0.", TIME, "0.5", "0.");
+        check("t", TIME, null, null);
+        checkError("time 300");
+        checkError("time -1 0");
+    }
+
+    @Test public void testWARMUP() {
+        check("warmup", WARMUP, (String) null);
+        check("warmup 500", WARMUP, "500");
+        check("w", WARMUP, (String) null);
+        checkError("warmup fast");
+    }
+
+    @Test public void testNODES() {
+        check("nodes 100000", NODES, "100000");
+        check("nodes 0", NODES, "0");
+        checkError("nodes");
+        checkError("nodes -5");
+    }
+
+    @Test public void testBENCH() {
+        check("bench", BENCH, (String) null);
+        check("bench 3", BENCH, "3");
+        checkError("bench x");
+    }
+
+    @Test public void testEXPLORE() {
+        check("explore", EXPLORE, (String) null);
+        check("explore Games.idx", EXPLORE, "Games.idx");
+        check("EXPLORE Games.idx", EXPLORE, "Games.idx");
+        checkError("explore a b");
+    }
+
+    @Test public void testHASH() {
+        check("hash save", HASH_SAVE, (String) null);
+        check("hash save Search.tt", HASH_SAVE, "Search.tt");
+        check("HASH Save Search.tt", HASH_SAVE, "Search.tt");
+        check("hash load Search.tt", HASH_LOAD, "Search.tt");
+        checkError("hash load");
+        checkError("hash");
+        checkError("hash save a b");
+    }
+
     @Test public void testSTART() {
         check("start", START);
         checkError("start foo");
@@ -65,8 +120,22 @@ public class CommandTest {
         checkError("quit foo");
     }
 
+    @Test public void testHELP() {
+        check("help", HELP);
+        check("h", HELP);
+        check("HELP", HELP);
+        checkError("help me");
+    }
+
+    @Test public void testHINT() {
+        check("hint", HINT);
+        check("hi", HINT);
+        checkError("hint a1-b1");
+    }
+
     @Test public void testNEW() {
         check("new", NEW);
+        check("n", NEW);
         checkError("new foo");
     }
 
@@ -0,0 +1,356 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static ataxx.PieceColor.*;
+
+/** Generates training data for position evaluators by self-play.
+ *
+ *  Several threads each play games between two AIs, starting from
+ *  positions made different by a random layout of blocks and a few
+ *  random opening moves.  For every position in which the side to move
+ *  has a choice, the generator records the position, the value the AI's
+ *  search gave it, and the eventual result of the game.
+ *
+ *  Records are written to numbered shard files in a directory.  Each
+ *  shard holds a header (magic number, format version, and number of
+ *  records) followed by up to a fixed number of fixed-size records; when
+ *  a shard is full, the writer starts the next one.  A record is
+ *
+ *      red pieces, blue pieces, blocks       3 longs, as for Board.bits
+ *      search value (positive favors red)    int
+ *      side to move (0 red, 1 blue)          byte
+ *      result (1 red won, -1 blue, 0 draw)   byte
+ *      consecutive jumps                     byte
+ *      unused                                byte
+ *
+ *  in big-endian order.  Finished games are passed whole, through a
+ *  bounded queue, to a single writer thread, so that playing threads do
+ *  no file operations.  A full queue makes them wait for the writer
+ *  rather than let finished games pile up in memory.
+ *  @author Aayush Gupta
+ */
+class DataGen {
+
+    /** Default number of records in a shard. */
+    static final int DEFAULT_SHARD = 1 << 16;
+
+    /** Identifies a shard file ("ATXD"). */
+    private static final int MAGIC = 0x41545844;
+    /** Current shard format version. */
+    private static final int VERSION = 1;
+    /** Size of a shard header in bytes: magic, version, number of
+     *  records, and an unused word. */
+    private static final int HEADER_SIZE = 16;
+    /** Size of a record in bytes. */
+    private static final int RECORD_SIZE = 32;
+    /** Byte offset of the result within a record. */
+    private static final int RESULT_OFFSET = 29;
+    /** Number of finished games that may wait for the writer. */
+    private static final int QUEUE_CAPACITY = 64;
+    /** Maximum number of calls to Board.setBlock in a starting
+     *  position. */
+    private static final int MAX_BLOCKS = 3;
+    /** Maximum number of random moves at the start of a game. */
+    private static final int MAX_OPENING = 4;
+    /** Initial capacity, in records, for the positions of one game. */
+    private static final int INIT_GAME_LENGTH = 128;
+
+    /** A generator that writes shards of SHARDSIZE records to the
+     *  directory named DIR, playing games on THREADS threads, recording
+     *  at most RATE positions per second (or any number, if RATE is 0),
+     *  choosing starting positions with random numbers seeded from SEED,
+     *  and reporting to REPORTER. */
+    DataGen(String dir, int threads, int rate, int shardSize, long seed,
+            Reporter reporter) {
+        _dir = Paths.get(dir);
+        _threads = threads;
+        _nanosPerRecord = rate == 0 ? 0 : 1_000_000_000L / rate;
+        _shardSize = shardSize;
+        _seed = seed;
+        _reporter = reporter;
+    }
+
+    /** Play GAMES games, write their positions, and return an exit
+     *  code: 0 if all were written, and 1 otherwise. */
+    int run(int games) {
+        try {
+            Files.createDirectories(_dir);
+        } catch (IOException excp) {
+            _reporter.err("Could not create %s", _dir);
+            return 1;
+        }
+        long start = System.nanoTime();
+        _nextFree.set(start);
+        Thread writer = new Thread(this::write);
+        writer.start();
+        List<Thread> players = new ArrayList<>();
+        for (int k = 0; k < _threads; k += 1) {
+            Random random = new Random(_seed + k);
+            Thread player = new Thread(() -> play(games, random));
+            player.start();
+            players.add(player);
+        }
+        try {
+            for (Thread player : players) {
+                player.join();
+            }
+            _queue.put(END);
+            writer.join();
+        } catch (InterruptedException excp) {
+            throw new Error("unexpected interrupt");
+        }
+        long nanos = Math.max(1, System.nanoTime() - start);
+        _reporter.msg("[datagen] %d games, %d positions in %d shards"
+                      + " (%d positions/sec)", _gamesWritten,
+                      _recordsWritten, _shards,
+                      _recordsWritten * 1_000_000_000L / nanos);
+        return _failure == null ? 0 : 1;
+    }
+
+    /** Play games, using RANDOM to choose starting positions, until GAMES
+     *  games have been started by all threads or the writer fails. */
+    private void play(int games, Random random) {
+        Game game = new Game(null, (b) -> { }, _reporter, false);
+        Board board = game.getBoard();
+        AI[] ais = new AI[PieceColor.values().length];
+        ais[RED.ordinal()] = new AI(game, RED, random.nextLong());
+        ais[BLUE.ordinal()] = new AI(game, BLUE, random.nextLong());
+        ByteBuffer records =
+            ByteBuffer.allocate(INIT_GAME_LENGTH * RECORD_SIZE);
+        while (_failure == null && _nextGame.getAndIncrement() < games) {
+            game.clear();
+            randomize(board, random);
+            records.clear();
+            while (board.getWinner() == null) {
+                PieceColor who = board.whoseMove();
+                if (!board.canMove(who)) {
+                    board.pass();
+                    continue;
+                }
+                AI ai = ais[who.ordinal()];
+                Move move = ai.findMove();
+                if (!records.hasRemaining()) {
+                    records = grow(records);
+                }
+                record(records, board, ai.lastScore());
+                board.makeMove(move);
+            }
+            byte result = (byte) (board.getWinner() == RED ? 1
+                                  : board.getWinner() == BLUE ? -1 : 0);
+            for (int p = RESULT_OFFSET; p < records.position();
+                 p += RECORD_SIZE) {
+                records.put(p, result);
+            }
+            records.flip();
+            if (records.hasRemaining()) {
+                pace(records.remaining() / RECORD_SIZE);
+                ByteBuffer copy = ByteBuffer.allocate(records.remaining());
+                copy.put(records).flip();
+                try {
+                    _queue.put(copy);
+                } catch (InterruptedException excp) {
+                    throw new Error("unexpected interrupt");
+                }
+            }
+        }
+    }
+
+    /** Set up a random starting position on BOARD, which must be clear,
+     *  by placing blocks and making opening moves chosen with RANDOM. */
+    private static void randomize(Board board, Random random) {
+        for (int k = random.nextInt(MAX_BLOCKS + 1); k > 0; k -= 1) {
+            char c = (char) ('a' + random.nextInt(Board.SIDE)),
+                r = (char) ('1' + random.nextInt(Board.SIDE));
+            if (board.legalBlock(c, r)) {
+                board.setBlock(c, r);
+            }
+        }
+        for (int k = random.nextInt(MAX_OPENING + 1);
+             k > 0 && board.getWinner() == null; k -= 1) {
+            List<Move> moves = board.possibleMoves(board.whoseMove());
+            if (moves.isEmpty()) {
+                board.pass();
+            } else {
+                board.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+        }
+    }
+
+    /** Append a record of the position on BOARD, with search value SCORE
+     *  and a result to be filled in later, to RECORDS. */
+    private static void record(ByteBuffer records, Board board, int score) {
+        records.putLong(board.bits(RED));
+        records.putLong(board.bits(BLUE));
+        records.putLong(board.bits(BLOCKED));
+        records.putInt(score);
+        records.put((byte) (board.whoseMove() == RED ? 0 : 1));
+        records.put((byte) 0);
+        records.put((byte) board.numJumps());
+        records.put((byte) 0);
+    }
+
+    /** Return a buffer twice the size of RECORDS, containing the same
+     *  data and with the same position. */
+    private static ByteBuffer grow(ByteBuffer records) {
+        ByteBuffer result = ByteBuffer.allocate(2 * records.capacity());
+        records.flip();
+        result.put(records);
+        return result;
+    }
+
+    /** Wait until N more records may be produced without exceeding the
+     *  rate limit. */
+    private void pace(int n) {
+        if (_nanosPerRecord == 0) {
+            return;
+        }
+        long cost = n * _nanosPerRecord;
+        long slot = _nextFree.getAndUpdate((t) ->
+            Math.max(t, System.nanoTime()) + cost);
+        long wait = slot - System.nanoTime();
+        if (wait > 0) {
+            try {
+                Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+            } catch (InterruptedException excp) {
+                throw new Error("unexpected interrupt");
+            }
+        }
+    }
+
+    /** Write the games in the queue to shards until END arrives. */
+    private void write() {
+        FileChannel shard = null;
+        int count = 0;
+        try {
+            while (true) {
+                ByteBuffer game = _queue.take();
+                if (game == END) {
+                    break;
+                }
+                if (_failure != null) {
+                    continue;
+                }
+                try {
+                    while (game.hasRemaining()) {
+                        if (shard == null || count == _shardSize) {
+                            close(shard, count);
+                            shard = open(_shards);
+                            _shards += 1;
+                            count = 0;
+                        }
+                        int n = Math.min(_shardSize - count,
+                                         game.remaining() / RECORD_SIZE);
+                        ByteBuffer part = game.slice(game.position(),
+                                                     n * RECORD_SIZE);
+                        writeFully(shard, part);
+                        game.position(game.position() + n * RECORD_SIZE);
+                        count += n;
+                        _recordsWritten += n;
+                    }
+                    _gamesWritten += 1;
+                } catch (IOException excp) {
+                    _failure = excp;
+                    _reporter.err("Could not write shard %d in %s",
+                                  _shards - 1, _dir);
+                }
+            }
+            close(shard, count);
+        } catch (IOException excp) {
+            _failure = excp;
+            _reporter.err("Could not write shard %d in %s",
+                          _shards - 1, _dir);
+        } catch (InterruptedException excp) {
+            throw new Error("unexpected interrupt");
+        }
+    }
+
+    /** Create shard number NUM and write a header for it with a record
+     *  count of 0, returning a channel positioned for its records. */
+    private FileChannel open(int num) throws IOException {
+        FileChannel shard =
+            FileChannel.open(_dir.resolve(String.format("shard-%05d.bin",
+                                                        num)),
+                             StandardOpenOption.WRITE,
+                             StandardOpenOption.CREATE,
+                             StandardOpenOption.TRUNCATE_EXISTING);
+        writeFully(shard, header(0));
+        return shard;
+    }
+
+    /** Record that SHARD, if not null, holds COUNT records, and close
+     *  it. */
+    private void close(FileChannel shard, int count) throws IOException {
+        if (shard == null) {
+            return;
+        }
+        try (shard) {
+            shard.position(0);
+            writeFully(shard, header(count));
+        }
+    }
+
+    /** Return a shard header for COUNT records, ready to write. */
+    private static ByteBuffer header(int count) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(0);
+        return header.flip();
+    }
+
+    /** Write all of DATA to CHAN. */
+    private static void writeFully(FileChannel chan, ByteBuffer data)
+        throws IOException {
+        while (data.hasRemaining()) {
+            chan.write(data);
+        }
+    }
+
+    /** Queue entry marking the end of the games. */
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    /** Directory to which shards are written. */
+    private final Path _dir;
+    /** Number of threads playing games. */
+    private final int _threads;
+    /** Minimum average time between records, or 0 for no limit. */
+    private final long _nanosPerRecord;
+    /** Maximum number of records in a shard. */
+    private final int _shardSize;
+    /** Seed for the random-number generators of the playing threads. */
+    private final long _seed;
+    /** Destination for progress and error messages. */
+    private final Reporter _reporter;
+
+    /** Finished games, as records waiting to be written. */
+    private final BlockingQueue<ByteBuffer> _queue =
+        new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    /** Number of the next game to be started. */
+    private final AtomicInteger _nextGame = new AtomicInteger();
+    /** Time at which the next record may be produced under the rate
+     *  limit. */
+    private final AtomicLong _nextFree = new AtomicLong();
+    /** First error encountered by the writer, or null. */
+    private volatile IOException _failure;
+    /** Number of games, records, and shards written so far (accessed by
+     *  the writer thread until it is joined). */
+    private int _gamesWritten, _shards;
+    /** Number of records written so far. */
+    private long _recordsWritten;
+}
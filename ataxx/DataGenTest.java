@@ -0,0 +1,120 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/** Tests of the training data written by DataGen.
+ *  @author Aayush Gupta
+ */
+public class DataGenTest {
+
+    /** Number of games generated. */
+    private static final int GAMES = 3;
+    /** Number of records in a full shard. */
+    private static final int SHARD = 40;
+    /** Size of a shard header and of a record in bytes. */
+    private static final int HEADER_SIZE = 16, RECORD_SIZE = 32;
+    /** Mask of the squares of the board, as in Board.bits. */
+    private static final long SQUARES = (1L << (Board.SIDE * Board.SIDE)) - 1;
+
+    /** Return the contents of the shards written by a single thread
+     *  generating GAMES games from SEED into a new directory, in order,
+     *  and add the message reported at the end to MESSAGES. */
+    private static List<ByteBuffer> generate(long seed, List<String> messages)
+        throws IOException {
+        Path dir = Files.createTempDirectory("datagen");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStream discard = new PrintStream(new ByteArrayOutputStream());
+        List<Path> files;
+        try {
+            DataGen gen =
+                new DataGen(dir.toString(), 1, 0, SHARD, seed,
+                            new TextReporter(new PrintStream(out), discard));
+            assertEquals("all written", 0, gen.run(GAMES));
+            try (Stream<Path> list = Files.list(dir)) {
+                files = list.sorted().collect(Collectors.toList());
+            }
+            List<ByteBuffer> result = new ArrayList<>();
+            for (int k = 0; k < files.size(); k += 1) {
+                assertEquals(String.format("shard-%05d.bin", k),
+                             files.get(k).getFileName().toString());
+                result.add(ByteBuffer.wrap(Files.readAllBytes(files.get(k))));
+            }
+            messages.add(out.toString().trim());
+            return result;
+        } finally {
+            try (Stream<Path> list = Files.list(dir)) {
+                for (Path file : list.collect(Collectors.toList())) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+
+    /** Check that the record at P in SHARD is well formed. */
+    private static void checkRecord(ByteBuffer shard, int p) {
+        long red = shard.getLong(p), blue = shard.getLong(p + 8),
+            blocks = shard.getLong(p + 16);
+        assertEquals("squares on the board", 0,
+                     (red | blue | blocks) & ~SQUARES);
+        assertEquals("squares hold one thing", 0,
+                     red & blue | red & blocks | blue & blocks);
+        assertTrue("both sides have pieces", red != 0 && blue != 0);
+        assertNotEquals("some square empty", SQUARES, red | blue | blocks);
+        byte side = shard.get(p + 28), result = shard.get(p + 29);
+        assertTrue("side to move", side == 0 || side == 1);
+        assertTrue("result", result >= -1 && result <= 1);
+        assertTrue("jumps", shard.get(p + 30) >= 0
+                   && shard.get(p + 30) < 25);
+        assertEquals("unused", 0, shard.get(p + 31));
+    }
+
+    @Test
+    public void testShards() throws IOException {
+        List<String> messages = new ArrayList<>();
+        List<ByteBuffer> shards = generate(34, messages);
+        assertFalse("records written", shards.isEmpty());
+        long records = 0;
+        for (int k = 0; k < shards.size(); k += 1) {
+            ByteBuffer shard = shards.get(k);
+            assertEquals("magic", 0x41545844, shard.getInt(0));
+            assertEquals("version", 1, shard.getInt(4));
+            int count = shard.getInt(8);
+            assertEquals("unused", 0, shard.getInt(12));
+            if (k < shards.size() - 1) {
+                assertEquals("earlier shards full", SHARD, count);
+            } else {
+                assertTrue("last shard not empty", count > 0);
+            }
+            assertEquals("size of shard " + k,
+                         HEADER_SIZE + count * RECORD_SIZE, shard.limit());
+            for (int p = HEADER_SIZE; p < shard.limit(); p += RECORD_SIZE) {
+                checkRecord(shard, p);
+            }
+            records += count;
+        }
+        assertEquals(String.format("[datagen] %d games, %d positions in %d"
+                                   + " shards", GAMES, records,
+                                   shards.size()),
+                     messages.get(0).replaceFirst(" \\(.*", ""));
+        assertEquals("same seed, same records", shards,
+                     generate(34, messages));
+    }
+}
@@ -7,7 +7,11 @@ package ataxx;
 import ucb.gui2.TopLevel;
 import ucb.gui2.LayoutSpec;
 
+import java.awt.EventQueue;
+
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
 
 import java.io.InputStream;
 import java.io.BufferedReader;
@@ -20,15 +24,17 @@ import static ataxx.Utils.*;
 /** The GUI for the Ataxx game.
  *  @author Aayush Gupta
  */
-class GUI extends TopLevel implements View, CommandSource, Reporter {
+class GUI extends TopLevel
+    implements View, CommandSource, Reporter, AI.Listener {
 
     /* The implementation strategy applied here is to make it as
      * unnecessary as possible for the rest of the program to know that it
      * is interacting with a GUI as opposed to a terminal.
      *
      * To this end, we first have made Board observable, so that the
-     * GUI gets notified of changes to a Game's board and can interrogate
-     * it as needed, while the Game and Board themselves need not be aware
+     * GUI gets notified of changes to a Game's board, receiving an
+     * immutable Snapshot of it that it can interrogate as needed from the
+     * event thread, while the Game and Board themselves need not be aware
      * that it is being watched.
      *
      * Second, instead of creating a new API by which the GUI communicates
@@ -41,12 +47,22 @@ class GUI extends TopLevel implements View, CommandSource, Reporter {
      * same API as would be used to read from a terminal. Thus, a simple
      * Manual player can handle all commands and moves from the GUI.
      *
+     * The Game's AIs think on the game's own thread, not the GUI's, and
+     * report their progress to the GUI as a search listener.  The
+     * "Move now" and "Cancel" buttons reach the game directly (through
+     * Game.stopThinking), since the game reads no commands while an AI
+     * is thinking.
+     *
      * See also Main.java for how this might get set up.
      */
 
     /** Minimum size of board in pixels. */
     private static final int MIN_SIZE = 300;
 
+    /** Minimum time between redisplays of the board in milliseconds
+     *  (about one per frame at 60 frames per second). */
+    private static final long FRAME_MILLIS = 16;
+
     /** A new GUI with TITLE as its window title. */
     GUI(String title) {
         super(title, true);
@@ -75,6 +91,15 @@ class GUI extends TopLevel implements View, CommandSource, Reporter {
         addLabel("Red to move", "State",
                  new LayoutSpec("y", 1, "anchor", "west"));
         addButton("Pass", this::doPass, new LayoutSpec("y", "1"));
+        addButton("Move now", this::moveNow, new LayoutSpec("y", "1"));
+        addButton("Cancel", this::cancelMove, new LayoutSpec("y", "1"));
+        addButton("Hint", (dummy) -> send("hint"), new LayoutSpec("y", "1"));
+    }
+
+    /** Control GAME, showing the progress of its AIs' searches. */
+    void setGame(Game game) {
+        _game = game;
+        game.setSearchListener(this);
     }
 
     /** Execute the "Quit" button function. */
@@ -107,11 +132,30 @@ class GUI extends TopLevel implements View, CommandSource, Reporter {
 
     /** Execute 'pass' command, if legal. */
     private synchronized void doPass(String unused) {
-        if (_board.legalMove(Move.pass())) {
+        Snapshot position = _position;
+        if (position != null && position.legalMove(Move.pass())) {
             send("-");
         }
     }
 
+    /** Execute the "Move now" button function: have a thinking AI move
+     *  at once. */
+    private void moveNow(String unused) {
+        if (_game != null) {
+            _game.stopThinking(false);
+        }
+    }
+
+    /** Execute the "Cancel" button function: stop a thinking AI and make
+     *  its side manual, so that the user moves instead. */
+    private void cancelMove(String unused) {
+        PieceColor thinker = _thinker;
+        if (_game != null && thinker != null) {
+            _game.stopThinking(true);
+            select("Options->Players->" + thinker + " Manual", true);
+        }
+    }
+
     /** Display 'help' text. */
     private void doHelp(String unused) {
         InputStream helpIn =
@@ -156,12 +200,49 @@ class GUI extends TopLevel implements View, CommandSource, Reporter {
     }
 
     @Override
-    public void update(Board board) {
-        if (board == _board) {
-            updateLabel();
+    public void update(Snapshot position) {
+        _position = position;
+        updateLabel();
+        _widget.update(position);
+    }
+
+    @Override
+    public void searchStarted(Snapshot position) {
+        _thinker = position.whoseMove();
+        _searchStart = System.nanoTime();
+    }
+
+    @Override
+    public void iteration(int depth, Move move, int score, long nodes,
+                          List<Move> pv) {
+        long nanos = Math.max(1, System.nanoTime() - _searchStart);
+        StringBuilder line = new StringBuilder();
+        for (Move m : pv) {
+            line.append(' ').append(m);
         }
-        _board = board;
-        _widget.update(board);
+        String label =
+            String.format("%s thinking: depth %d, %s, %d nodes/sec, pv%s",
+                          _thinker, depth, AI.describeScore(score),
+                          nodes * 1_000_000_000L / nanos, line);
+        EventQueue.invokeLater(() -> setLabel("State", label));
+        _widget.showVariation(pv);
+    }
+
+    @Override
+    public void searchFinished(Move move) {
+        _thinker = null;
+        _widget.showVariation(null);
+        EventQueue.invokeLater(this::updateLabel);
+    }
+
+    @Override
+    public Executor executor() {
+        return EventQueue::invokeLater;
+    }
+
+    @Override
+    public long frameMillis() {
+        return FRAME_MILLIS;
     }
 
     @Override
@@ -191,9 +272,13 @@ class GUI extends TopLevel implements View, CommandSource, Reporter {
     /** Set label indicating board state. */
     private void updateLabel() {
         String label;
-        int red = _board.redPieces();
-        int blue = _board.bluePieces();
-        if (_board.getWinner() != null) {
+        Snapshot position = _position;
+        if (position == null) {
+            return;
+        }
+        int red = position.numPieces(RED);
+        int blue = position.numPieces(BLUE);
+        if (position.getWinner() != null) {
             if (red > blue) {
                 label = String.format("Red wins (%d-%d)", red, blue);
             } else if (red < blue) {
@@ -202,7 +287,7 @@ class GUI extends TopLevel implements View, CommandSource, Reporter {
                 label = "Drawn game";
             }
         } else {
-            label = String.format("%s to move", _board.whoseMove());
+            label = String.format("%s to move", position.whoseMove());
         }
         setLabel("State", label);
     }
@@ -218,6 +303,12 @@ class GUI extends TopLevel implements View, CommandSource, Reporter {
     /** Queue for commands going to the controlling Game. */
     private final ArrayBlockingQueue<String> _commandQueue =
         new ArrayBlockingQueue<>(5);
-    /** The model of the game. */
-    private Board _board;
+    /** The game I control, or null if not yet set. */
+    private Game _game;
+    /** Side whose AI is searching, or null if none. */
+    private volatile PieceColor _thinker;
+    /** Value of System.nanoTime() when the current search started. */
+    private volatile long _searchStart;
+    /** The latest snapshot of the game's board. */
+    private volatile Snapshot _position;
 }
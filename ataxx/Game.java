@@ -4,6 +4,11 @@
 
 package ataxx;
 
+import java.io.PrintStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
 import static ataxx.PieceColor.*;
 import static ataxx.GameException.error;
 import static ataxx.Utils.*;
@@ -22,14 +27,54 @@ class Game {
      *  seed a random number generator, if one is used in an AI.
      */
     Game(CommandSource inp, View view, Reporter reporter, boolean logging) {
+        this(inp, view, reporter, System.out, System.err, logging);
+    }
+
+    /** As for Game(INP, VIEW, REPORTER, LOGGING), but printing the
+     *  welcome and help messages and the log on OUT rather than the
+     *  standard output, and timing and debugging messages on ERR rather
+     *  than the standard error.  The settings given by the program's
+     *  options (strict mode, timing, and the message level) are copied
+     *  when the game is created, and its timing statistics are its own,
+     *  so that games played at once do not share any of them. */
+    Game(CommandSource inp, View view, Reporter reporter, PrintStream out,
+         PrintStream err, boolean logging) {
         _inp = inp;
+        _out = out;
+        _err = err;
+        _strict = Main.isStrict();
+        _messageLevel = Utils.getMessageLevel();
+        _timing = new Timing(Main.isTiming(), err);
         _view = view;
         _reporter = reporter;
         _logging = logging;
         _seed = (long) (Math.random() * Long.MAX_VALUE);
 
         _board = new Board();
-        _board.setNotifier((b) -> _view.update(b));
+        _publisher.subscribe(_view::update, _view.executor(),
+                             _view.frameMillis());
+        _board.setNotifier((b) -> _publisher.publish(b.snapshot()));
+    }
+
+    /** Return the timer of my AIs' moves. */
+    Timing timing() {
+        return _timing;
+    }
+
+    /** Print a message on my error stream if LEVEL is positive and <= my
+     *  message level (see Utils.debug).  FORMAT and ARGS are as for the
+     *  .printf methods. */
+    void debug(int level, String format, Object... args) {
+        if (level > 0 && level <= _messageLevel) {
+            _err.printf(format, args);
+            _err.println();
+        }
+    }
+
+    /** Return the source of snapshots of my board as it changes, to which
+     *  observers other than my View may subscribe. */
+    Publisher publisher() {
+        return _publisher;
     }
 
     /** Returns the game board.  This board is not intended to be modified
@@ -40,7 +85,22 @@ class Game {
 
     /** Return true iff the current game is not over. */
     boolean gameInProgress() {
-        return _board.getWinner() == null;
+        return winner() == null;
+    }
+
+    /** Return the winner of the current game (EMPTY for a draw), or null
+     *  if it is not over.  A player who runs out of time loses. */
+    PieceColor winner() {
+        if (_flagged != null) {
+            return _flagged.opposite();
+        }
+        return _board.getWinner();
+    }
+
+    /** Return the clocks of the current game, or null if it is not
+     *  timed. */
+    Clock clock() {
+        return _clock;
     }
 
     /** Play a session of Ataxx.  This may include multiple games,
@@ -49,32 +109,107 @@ class Game {
     int play() {
         boolean winnerAnnounced;
 
-        System.out.println("Welcome to " + Defaults.VERSION);
+        _out.println("Welcome to " + Defaults.VERSION);
         _board.clear();
         setManual(RED);
         setAuto(BLUE);
         _exit = -1;
         winnerAnnounced = false;
-        while (_exit < 0) {
-            String cmnd;
-            if (_board.getWinner() == null) {
-                winnerAnnounced = false;
-                try {
-                    executeCommand(getPlayer(_board.whoseMove()).getMove());
-                } catch (GameException e) {
-                    reportError(e.getMessage());
-                }
-            } else if (!gameInProgress()) {
-                if (!winnerAnnounced) {
-                    _reporter.announceWin(_board.getWinner());
-                    winnerAnnounced = true;
+        try {
+            while (_exit < 0) {
+                String cmnd;
+                if (gameInProgress()) {
+                    winnerAnnounced = false;
+                    try {
+                        executeCommand(nextMove());
+                    } catch (GameException e) {
+                        reportError(e.getMessage());
+                    }
+                } else if (!gameInProgress()) {
+                    if (!winnerAnnounced) {
+                        _reporter.announceWin(winner());
+                        winnerAnnounced = true;
+                    }
+                    executeCommand(getCommand("-> "));
                 }
-                executeCommand(getCommand("-> "));
             }
+        } finally {
+            stopAnalysis();
         }
         return _exit;
     }
 
+    /** Stop any background analysis, releasing its thread and
+     *  transposition table. */
+    private void stopAnalysis() {
+        if (_analyzer != null) {
+            _analyzer.close();
+            _analyzer = null;
+        }
+    }
+
+    /** Return the next move or command from the player to move, who
+     *  may be asked to hurry by stopThinking meanwhile.  If interrupted
+     *  while waiting for a search on my search executor, cancels the
+     *  search, so that it frees its thread, and returns "quit" with the
+     *  interrupt still pending. */
+    private String nextMove() {
+        Player player = getPlayer(_board.whoseMove());
+        Future<String> search = null;
+        _thinking = player;
+        try {
+            if (_searches != null && player.isAuto()) {
+                search = _searches.submit(player::getMove);
+                return search.get();
+            }
+            return player.getMove();
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) excp.getCause();
+            }
+            throw new Error(excp.getCause());
+        } catch (InterruptedException excp) {
+            player.stop(true);
+            search.cancel(true);
+            Thread.currentThread().interrupt();
+            return "quit";
+        } finally {
+            _thinking = null;
+        }
+    }
+
+    /** Have automated players choose their moves, and background analysis
+     *  for hints run, on threads from SEARCHES, rather than on the thread
+     *  calling play and a thread of the analysis's own, or on those
+     *  threads if SEARCHES is null.  Many games may share one pool, which
+     *  then bounds the number of searches under way at once. */
+    void setSearchExecutor(ExecutorService searches) {
+        _searches = searches;
+    }
+
+    /** If an automated player is choosing a move, ask it to make the best
+     *  move it has found so far or, if CANCEL, to give up and let the
+     *  user move for it instead (see Player.stop).  May be called from
+     *  any thread. */
+    void stopThinking(boolean cancel) {
+        Player player = _thinking;
+        if (player != null && player.isAuto()) {
+            player.stop(cancel);
+        }
+    }
+
+    /** Return the listener to which AIs report the progress of their
+     *  searches, or null if none. */
+    AI.Listener searchListener() {
+        return _searchListener;
+    }
+
+    /** Have AIs report the progress of their searches to LISTENER (none
+     *  if null). */
+    void setSearchListener(AI.Listener listener) {
+        _searchListener = listener;
+    }
+
     /** Return a suggested prompt for command input. */
     private String prompt() {
         if (gameInProgress()) {
@@ -98,8 +233,12 @@ class Game {
     /** Perform the move denoted by MOVESTR, which must be legal. */
     void makeMove(String moveStr) {
         Move move = Move.move(moveStr);
-        if (_board.legalMove(move)) {
+        if (_flagged != null) {
+            throw error("game is over");
+        } else if (_board.legalMove(move)) {
+            PieceColor mover = _board.whoseMove();
             _board.makeMove(move);
+            chargeTime(mover);
         } else {
             throw error("illegal move");
         }
@@ -108,6 +247,43 @@ class Game {
         }
     }
 
+    /** Charge the time since the current turn began to WHO, who has
+     *  just moved, if the game is timed, and begin the next turn. */
+    private void chargeTime(PieceColor who) {
+        long now = System.currentTimeMillis();
+        if (_clock != null && !_clock.moved(who, now - _turnStart)) {
+            _flagged = who;
+            _reporter.msg("* %s ran out of time.", who);
+        }
+        _turnStart = now;
+    }
+
+    /** Set the time control for subsequent play to BASE seconds per game
+     *  plus INCREMENT seconds per move, restarting both clocks, or turn
+     *  the clocks off if both are 0.  If BASE is null, just report the
+     *  time left to each player. */
+    private void setTime(String base, String increment) {
+        if (base != null) {
+            long baseMillis = Math.round(Double.parseDouble(base) * 1000);
+            long incMillis =
+                Math.round(Double.parseDouble(increment) * 1000);
+            if (baseMillis == 0 && incMillis == 0) {
+                _clock = null;
+            } else if (baseMillis == 0) {
+                throw error("base time must be positive");
+            } else {
+                _clock = new Clock(baseMillis, incMillis);
+            }
+            _flagged = null;
+            _turnStart = System.currentTimeMillis();
+        }
+        if (_clock == null) {
+            _reporter.msg("No time control.");
+        } else {
+            _reporter.msg("Time left: %s.", _clock);
+        }
+    }
+
     /** Place a block at the position PLACE (in crformat), and in its three
      *  reflected squares symmetrically. */
     void block(String place) {
@@ -121,17 +297,28 @@ class Game {
     }
 
     /** Undo the last move, and also the previous one, if that player is
-     *  automatic. */
+     *  automatic, setting the clocks, if any, back to their times before
+     *  the moves undone. */
     void undo() {
+        _flagged = null;
+        _turnStart = System.currentTimeMillis();
         if (_board.numMoves() > 0) {
-            _board.undo();
+            undoMove();
             if (_board.numMoves() > 0
                 && getPlayer(_board.whoseMove()).isAuto()) {
-                _board.undo();
+                undoMove();
             }
         }
     }
 
+    /** Undo the last move on my board and on my clocks, if any. */
+    private void undoMove() {
+        _board.undo();
+        if (_clock != null) {
+            _clock.undo();
+        }
+    }
+
     /** Report the move MOVE by PLAYER. */
     void reportMove(Move move, PieceColor player) {
         _reporter.announceMove(move, player);
@@ -154,6 +341,13 @@ class Game {
         _seed += 1;
     }
 
+    /** Make the player of COLOR a Monte Carlo tree search for subsequent
+     *  moves. */
+    private void setMonteCarlo(PieceColor color) {
+        setPlayer(color, new MonteCarlo(this, color, _seed));
+        _seed += 1;
+    }
+
     /** Make the player of COLOR take manual input from the user for
      *  subsequent moves. */
     private void setManual(PieceColor color) {
@@ -170,9 +364,30 @@ class Game {
         _players[color.ordinal()] = player;
     }
 
-    /** Clear the board to its initial state. */
+    /** Clear the board to its initial state, and restart the clocks,
+     *  if any. */
     void clear() {
         _board.clear();
+        restartClock();
+    }
+
+    /** Restart the clocks, if any, for a new game. */
+    private void restartClock() {
+        if (_clock != null) {
+            _clock.reset();
+        }
+        _flagged = null;
+        _turnStart = System.currentTimeMillis();
+    }
+
+    /** Set the board to the position POSITION, in the form read by
+     *  Board.setPosition, as if starting a new game from it. */
+    private void setPosition(String position) {
+        _board.setPosition(position);
+        restartClock();
+        if (_verbose) {
+            printBoard();
+        }
     }
 
     /** Print the current board using standard board-dump format. */
@@ -187,12 +402,112 @@ class Game {
 
     /** Print a help message. */
     private void help() {
-        printHelpResource(HELP, System.out);
+        printHelpResource(HELP, _out);
+    }
+
+    /** Report the best move for the current position found so far by
+     *  background analysis, starting the analysis if need be.  Does not
+     *  wait for the analysis. */
+    private void hint() {
+        if (!gameInProgress()) {
+            throw error("game is over");
+        }
+        boolean starting = _analyzer == null;
+        if (starting) {
+            _analyzer = new Analyzer(_publisher, _reporter, _searches);
+        }
+        Analyzer.Analysis result = _analyzer.current();
+        if (result == null && starting) {
+            _reporter.msg("No hint yet; analysis has started.");
+        } else if (result == null) {
+            _reporter.msg("No hint yet; analysis is under way.");
+        } else {
+            _reporter.msg("Hint: %s (value %s, depth %d).", result.move,
+                          AI.describeScore(result.score), result.depth);
+        }
+    }
+
+    /** Print the statistics in the opening index for the current position,
+     *  first loading the index from the file named FILE, if FILE is not
+     *  null. */
+    private void explore(String file) {
+        if (file != null) {
+            _openings = new OpeningIndex(file);
+        }
+        if (_openings == null) {
+            throw error("no opening index loaded");
+        }
+        OpeningIndex.Entry entry = _openings.lookup(_board);
+        if (entry == null) {
+            _reporter.msg("Position not in opening index.");
+            return;
+        }
+        int visits = entry.visits();
+        _reporter.msg("Position seen %d times: Red wins %d, Blue wins %d, "
+                      + "draws %d.", visits, entry.results(RED),
+                      entry.results(BLUE), entry.results(EMPTY));
+        Move[] moves = entry.moves();
+        for (int k = 0; k < moves.length; k += 1) {
+            _reporter.msg("  %-5s %8d  %5.1f%%", moves[k], entry.count(k),
+                          100.0 * entry.count(k) / visits);
+        }
+    }
+
+    /** Return the number of positions (or for Monte Carlo players,
+     *  playouts) that AIs should search per move, or 0 if their searches
+     *  are limited in the usual way. */
+    long nodeLimit() {
+        return _nodeLimit;
+    }
+
+    /** Return the table of search results used by the AIs of this
+     *  game, creating it when first needed. */
+    TranspositionTable table() {
+        if (_table == null) {
+            _table = new TranspositionTable(TranspositionTable.DEFAULT_BITS);
+        }
+        return _table;
+    }
+
+    /** Save the table of search results in the file named FILE, or, if
+     *  FILE is null, in the file it was loaded from. */
+    private void saveTable(String file) {
+        if (file == null) {
+            file = table().file();
+            if (file == null) {
+                throw error("no hash file loaded");
+            }
+        }
+        table().save(file);
+        _reporter.msg("Search results saved to %s.", file);
+    }
+
+    /** Replace the table of search results with the one saved in the file
+     *  named FILE. */
+    private void loadTable(String file) {
+        TranspositionTable table = TranspositionTable.load(file);
+        if (_table != null) {
+            _table.flush();
+        }
+        _table = table;
+        _reporter.msg("Search results loaded from %s.", file);
     }
 
-    /** Seed the random-number generator with SEED. */
+    /** Seed the random-number generator with SEED, and restart the
+     *  current players from it.  In deterministic mode, also forget all
+     *  search results, so that what follows is the same in every run
+     *  given the same commands. */
     private void setSeed(long seed) {
         _seed = seed;
+        for (PieceColor color : new PieceColor[] { RED, BLUE }) {
+            if (getPlayer(color) != null) {
+                getPlayer(color).reseed(_seed);
+            }
+            _seed += 1;
+        }
+        if (Main.isDeterministic() && _table != null) {
+            _table.clear();
+        }
     }
 
     /** Execute command CMNDSTR.  Throws GameException on errors. */
@@ -207,15 +522,30 @@ class Game {
             case AUTO:
                 setAuto(parseColor(parts[0]));
                 break;
+            case AUTO_MCTS:
+                setMonteCarlo(parseColor(parts[0]));
+                break;
             case BOARD:
                 printBoard();
                 break;
             case DUMP:
                 dump();
                 break;
+            case EXPLORE:
+                explore(parts[0]);
+                break;
+            case HASH_SAVE:
+                saveTable(parts[0]);
+                break;
+            case HASH_LOAD:
+                loadTable(parts[0]);
+                break;
             case HELP:
                 help();
                 break;
+            case HINT:
+                hint();
+                break;
             case MANUAL:
                 setManual(parseColor(parts[0]));
                 break;
@@ -226,14 +556,34 @@ class Game {
                 _verbose = false;
                 break;
             case QUIT:
+                if (_table != null) {
+                    _table.flush();
+                }
                 _exit = 0;
                 break;
             case SEED:
                 setSeed(toLong(parts[0]));
                 break;
+            case SETPOS:
+                setPosition(parts[0]);
+                break;
+            case TIME:
+                setTime(parts[0], parts[1]);
+                break;
+            case NODES:
+                _nodeLimit = toLong(parts[0]);
+                break;
+            case BENCH:
+                Bench.run(parts[0] == null ? Bench.DEFAULT_DEPTH
+                          : toInt(parts[0]), _reporter);
+                break;
             case VERBOSE:
                 _verbose = true;
                 break;
+            case WARMUP:
+                Warmup.start(parts[0] == null ? Warmup.DEFAULT_MILLIS
+                             : toLong(parts[0]), _reporter);
+                break;
             case UNDO:
                 undo();
                 break;
@@ -262,7 +612,7 @@ class Game {
      *  String.format. */
     private void log(String format, Object... args) {
         if (_logging) {
-            System.out.printf(format + "%n", args);
+            _out.printf(format + "%n", args);
         }
     }
 
@@ -270,7 +620,7 @@ class Game {
      *  and ARGS, whose meanings are as for printf. */
     void reportError(String format, Object... args) {
         _reporter.err(format, args);
-        if (Main.isStrict()) {
+        if (_strict) {
             _exit = 1;
         }
     }
@@ -279,11 +629,23 @@ class Game {
     private final CommandSource _inp;
     /** Outlet for responses to the user. */
     private final Reporter _reporter;
+    /** Outlet for the welcome and help messages and the log. */
+    private final PrintStream _out;
+    /** Outlet for timing and debugging messages. */
+    private final PrintStream _err;
+    /** True iff user errors end the session with an error code. */
+    private final boolean _strict;
+    /** Level of debugging messages printed (see debug). */
+    private final int _messageLevel;
+    /** Times my AIs' moves. */
+    private final Timing _timing;
 
     /** The board on which I record all moves. */
     private final Board _board;
     /** Displayer of boards. */
     private View _view;
+    /** Distributes snapshots of _board to _view and other observers. */
+    private final Publisher _publisher = new Publisher();
     /** True iff we are logging commands. */
     private boolean _logging;
 
@@ -300,6 +662,39 @@ class Game {
      *  indicates that the session is not over. */
     private int _exit;
 
+    /** Opening statistics consulted by the explore command, or null if
+     *  none have been loaded. */
+    private OpeningIndex _openings;
+
+    /** Limit on the work done by AIs per move (see nodeLimit). */
+    private long _nodeLimit;
+
+    /** Background analysis used for hints, or null if not yet
+     *  started. */
+    private Analyzer _analyzer;
+
+    /** Clocks for the current game, or null if it is not timed. */
+    private Clock _clock;
+    /** The player who ran out of time, ending the current game, or
+     *  null. */
+    private PieceColor _flagged;
+    /** Time (from System.currentTimeMillis) at which the current turn
+     *  began. */
+    private long _turnStart;
+
+    /** Receiver of progress reports from AI searches, or null. */
+    private AI.Listener _searchListener;
+
+    /** The player choosing a move, if any. */
+    private volatile Player _thinking;
+
+    /** Pool on which automated players search, or null. */
+    private ExecutorService _searches;
+
+    /** Search results shared by the AIs of this game, or null if not yet
+     *  needed. */
+    private TranspositionTable _table;
+
     /** Current players, indexed by color (RED, BLUE). */
     private final Player[] _players = new Player[PieceColor.values().length];
 
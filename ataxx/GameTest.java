@@ -0,0 +1,56 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/** Tests of whole games played by the Game class.
+ *  @author Aayush Gupta
+ */
+public class GameTest {
+
+    /** Return the messages reported while playing a session given by
+     *  COMMANDS, one message per element, with all other output
+     *  discarded. */
+    private static List<String> play(String commands) {
+        ByteArrayOutputStream messages = new ByteArrayOutputStream();
+        PrintStream discard = new PrintStream(new ByteArrayOutputStream());
+        Game game =
+            new Game(new TextSource(List.of(new StringReader(commands)),
+                                    discard),
+                     (s) -> { }, new TextReporter(new PrintStream(messages),
+                                                  discard),
+                     discard, discard, false);
+        assertEquals("session ends normally", 0, game.play());
+        List<String> result = new ArrayList<>();
+        for (String line : messages.toString().split("\n")) {
+            if (line.startsWith("* ")) {
+                result.add(line);
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testSeededGames() {
+        String session = "nodes 2000\nseed 1234\nauto red\nquit\n";
+        List<String> first = play(session);
+        List<String> second = play(session);
+        assertTrue("game was played", first.size() > 2);
+        String last = first.get(first.size() - 1);
+        assertTrue("game was finished", last.matches("\\* (.*wins|Draw)\\."));
+        assertEquals("same moves from the same seed", first, second);
+        assertNotEquals("ties broken by the seed", first,
+                        play(session.replace("1234", "99")));
+    }
+}
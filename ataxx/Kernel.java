@@ -0,0 +1,104 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+/** The arithmetic on vectors of 16-bit integers used to evaluate a
+ *  Network, and the bit-set arithmetic used to compute the features of a
+ *  PositionBatch.  This class does it with ordinary loops; VectorKernel
+ *  does the same with SIMD instructions when the jdk.incubator.vector
+ *  module is available.  Use get() to obtain the best available
+ *  kernel.
+ *  @author Aayush Gupta
+ */
+class Kernel {
+
+    /** The largest output of the clipped activation function. */
+    static final int ACTIVATION_MAX = 127;
+
+    /** Return the fastest available kernel. */
+    static Kernel get() {
+        return BEST;
+    }
+
+    /** Return the name of my implementation. */
+    String name() {
+        return "scalar";
+    }
+
+    /** Add WEIGHTS[OFFSET .. OFFSET + ACC.length - 1] to ACC, element by
+     *  element. */
+    void add(short[] acc, short[] weights, int offset) {
+        for (int i = 0; i < acc.length; i += 1) {
+            acc[i] += weights[offset + i];
+        }
+    }
+
+    /** Subtract WEIGHTS[OFFSET .. OFFSET + ACC.length - 1] from ACC,
+     *  element by element. */
+    void sub(short[] acc, short[] weights, int offset) {
+        for (int i = 0; i < acc.length; i += 1) {
+            acc[i] -= weights[offset + i];
+        }
+    }
+
+    /** Set each OUT[i] to IN[i] clipped to the range 0 .. ACTIVATION_MAX,
+     *  for i < OUT.length. */
+    void activate(short[] in, short[] out) {
+        for (int i = 0; i < out.length; i += 1) {
+            out[i] = (short) Math.min(Math.max(in[i], 0), ACTIVATION_MAX);
+        }
+    }
+
+    /** Return the dot product of X with WEIGHTS[OFFSET .. OFFSET +
+     *  X.length - 1]. */
+    int dot(short[] x, short[] weights, int offset) {
+        int sum = 0;
+        for (int i = 0; i < x.length; i += 1) {
+            sum += x[i] * weights[offset + i];
+        }
+        return sum;
+    }
+
+    /** Compute the features of the positions FROM .. TO-1 whose red
+     *  pieces, blue pieces, and blocks are given by the bit sets RED,
+     *  BLUE, and BLOCKS.  Feature F of position I is stored in OUT[F *
+     *  STRIDE + I], where the features are as numbered in
+     *  PositionBatch.  SCRATCH holds three arrays as long as RED for
+     *  intermediate results. */
+    void features(long[] red, long[] blue, long[] blocks, int from, int to,
+                  int[] out, int stride, long[][] scratch) {
+        for (int i = from; i < to; i += 1) {
+            long r = red[i], b = blue[i];
+            long empty = BitBoard.ALL & ~(r | b | blocks[i]);
+            long nearEmpty = BitBoard.grow(empty);
+            out[PositionBatch.RED_PIECES * stride + i] = Long.bitCount(r);
+            out[PositionBatch.BLUE_PIECES * stride + i] = Long.bitCount(b);
+            out[PositionBatch.RED_MOBILITY * stride + i] =
+                Long.bitCount(BitBoard.grow(BitBoard.grow(r)) & empty);
+            out[PositionBatch.BLUE_MOBILITY * stride + i] =
+                Long.bitCount(BitBoard.grow(BitBoard.grow(b)) & empty);
+            out[PositionBatch.RED_FRONTIER * stride + i] =
+                Long.bitCount(r & nearEmpty);
+            out[PositionBatch.BLUE_FRONTIER * stride + i] =
+                Long.bitCount(b & nearEmpty);
+        }
+    }
+
+    /** The kernel returned by get(): a VectorKernel if its class can be
+     *  loaded (which requires the jdk.incubator.vector module), and
+     *  otherwise a plain Kernel. */
+    private static final Kernel BEST;
+
+    static {
+        Kernel best;
+        try {
+            best = (Kernel) Class.forName("ataxx.VectorKernel")
+                .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError excp) {
+            best = new Kernel();
+        }
+        BEST = best;
+    }
+}
@@ -21,20 +21,77 @@ public class Main {
     /** Location of usage message resource. */
     static final String USAGE = "ataxx/Usage.txt";
 
+    /** Milliseconds spent on each measurement by --evalbench. */
+    static final int EVAL_BENCHMARK_TIME = 1000;
+    /** Number of positions in each batch evaluated by --evalbench. */
+    static final int EVAL_BENCHMARK_BATCH = 1024;
+    /** Default number of games played by --datagen. */
+    static final int DATAGEN_GAMES = 100;
+
     /** Run Ataxx game.  Options (in ARGS0):
      *       --display: Use GUI.
      *       --timing: Display think times for AI.
      *       --version: Print version number and exit.
      *       --log: Print commands.
      *       --strict: Strict mode---players errors cause error exit.
+     *       --deterministic: Make AIs play the same moves in every run
+     *                 with the same seed, whatever the timing of threads.
      *       --debug: Set level of debugging information.
+     *       --replay: Validate the game archives named by the trailing
+     *                 arguments instead of playing.
+     *       --index=FILE: Build an opening index in FILE from the game
+     *                 archives named by the trailing arguments.
+     *       --weights=FILE: Evaluate positions in AIs with the network
+     *                 whose weights are in FILE.
+     *       --evalbench: Report the speed of position evaluation.
+     *       --bench: Report the speed of search (see Bench).
+     *       --suite=FILE: Report how many of the test positions in FILE
+     *                 the AI solves, and how quickly (see Suite).
+     *                 --nodes=N and --movetime=N limit the search of each
+     *                 position to N nodes or N milliseconds, and
+     *                 --threads=N gives the number of positions searched
+     *                 at once.
+     *       --datagen=DIR: Write training data from self-play games to
+     *                 shards in DIR.  --games=N, --threads=N, --rate=N,
+     *                 and --shard=N give the number of games, the number
+     *                 of threads playing them, the maximum number of
+     *                 positions recorded per second, and the number of
+     *                 positions per shard.
+     *       --serve=PORT: Play a separate session with each client that
+     *                 connects to PORT on the local host (see Server).
+     *                 --threads=N gives the number of AI searches run at
+     *                 once.
+     *       --http=PORT: Answer requests for the best move in a position
+     *                 by HTTP on PORT on the local host (see MoveService).
+     *                 --threads=N gives the number of searches run at
+     *                 once.
+     *       --warmup=MS: Start by warming up the search for up to MS
+     *                 milliseconds in the background (see Warmup).
+     *       --batch: Play each input file as a separate session, several
+     *                 at once (--threads=N of them), printing the output
+     *                 of each in turn (see Batch).
+     *       --broadcast=PORT: Also send the game as it is played to
+     *                 spectators connecting to PORT on the local host
+     *                 (see Broadcaster).
      *  Trailing arguments are input files; the standard input is the
      *  default.
      */
     public static void main(String[] args0) {
         CommandArgs args =
             new CommandArgs("--display{0,1} --strict --version --timing --log"
-                            + " --debug=(\\d+){0,1} --=(.*){0,}", args0);
+                            + " --deterministic"
+                            + " --debug=(\\d+){0,1} --replay"
+                            + " --index=(.+){0,1}"
+                            + " --weights=(.+){0,1} --evalbench --bench"
+                            + " --datagen=(.+){0,1} --games=(\\d+){0,1}"
+                            + " --threads=(\\d+){0,1} --rate=(\\d+){0,1}"
+                            + " --shard=(\\d+){0,1}"
+                            + " --suite=(.+){0,1} --nodes=(\\d+){0,1}"
+                            + " --movetime=(\\d+){0,1}"
+                            + " --serve=(\\d+){0,1} --http=(\\d+){0,1}"
+                            + " --broadcast=(\\d+){0,1} --batch"
+                            + " --warmup=(\\d+){0,1}"
+                            + " --=(.*){0,}", args0);
 
 
         System.out.println("CS61B Ataxx! Version 3.0");
@@ -50,15 +107,113 @@ public class Main {
         }
 
         _strict = args.contains("--strict");
+        _deterministic = args.contains("--deterministic");
+        _timing = args.contains("--timing");
         boolean log = args.contains("--log");
         if (args.contains("--debug")) {
             Utils.setMessageLevel(args.getInt("--debug"));
         }
 
+        if (args.contains("--weights")) {
+            try {
+                AI.setNetwork(Network.load(args.getFirst("--weights")));
+            } catch (GameException excp) {
+                System.err.println(excp.getMessage());
+                System.exit(1);
+            }
+        }
+        if (args.contains("--evalbench")) {
+            PositionBatch.benchmark(EVAL_BENCHMARK_BATCH, EVAL_BENCHMARK_TIME,
+                                    new TextReporter());
+            AI.network().benchmark(EVAL_BENCHMARK_TIME, new TextReporter());
+            System.exit(0);
+        }
+
+        if (args.contains("--bench")) {
+            Bench.run(Bench.DEFAULT_DEPTH, new TextReporter());
+            System.exit(0);
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (args.contains("--threads")) {
+            threads = Math.max(1, args.getInt("--threads"));
+        }
+        if (args.contains("--suite")) {
+            long nodes = 0, millis = 0;
+            if (args.contains("--nodes")) {
+                nodes = args.getLong("--nodes");
+            }
+            if (args.contains("--movetime")) {
+                millis = args.getLong("--movetime");
+            }
+            Suite suite = new Suite(threads, nodes, millis,
+                                    new TextReporter());
+            System.exit(suite.run(args.getFirst("--suite")));
+        }
+        if (args.contains("--datagen")) {
+            int games = DATAGEN_GAMES, rate = 0;
+            int shard = DataGen.DEFAULT_SHARD;
+            if (args.contains("--games")) {
+                games = args.getInt("--games");
+            }
+            if (args.contains("--rate")) {
+                rate = args.getInt("--rate");
+            }
+            if (args.contains("--shard")) {
+                shard = Math.max(1, args.getInt("--shard"));
+            }
+            DataGen gen =
+                new DataGen(args.getFirst("--datagen"), threads, rate, shard,
+                            (long) (Math.random() * Long.MAX_VALUE),
+                            new TextReporter());
+            System.exit(gen.run(games));
+        }
+
+        if (args.contains("--replay")) {
+            Replayer replayer =
+                new Replayer(Runtime.getRuntime().availableProcessors(),
+                             new TextReporter());
+            System.exit(replayer.replay(args.get("--")));
+        }
+        if (args.contains("--index")) {
+            System.exit(OpeningIndex.build(args.get("--"),
+                                           args.getFirst("--index"),
+                                           Runtime.getRuntime()
+                                           .availableProcessors(),
+                                           new TextReporter()));
+        }
+
+        if (args.contains("--warmup")) {
+            Warmup.start(args.getLong("--warmup"), new TextReporter());
+        }
+        if (args.contains("--serve")) {
+            Server server = new Server(args.getInt("--serve"), threads,
+                                       new TextReporter());
+            System.exit(server.run());
+        }
+        if (args.contains("--http")) {
+            MoveService service =
+                new MoveService(args.getInt("--http"), threads,
+                                new TextReporter());
+            int exit = service.start();
+            if (exit != 0) {
+                System.exit(exit);
+            }
+            return;
+        }
+
+        if (args.contains("--batch")) {
+            if (args.get("--").isEmpty()) {
+                usage();
+                System.exit(1);
+            }
+            System.exit(new Batch(args.get("--"), threads, log).run());
+        }
+
         Game game;
         if (args.contains("--display")) {
             GUI display = new GUI("Ataxx!");
             game = new Game(display, display, display, log);
+            display.setGame(game);
             display.pack();
             display.setVisible(true);
         } else {
@@ -83,7 +238,17 @@ public class Main {
             game = new Game(new TextSource(inReaders),
                             (b) -> { }, new TextReporter(), log);
         }
-        System.exit(game.play());
+        if (args.contains("--broadcast")) {
+            try {
+                new Broadcaster(game.publisher(), args.getInt("--broadcast"));
+            } catch (GameException excp) {
+                System.err.println(excp.getMessage());
+                System.exit(1);
+            }
+        }
+        int exit = game.play();
+        game.timing().report();
+        System.exit(exit);
     }
 
     /** Print usage message. */
@@ -98,36 +263,17 @@ public class Main {
         return _strict;
     }
 
-    /* TIMING */
-
-    /** Start timing an operation. */
-    static void startTiming() {
-        if (_timing) {
-            _startTime = System.currentTimeMillis();
-        }
+    /** Return true iff --deterministic flag supplied. */
+    static boolean isDeterministic() {
+        return _deterministic;
     }
 
-    /** End the timing started with the last call to startTiming().
-     *  Report result if we are timing. */
-    static void endTiming() {
-        if (_timing) {
-            long time = System.currentTimeMillis() - _startTime;
-            System.err.printf("[%d msec]%n", time);
-            _maxTime = Math.max(_maxTime, time);
-            _totalTime += time;
-            _numTimedOps += 1;
-        }
-    }
+    /* TIMING */
 
-    /** Report total time statistics, if timing. */
-    static void reportTotalTimes() {
-        if (_timing && _numTimedOps > 0) {
-            System.err.printf("[Total time: %d msec for %d operations. "
-                              + "Avg: %d msec/operation. "
-                              + "Max: %d msec]%n", _totalTime,
-                              _numTimedOps, _totalTime / _numTimedOps,
-                              _maxTime);
-        }
+    /** Return true iff --timing flag supplied, so that games should time
+     *  their AIs (see Timing). */
+    static boolean isTiming() {
+        return _timing;
     }
 
     /** True iff AIs should time. */
@@ -137,16 +283,8 @@ public class Main {
      *  manual player terminate the program with an error code of 2. */
     private static boolean _strict;
 
-    /** Accumulated time. */
-    private static long _totalTime;
-
-    /** Last start time. */
-    private static long _startTime;
-
-    /** Number of operations timed. */
-    private static int _numTimedOps;
-
-    /** Maximum operation time. */
-    private static long _maxTime;
+    /** True iff AIs must not depend on timing, so that games can be
+     *  reproduced exactly. */
+    private static boolean _deterministic;
 
 }
@@ -0,0 +1,457 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static ataxx.PieceColor.*;
+
+/** A Player that chooses moves by Monte Carlo tree search.
+ *
+ *  Each iteration descends the search tree from the current position,
+ *  choosing children by the PUCT rule (average result plus an exploration
+ *  term weighted by a prior that favors captures and extends), expands
+ *  the leaf it reaches once it has been visited often enough, finishes
+ *  the game with a quick playout on a BitBoard, and adds the result to
+ *  the statistics of every node on its path.
+ *
+ *  Several threads search the same tree at once.  A thread descending
+ *  through a node adds VIRTUAL_LOSS visits to it (counting as losses)
+ *  until its playout finishes, which steers the other threads toward
+ *  different lines.  Visit and result counts are atomic counters, so no
+ *  locks are needed.  Nodes come from arrays allocated once, when the
+ *  player is created, so searching creates no garbage.
+ *
+ *  The tree survives between moves.  If the new position is the root
+ *  of the previous search or is reached from it by one or two moves (as
+ *  when the opponent has replied to my last move), that subtree becomes
+ *  the new root, and its statistics give the search a head start.
+ *
+ *  In deterministic mode (see Main.isDeterministic), a search makes a
+ *  fixed number of playouts in rounds of LANES.  Each round chooses the
+ *  paths for all lanes in turn on one thread, plays the lanes' playouts
+ *  out in parallel, each with its own generator, and then adds the
+ *  results in lane order.  The tree then depends only on the seed and
+ *  the positions searched, not on how threads are scheduled or how many
+ *  processors there are.
+ *  @author Aayush Gupta
+ */
+class MonteCarlo extends Player {
+
+    /** Time allowed for each move, in milliseconds. */
+    static final int MOVE_TIME = 100;
+    /** Number of nodes in the node pool. */
+    private static final int CAPACITY = 1 << 19;
+    /** Visits a node needs before it is expanded, not counting the virtual
+     *  loss added by the thread that reached it. */
+    private static final int EXPAND_AFTER = 2;
+    /** Visits added to a node while a thread's playout through it is in
+     *  progress. */
+    private static final int VIRTUAL_LOSS = 3;
+    /** Weight of the exploration term of the PUCT rule. */
+    private static final double EXPLORATION = 1.5;
+    /** Value assumed for unvisited nodes. */
+    private static final double FIRST_PLAY = 0.5;
+    /** Number of candidate moves considered at each step of a playout. */
+    private static final int SAMPLES = 4;
+    /** Maximum depth of a path in the tree. */
+    private static final int MAX_PATH = 512;
+    /** Number of playouts per move in deterministic mode. */
+    static final int DETERMINISTIC_PLAYOUTS = 2048;
+    /** Number of paths searched in each round in deterministic mode. */
+    private static final int LANES = 8;
+    /** Expansion states of nodes: not yet expanded, being expanded by some
+     *  thread, expanded, or never to be expanded (pool exhausted). */
+    private static final int UNEXPANDED = 0, EXPANDING = 1, EXPANDED = 2,
+        LEAF = 3;
+
+    /** A new MonteCarlo player for GAME that will play MYCOLOR, using
+     *  THREADS threads for MOVETIME milliseconds per move.  SEED
+     *  initializes the random-number generators used for playouts. */
+    MonteCarlo(Game game, PieceColor myColor, long seed, int threads,
+               int moveTime) {
+        super(game, myColor);
+        _random = new Random(seed);
+        _threads = threads;
+        _moveTime = moveTime;
+    }
+
+    /** A new MonteCarlo player for GAME that will play MYCOLOR using all
+     *  processors for MOVE_TIME milliseconds per move.  SEED initializes
+     *  the random-number generators used for playouts. */
+    MonteCarlo(Game game, PieceColor myColor, long seed) {
+        this(game, myColor, seed,
+             Runtime.getRuntime().availableProcessors(), MOVE_TIME);
+    }
+
+    @Override
+    boolean isAuto() {
+        return true;
+    }
+
+    @Override
+    void reseed(long seed) {
+        _random = new Random(seed);
+        _rootPos = null;
+    }
+
+    @Override
+    String getMove() {
+        if (!getBoard().canMove(myColor())) {
+            game().reportMove(Move.pass(), myColor());
+            return "-";
+        }
+        game().timing().start();
+        Move move = findMove(getBoard());
+        game().timing().end(_playouts.get());
+        if (cancelled()) {
+            return "manual " + myColor().toString().toLowerCase();
+        }
+        game().reportMove(move, myColor());
+        return move.toString();
+    }
+
+    /** Return the move chosen for the player to move on BOARD, which must
+     *  have a move.  The search ends early, after at least one playout,
+     *  if a stop is requested (see stop). */
+    Move findMove(Board board) {
+        clearStop();
+        BitBoard root = new BitBoard();
+        root.set(board);
+        int node = findRoot(root);
+        if (node < 0 || _state.get(node) == LEAF
+            || _used.get() > CAPACITY / 2) {
+            node = 0;
+            _used.set(1);
+            initNode(node, BitBoard.PASS, 1f);
+        }
+        _root = node;
+        _rootPos = root;
+        int reused = _visits.get(_root);
+        _playouts.set(0);
+        long start = System.nanoTime();
+        long limit = game().nodeLimit();
+        if (Main.isDeterministic()) {
+            simulateLockstep(root, limit > 0 ? limit : DETERMINISTIC_PLAYOUTS);
+        } else if (limit > 0) {
+            simulate(root, Long.MAX_VALUE, limit);
+        } else {
+            simulate(root, start + moveTime(board) * 1_000_000L,
+                     Long.MAX_VALUE);
+        }
+        long nanos = Math.max(1, System.nanoTime() - start);
+        game().debug(1, "[mcts] %d playouts in %d msec (%d/sec), %d nodes,"
+                     + " %d visits reused",
+                     _playouts.get(), nanos / 1_000_000,
+                     _playouts.get() * 1_000_000_000L / nanos,
+                     Math.min(_used.get(), CAPACITY), reused);
+        return BitBoard.toMove(board, _move[bestChild()]);
+    }
+
+    /** Return the time in milliseconds to spend choosing a move on BOARD:
+     *  my fixed time per move or, if my game has clocks running, the time
+     *  a TimeManager allots given the time left on my clock. */
+    private long moveTime(Board board) {
+        Clock clock = game().clock();
+        if (clock == null) {
+            return _moveTime;
+        }
+        return new TimeManager(clock.remaining(myColor()), clock.increment(),
+                               board.numPieces(EMPTY)).targetMillis();
+    }
+
+    /** Search from position ROOT on all my threads until System.nanoTime()
+     *  reaches DEADLINE or LIMIT playouts have been made (each thread
+     *  finishes the playout it is making when that happens). */
+    private void simulate(BitBoard root, long deadline, long limit) {
+        List<Thread> helpers = new ArrayList<>();
+        for (int k = 1; k < _threads; k += 1) {
+            SplittableRandom random = new SplittableRandom(_random.nextLong());
+            Thread helper =
+                new Thread(() -> simulate(root, random, deadline, limit));
+            helper.setDaemon(true);
+            helper.start();
+            helpers.add(helper);
+        }
+        simulate(root, new SplittableRandom(_random.nextLong()), deadline,
+                 limit);
+        for (Thread helper : helpers) {
+            try {
+                helper.join();
+            } catch (InterruptedException excp) {
+                throw new Error("unexpected interrupt");
+            }
+        }
+    }
+
+    /** Make PLAYOUTS playouts (rounded up to a multiple of LANES) from
+     *  position ROOT in lockstep rounds, as described above. */
+    private void simulateLockstep(BitBoard root, long playouts) {
+        BitBoard[] pos = new BitBoard[LANES];
+        SplittableRandom[] randoms = new SplittableRandom[LANES];
+        int[][] paths = new int[LANES][MAX_PATH];
+        PieceColor[][] movers = new PieceColor[LANES][MAX_PATH];
+        int[] lens = new int[LANES];
+        int[] moves = new int[BitBoard.MAX_MOVES];
+        for (int k = 0; k < LANES; k += 1) {
+            pos[k] = new BitBoard();
+            randoms[k] = new SplittableRandom(_random.nextLong());
+        }
+        ExecutorService pool =
+            Executors.newFixedThreadPool(Math.min(_threads, LANES), (r) -> {
+                Thread thread = new Thread(r);
+                thread.setDaemon(true);
+                return thread;
+            });
+        List<Future<PieceColor>> winners = new ArrayList<>();
+        try {
+            while (_playouts.get() < playouts
+                   && (_playouts.get() == 0 || !stopRequested())) {
+                winners.clear();
+                for (int k = 0; k < LANES; k += 1) {
+                    pos[k].set(root);
+                    lens[k] = descend(pos[k], paths[k], movers[k], moves);
+                    BitBoard p = pos[k];
+                    SplittableRandom random = randoms[k];
+                    winners.add(pool.submit(() ->
+                                            p.playout(random, SAMPLES)));
+                }
+                for (int k = 0; k < LANES; k += 1) {
+                    backup(paths[k], movers[k], lens[k],
+                           winners.get(k).get());
+                }
+            }
+        } catch (InterruptedException | ExecutionException excp) {
+            throw new Error("playout failed", excp);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Return the node of the previous search's tree whose position is
+     *  POS, looking at the root and at the nodes one and two moves below
+     *  it, or -1 if there is none. */
+    private int findRoot(BitBoard pos) {
+        if (_rootPos == null) {
+            return -1;
+        }
+        if (_rootPos.equals(pos)) {
+            return _root;
+        }
+        BitBoard child = new BitBoard(), grandchild = new BitBoard();
+        for (int c : children(_root)) {
+            child.set(_rootPos);
+            child.play(_move[c]);
+            if (child.equals(pos)) {
+                return c;
+            }
+            for (int g : children(c)) {
+                grandchild.set(child);
+                grandchild.play(_move[g]);
+                if (grandchild.equals(pos)) {
+                    return g;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /** Return the children of NODE (none unless it is expanded). */
+    private int[] children(int node) {
+        if (_state.get(node) != EXPANDED) {
+            return new int[0];
+        }
+        int[] result = new int[_numChildren[node]];
+        for (int k = 0; k < result.length; k += 1) {
+            result[k] = _firstChild[node] + k;
+        }
+        return result;
+    }
+
+    /** Return the most visited child of the root. */
+    private int bestChild() {
+        int first = _firstChild[_root], best = first;
+        for (int c = first; c < first + _numChildren[_root]; c += 1) {
+            if (_visits.get(c) > _visits.get(best)) {
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    /** Run search iterations from position ROOT until System.nanoTime()
+     *  reaches DEADLINE or LIMIT playouts have been made, using RANDOM for
+     *  playouts. */
+    private void simulate(BitBoard root, SplittableRandom random,
+                          long deadline, long limit) {
+        BitBoard pos = new BitBoard();
+        int[] moves = new int[BitBoard.MAX_MOVES];
+        int[] path = new int[MAX_PATH];
+        PieceColor[] movers = new PieceColor[MAX_PATH];
+        while (_playouts.get() == 0
+               || (_playouts.get() < limit && System.nanoTime() < deadline
+                   && !stopRequested())) {
+            pos.set(root);
+            int len = descend(pos, path, movers, moves);
+            backup(path, movers, len, pos.playout(random, SAMPLES));
+        }
+    }
+
+    /** Descend the tree from the root, whose position POS is, choosing
+     *  and expanding nodes as described above and adding a virtual loss
+     *  to each node chosen.  Leaves POS at the position of the last node
+     *  chosen, PATH[0 .. L-1] holding the nodes chosen, and MOVERS[k] the
+     *  player who moved into PATH[k], and returns L.  MOVES is a
+     *  buffer. */
+    private int descend(BitBoard pos, int[] path, PieceColor[] movers,
+                        int[] moves) {
+        int node = _root, len = 0;
+        while (len < MAX_PATH) {
+            int state = _state.get(node);
+            if (state == UNEXPANDED
+                && (node == _root || _visits.get(node)
+                    >= EXPAND_AFTER + VIRTUAL_LOSS)
+                && pos.winner() == null && expand(node, pos, moves)) {
+                state = EXPANDED;
+            }
+            if (state != EXPANDED) {
+                break;
+            }
+            node = select(node);
+            _visits.addAndGet(node, VIRTUAL_LOSS);
+            movers[len] = pos.whoseMove();
+            path[len] = node;
+            len += 1;
+            pos.play(_move[node]);
+        }
+        return len;
+    }
+
+    /** Add the result of a playout won by WINNER (EMPTY for a draw) to
+     *  the root and to the nodes PATH[0 .. LEN-1] chosen by descend,
+     *  removing their virtual losses, where MOVERS[k] moved into
+     *  PATH[k]. */
+    private void backup(int[] path, PieceColor[] movers, int len,
+                        PieceColor winner) {
+        _visits.incrementAndGet(_root);
+        for (int k = 0; k < len; k += 1) {
+            _visits.addAndGet(path[k], 1 - VIRTUAL_LOSS);
+            _value.addAndGet(path[k], reward(winner, movers[k]));
+        }
+        _playouts.incrementAndGet();
+    }
+
+    /** Return twice the value for MOVER of a game won by WINNER (EMPTY
+     *  for a draw). */
+    private static int reward(PieceColor winner, PieceColor mover) {
+        if (winner == mover) {
+            return 2;
+        } else if (winner == EMPTY) {
+            return 1;
+        } else {
+            return 0;
+        }
+    }
+
+    /** Return the child of expanded node NODE with the greatest PUCT
+     *  score. */
+    private int select(int node) {
+        int first = _firstChild[node], n = _numChildren[node];
+        double scale = EXPLORATION * Math.sqrt(Math.max(1, _visits.get(node)));
+        int best = first;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int c = first; c < first + n; c += 1) {
+            int visits = _visits.get(c);
+            double q = visits == 0 ? FIRST_PLAY
+                : _value.get(c) / (2.0 * visits);
+            double score = q + scale * _prior[c] / (1 + visits);
+            if (score > bestScore) {
+                bestScore = score;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    /** Add children for all moves in POS to NODE, whose position POS is,
+     *  unless another thread is doing so or the pool is exhausted, using
+     *  MOVES as a buffer.  Return true iff NODE is now expanded. */
+    private boolean expand(int node, BitBoard pos, int[] moves) {
+        if (!_state.compareAndSet(node, UNEXPANDED, EXPANDING)) {
+            return _state.get(node) == EXPANDED;
+        }
+        int n = pos.moves(moves);
+        int first = _used.getAndAdd(n);
+        if (first + n > CAPACITY) {
+            _state.set(node, LEAF);
+            return false;
+        }
+        float total = 0;
+        for (int k = 0; k < n; k += 1) {
+            total += 1 + pos.gain(moves[k]);
+        }
+        for (int k = 0; k < n; k += 1) {
+            initNode(first + k, moves[k], (1 + pos.gain(moves[k])) / total);
+        }
+        _firstChild[node] = first;
+        _numChildren[node] = n;
+        _state.set(node, EXPANDED);
+        return true;
+    }
+
+    /** Set NODE to a fresh leaf reached by move MOVE with prior PRIOR. */
+    private void initNode(int node, int move, float prior) {
+        _move[node] = move;
+        _prior[node] = prior;
+        _numChildren[node] = 0;
+        _visits.set(node, 0);
+        _value.set(node, 0);
+        _state.set(node, UNEXPANDED);
+    }
+
+    /** Number of search threads. */
+    private final int _threads;
+    /** Milliseconds allowed per move. */
+    private final int _moveTime;
+    /** Source of seeds for playout generators. */
+    private Random _random;
+
+    /** The root of the current (or last) search. */
+    private int _root;
+    /** The position at _root, or null before the first search. */
+    private BitBoard _rootPos;
+    /** Number of nodes allocated from the pool. */
+    private final AtomicInteger _used = new AtomicInteger();
+    /** Number of playouts in the current search. */
+    private final AtomicLong _playouts = new AtomicLong();
+    /** Index of the first child of each expanded node. */
+    private final int[] _firstChild = new int[CAPACITY];
+    /** Number of children of each expanded node. */
+    private final int[] _numChildren = new int[CAPACITY];
+    /** BitBoard code of the move leading to each node. */
+    private final int[] _move = new int[CAPACITY];
+    /** Prior probability of the move leading to each node. */
+    private final float[] _prior = new float[CAPACITY];
+    /** Number of visits (including virtual losses) of each node. */
+    private final AtomicIntegerArray _visits =
+        new AtomicIntegerArray(CAPACITY);
+    /** Sum over visits of twice the value of each node to the player who
+     *  moved into it. */
+    private final AtomicLongArray _value = new AtomicLongArray(CAPACITY);
+    /** Expansion state of each node. */
+    private final AtomicIntegerArray _state =
+        new AtomicIntegerArray(CAPACITY);
+}
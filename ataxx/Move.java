@@ -122,6 +122,26 @@ class Move {
         return _toIndex;
     }
 
+    /** Return a small non-negative integer that uniquely identifies me,
+     *  suitable for compact storage.  A pass has code 0. */
+    int code() {
+        if (isPass()) {
+            return 0;
+        }
+        return _fromIndex * EXTENDED_SIDE * EXTENDED_SIDE + _toIndex;
+    }
+
+    /** Return the Move whose code() is CODE. */
+    static Move fromCode(int code) {
+        if (code == 0) {
+            return pass();
+        }
+        int size = EXTENDED_SIDE * EXTENDED_SIDE;
+        int from = code / size, to = code % size;
+        return ALL_MOVES[from % EXTENDED_SIDE][from / EXTENDED_SIDE]
+            [to % EXTENDED_SIDE][to / EXTENDED_SIDE];
+    }
+
     @Override
     public String toString() {
         if (isPass()) {
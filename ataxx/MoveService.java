@@ -0,0 +1,419 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static ataxx.PieceColor.*;
+import static ataxx.GameException.error;
+
+/** An HTTP service on a port of the local host that answers requests of
+ *  the form
+ *      GET /bestmove?pos=P&ms=M     or     GET /bestmove?pos=P&depth=D
+ *  where P is a position in the form read by Board.setPosition, with the
+ *  best move for the player to move in P found by searching for M
+ *  milliseconds (default DEFAULT_MILLIS) or to depth D.  The reply is a
+ *  JSON object giving the move, its value (positive if good for red, as
+ *  for AI), the depth searched, the principal variation, and whether
+ *  the result came from the cache.  Errors in requests get status 400,
+ *  and requests that cannot be served for lack of searchers get 503,
+ *  each with a JSON object giving the error.
+ *
+ *  Results are kept in an LRU cache keyed by the canonical key of the
+ *  position (see Board.canonicalSymmetry), so that a request for any
+ *  reflection of a position searched before is answered from the cache,
+ *  and by the depth searched.  A depth-D request is answered from the
+ *  cache when it holds a result of depth D or more.  A timed request is
+ *  answered by the deepest result that took (or was allowed) at least
+ *  as long, which is as deep as a new search would reach.  Identical
+ *  requests arriving while the first is still being searched wait for
+ *  its result rather than searching again.  At most THREADS searches
+ *  run at once, each with its own AI and transposition table; a request
+ *  that cannot get a searcher within ADMISSION_WAIT milliseconds is
+ *  refused.
+ *  @author Aayush Gupta
+ */
+class MoveService {
+
+    /** Search time for requests that give no budget. */
+    static final long DEFAULT_MILLIS = 1000;
+    /** Longest search allowed for a request. */
+    private static final long MAX_MILLIS = 60_000;
+    /** Deepest search the AI makes. */
+    private static final int MAX_DEPTH = 32;
+    /** Number of results kept in the cache. */
+    private static final int CACHE_SIZE = 4096;
+    /** Milliseconds a request waits for a searcher before being
+     *  refused. */
+    private static final long ADMISSION_WAIT = 100;
+
+    /** A service listening on PORT that runs at most THREADS searches at
+     *  once, and reports on its progress to REPORTER. */
+    MoveService(int port, int threads, Reporter reporter) {
+        _port = port;
+        _reporter = reporter;
+        _searchers = new ArrayBlockingQueue<>(threads);
+        for (int k = 0; k < threads; k += 1) {
+            Game game = new Game(null, (b) -> { }, reporter, false);
+            _searchers.add(new AI(game, RED, k));
+        }
+    }
+
+    /** Start serving requests on threads of the service's own.  Returns
+     *  an exit code for the program: 0 if the service started, and
+     *  otherwise 1. */
+    int start() {
+        try {
+            HttpServer server =
+                HttpServer.create(new InetSocketAddress(InetAddress
+                                                        .getLoopbackAddress(),
+                                                        _port), 0);
+            server.createContext("/bestmove", this::handle);
+            server.setExecutor(Server.threadPerTaskExecutor("http"));
+            server.start();
+            _reporter.msg("Serving best moves on port %d.",
+                          server.getAddress().getPort());
+            return 0;
+        } catch (IOException excp) {
+            _reporter.err("Could not start service: %s", excp.getMessage());
+            return 1;
+        }
+    }
+
+    /** Answer the request EXCHANGE, as described above. */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                reply(exchange, 405, errorJson("only GET is supported"));
+            } else if (!exchange.getRequestURI().getPath()
+                       .equals("/bestmove")) {
+                reply(exchange, 404, errorJson("no such resource"));
+            } else {
+                reply(exchange, 200,
+                      bestMove(parameters(exchange.getRequestURI()
+                                          .getRawQuery())));
+            }
+        } catch (GameException excp) {
+            reply(exchange, 400, errorJson(excp.getMessage()));
+        } catch (NumberFormatException excp) {
+            reply(exchange, 400, errorJson("bad number in request"));
+        } catch (RejectedExecutionException excp) {
+            reply(exchange, 503, errorJson(excp.getMessage()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /** Return the number of searches I have run, not counting requests
+     *  answered from the cache or by another request's search. */
+    long searches() {
+        return _searchCount.get();
+    }
+
+    /** Return the reply, in JSON, to a request with parameters PARAMS.
+     *  Throws GameException or NumberFormatException if the request is
+     *  malformed, and RejectedExecutionException if no searcher is free
+     *  soon enough. */
+    String bestMove(Map<String, String> params) {
+        String pos = params.get("pos");
+        if (pos == null) {
+            throw error("missing pos");
+        }
+        Board board = Board.fromPosition(pos);
+        int depth = 0;
+        long millis = DEFAULT_MILLIS;
+        if (params.containsKey("depth")) {
+            depth = Integer.parseInt(params.get("depth"));
+            if (depth < 1 || depth > MAX_DEPTH) {
+                throw error("depth must be from 1 to %d", MAX_DEPTH);
+            }
+            millis = 0;
+        } else if (params.containsKey("ms")) {
+            millis = Long.parseLong(params.get("ms"));
+            if (millis < 1 || millis > MAX_MILLIS) {
+                throw error("ms must be from 1 to %d", MAX_MILLIS);
+            }
+        }
+        if (board.getWinner() != null) {
+            throw error("game is over");
+        }
+        Symmetry sym = board.canonicalSymmetry();
+        if (!board.canMove(board.whoseMove())) {
+            List<Move> pass = List.of(Move.pass());
+            return resultJson(new Result(0, Move.pass(), 0, pass, 0),
+                              sym, false);
+        }
+        Key query = new Key(board.key(sym), board.numJumps(), depth, millis);
+        Result result = cached(query);
+        if (result != null) {
+            return resultJson(result, sym, true);
+        }
+        CompletableFuture<Result> mine = new CompletableFuture<>();
+        CompletableFuture<Result> shared = _pending.putIfAbsent(query, mine);
+        if (shared == null) {
+            shared = mine;
+            try {
+                result = cached(query);
+                mine.complete(result != null ? result
+                              : search(board, sym, query));
+            } catch (RuntimeException excp) {
+                mine.completeExceptionally(excp);
+            } finally {
+                _pending.remove(query);
+            }
+        }
+        try {
+            return resultJson(shared.join(), sym, false);
+        } catch (CompletionException excp) {
+            throw (RuntimeException) excp.getCause();
+        }
+    }
+
+    /** Return the result of searching BOARD, whose canonical symmetry is
+     *  SYM, with the budget given by QUERY, and add it to the cache.
+     *  Throws RejectedExecutionException if no searcher becomes free
+     *  soon enough. */
+    private Result search(Board board, Symmetry sym, Key query) {
+        AI ai;
+        try {
+            ai = _searchers.poll(ADMISSION_WAIT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException excp) {
+            ai = null;
+        }
+        if (ai == null) {
+            throw new RejectedExecutionException("too many searches");
+        }
+        _searchCount.incrementAndGet();
+        try {
+            long start = System.nanoTime();
+            Result[] last = new Result[1];
+            AI searcher = ai;
+            ai.findMove(board, 0,
+                        query.depth > 0 ? MAX_MILLIS : query.millis,
+                        new AI.Listener() {
+                    @Override
+                    public void iteration(int depth, Move move, int score,
+                                          long nodes, List<Move> pv) {
+                        List<Move> line = new ArrayList<>();
+                        for (Move m : pv) {
+                            line.add(sym.move(m));
+                        }
+                        long elapsed =
+                            (System.nanoTime() - start) / 1_000_000;
+                        last[0] = new Result(depth, sym.move(move), score,
+                                             line, elapsed);
+                        if (depth >= query.depth && query.depth > 0) {
+                            searcher.stop(false);
+                        }
+                    }
+                });
+            Result result = last[0];
+            if (query.depth == 0) {
+                result = new Result(result.depth, result.move,
+                                    result.score, result.pv,
+                                    Math.max(result.millis, query.millis));
+            }
+            store(new Key(query.position, query.jumps, result.depth, 0),
+                  result);
+            return result;
+        } finally {
+            _searchers.add(ai);
+        }
+    }
+
+    /** Return a result from the cache good enough to answer QUERY, as
+     *  described above, or null if there is none. */
+    private synchronized Result cached(Key query) {
+        for (int d = MAX_DEPTH; d >= Math.max(1, query.depth); d -= 1) {
+            Result result =
+                _cache.get(new Key(query.position, query.jumps, d, 0));
+            if (result != null
+                && (query.depth > 0 || result.millis >= query.millis)) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    /** Record RESULT in the cache under KEY, keeping the time allowed by
+     *  any result already there if that is longer. */
+    private synchronized void store(Key key, Result result) {
+        Result old = _cache.get(key);
+        if (old != null && old.millis > result.millis) {
+            result = new Result(result.depth, result.move, result.score,
+                                result.pv, old.millis);
+        }
+        _cache.put(key, result);
+    }
+
+    /** Return the parameters in the URL query string QUERY (which may be
+     *  null). */
+    private static Map<String, String> parameters(String query) {
+        Map<String, String> result = new HashMap<>();
+        if (query == null) {
+            return result;
+        }
+        for (String param : query.split("&")) {
+            int eq = param.indexOf('=');
+            if (eq > 0) {
+                result.put(param.substring(0, eq),
+                           URLDecoder.decode(param.substring(eq + 1),
+                                             StandardCharsets.UTF_8));
+            }
+        }
+        return result;
+    }
+
+    /** Send BODY, a JSON object, in reply to EXCHANGE with status code
+     *  STATUS. */
+    private static void reply(HttpExchange exchange, int status, String body)
+        throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /** Return RESULT, for a position whose canonical symmetry is SYM, in
+     *  JSON, noting that it came from the cache if CACHED. */
+    private static String resultJson(Result result, Symmetry sym,
+                                     boolean cached) {
+        Symmetry inverse = sym.inverse();
+        StringBuilder out = new StringBuilder();
+        out.append("{\"move\":\"").append(inverse.move(result.move))
+            .append("\",\"score\":").append(result.score)
+            .append(",\"depth\":").append(result.depth)
+            .append(",\"pv\":[");
+        for (int k = 0; k < result.pv.size(); k += 1) {
+            out.append(k == 0 ? "\"" : ",\"")
+                .append(inverse.move(result.pv.get(k))).append('"');
+        }
+        out.append("],\"cached\":").append(cached).append('}');
+        return out.toString();
+    }
+
+    /** Return a JSON object reporting the error MESSAGE. */
+    private static String errorJson(String message) {
+        StringBuilder out = new StringBuilder("{\"error\":\"");
+        for (char c : message.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < ' ') {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        return out.append("\"}").toString();
+    }
+
+    /** Identifies a search: the canonical key of a position and its number
+     *  of consecutive jumps, together with a budget, which is a depth or
+     *  a number of milliseconds (the other being 0). */
+    private static final class Key {
+        /** The search of a position with canonical key POSITION after
+         *  JUMPS jumps, to DEPTH or for MILLIS milliseconds. */
+        Key(long position, int jumps, int depth, long millis) {
+            this.position = position;
+            this.jumps = jumps;
+            this.depth = depth;
+            this.millis = millis;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return position == other.position && jumps == other.jumps
+                && depth == other.depth && millis == other.millis;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(position * 31 + jumps) * 31
+                + depth * 17 + Long.hashCode(millis);
+        }
+
+        /** Canonical key of the position. */
+        final long position;
+        /** Number of consecutive jumps. */
+        final int jumps;
+        /** Depth to search, or 0. */
+        final int depth;
+        /** Milliseconds to search, or 0. */
+        final long millis;
+    }
+
+    /** The result of a search, with moves in the canonical orientation of
+     *  the position searched. */
+    private static final class Result {
+        /** A search to DEPTH found MOVE, with value SCORE and principal
+         *  variation PV, and took or was allowed MILLIS milliseconds. */
+        Result(int depth, Move move, int score, List<Move> pv, long millis) {
+            this.depth = depth;
+            this.move = move;
+            this.score = score;
+            this.pv = pv;
+            this.millis = millis;
+        }
+
+        /** Depth searched. */
+        final int depth;
+        /** Best move. */
+        final Move move;
+        /** Value of the position. */
+        final int score;
+        /** Principal variation. */
+        final List<Move> pv;
+        /** Time taken or allowed. */
+        final long millis;
+    }
+
+    /** Port on which to listen. */
+    private final int _port;
+    /** Outlet for the service's own messages. */
+    private final Reporter _reporter;
+    /** Searchers not in use. */
+    private final BlockingQueue<AI> _searchers;
+    /** Number of searches run. */
+    private final AtomicLong _searchCount = new AtomicLong();
+    /** Searches under way, by query. */
+    private final Map<Key, CompletableFuture<Result>> _pending =
+        new ConcurrentHashMap<>();
+    /** Results of searches, keyed by canonical position and depth, in
+     *  order of last use. */
+    private final LinkedHashMap<Key, Result> _cache =
+        new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Result> e) {
+                return size() > CACHE_SIZE;
+            }
+        };
+}
@@ -0,0 +1,152 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/** Tests of the MoveService class, calling it directly rather than by
+ *  HTTP.
+ *  @author Aayush Gupta
+ */
+public class MoveServiceTest {
+
+    /** The starting position. */
+    private static final String START = "r5b/7/7/7/7/7/b5r r 0";
+
+    /** Return the value of the field NAME in the JSON object REPLY. */
+    private static String field(String reply, String name) {
+        Matcher mat =
+            Pattern.compile("\"" + name + "\":\"?([^\",}]*)").matcher(reply);
+        assertTrue("no " + name + " in " + reply, mat.find());
+        return mat.group(1);
+    }
+
+    /** Check that the request with parameters PARAMS is refused with
+     *  a GameException. */
+    private static void checkError(MoveService service,
+                                   Map<String, String> params) {
+        try {
+            service.bestMove(params);
+            fail("accepted " + params);
+        } catch (GameException excp) {
+            /* Expected */
+        }
+    }
+
+    @Test
+    public void testReflections() {
+        MoveService service = new MoveService(0, 1, new TextReporter());
+        String pos = SymmetryTest.POSITION;
+        String reply = service.bestMove(Map.of("pos", pos, "depth", "3"));
+        assertEquals("false", field(reply, "cached"));
+        assertEquals("3", field(reply, "depth"));
+        Move best = Move.move(field(reply, "move"));
+        assertTrue(Board.fromPosition(pos).legalMove(best));
+        for (Symmetry sym : Symmetry.values()) {
+            String image = SymmetryTest.image(pos, sym);
+            reply = service.bestMove(Map.of("pos", image, "depth", "3"));
+            assertEquals(sym + " cached", "true", field(reply, "cached"));
+            assertEquals(sym + " move", sym.move(best).toString(),
+                         field(reply, "move"));
+        }
+        reply = service.bestMove(Map.of("pos", pos, "depth", "2"));
+        assertEquals("deeper result serves", "true", field(reply, "cached"));
+        assertEquals(1, service.searches());
+        reply = service.bestMove(Map.of("pos", pos.replace(" 1", " 0"),
+                                        "depth", "3"));
+        assertEquals("jumps are part of the key", "false",
+                     field(reply, "cached"));
+        service.bestMove(Map.of("pos", pos, "depth", "4"));
+        assertEquals(3, service.searches());
+    }
+
+    @Test
+    public void testCoalesce() throws Exception {
+        int n = 8;
+        MoveService service = new MoveService(0, n, new TextReporter());
+        ExecutorService pool = Executors.newFixedThreadPool(n);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> replies = new ArrayList<>();
+        try {
+            for (int k = 0; k < n; k += 1) {
+                replies.add(pool.submit(() -> {
+                    start.await();
+                    return service.bestMove(Map.of("pos", START,
+                                                   "ms", "300"));
+                }));
+            }
+            start.countDown();
+            String move = null;
+            for (Future<String> reply : replies) {
+                String m = field(reply.get(), "move");
+                assertTrue("same answer for all",
+                           move == null || move.equals(m));
+                move = m;
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals("one search for identical requests", 1,
+                     service.searches());
+    }
+
+    @Test
+    public void testAdmission() throws Exception {
+        MoveService service = new MoveService(0, 1, new TextReporter());
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> first = pool.submit(() ->
+                service.bestMove(Map.of("pos", START, "ms", "500")));
+            while (service.searches() == 0) {
+                Thread.sleep(5);
+            }
+            try {
+                service.bestMove(Map.of("pos", SymmetryTest.POSITION,
+                                        "ms", "500"));
+                fail("second search admitted");
+            } catch (RejectedExecutionException excp) {
+                /* Expected */
+            }
+            assertEquals("false", field(first.get(), "cached"));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testMalformed() {
+        MoveService service = new MoveService(0, 1, new TextReporter());
+        checkError(service, Map.of());
+        checkError(service, Map.of("pos", "garbage"));
+        checkError(service, Map.of("pos", "r5b/7/7 r 0"));
+        checkError(service, Map.of("pos", "r5b/7/7/7/7/7/b5r g 0"));
+        checkError(service, Map.of("pos", "r5b/7/7/7/7/7/b5z r 0"));
+        checkError(service, Map.of("pos", START, "depth", "0"));
+        checkError(service, Map.of("pos", START, "depth", "33"));
+        checkError(service, Map.of("pos", START, "ms", "0"));
+        checkError(service, Map.of("pos", START, "ms", "60001"));
+        checkError(service, Map.of("pos", "r6/7/7/7/7/7/7 b 0"));
+        try {
+            service.bestMove(Map.of("pos", START, "depth", "deep"));
+            fail("accepted bad depth");
+        } catch (NumberFormatException excp) {
+            /* Expected */
+        }
+        assertEquals("nothing searched", 0, service.searches());
+    }
+}
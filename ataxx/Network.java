@@ -0,0 +1,359 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static ataxx.PieceColor.*;
+import static ataxx.GameException.error;
+
+/** A small neural network that evaluates positions, in the style of an
+ *  NNUE ("efficiently updatable neural network").  Its inputs are one
+ *  feature for each combination of square and content (red, blue, or
+ *  block).  The first layer's output for a position, its accumulator,
+ *  is the sum of the weight rows of the features present, so a change
+ *  to one square adds or subtracts a single row; a Board with an
+ *  Accumulator attached keeps it current as moves are made and undone.
+ *  The accumulator is clipped to 0 .. Kernel.ACTIVATION_MAX and fed to
+ *  one dense hidden layer, whose clipped outputs are combined into a
+ *  score, positive when red is ahead.
+ *
+ *  All weights are 16-bit integers.  Weights may be read from a file;
+ *  the default network simply counts material, scoring one point per
+ *  piece, so that it plays as the AI's former evaluation did.
+ *  @author Aayush Gupta
+ */
+class Network {
+
+    /** Identifies a weights file ("ATXW"). */
+    private static final int MAGIC = 0x41545857;
+    /** Current weights file format version. */
+    private static final int VERSION = 1;
+    /** Number of input features. */
+    static final int INPUTS = 3 * BitBoard.SQUARES;
+    /** Sizes of the accumulator and the hidden layer of the default
+     *  network. */
+    static final int DEFAULT_ACCUMULATOR = 64, DEFAULT_HIDDEN = 16;
+    /** Right shift applied to hidden-layer sums before clipping. */
+    static final int HIDDEN_SHIFT = 6;
+
+    /** A network with an accumulator of ACCUMULATOR values and a hidden
+     *  layer of HIDDEN values, whose weights are all 0, computing with
+     *  KERNEL. */
+    Network(int accumulator, int hidden, Kernel kernel) {
+        _inputBias = new short[accumulator];
+        _inputWeights = new short[INPUTS * accumulator];
+        _hiddenBias = new int[hidden];
+        _hiddenWeights = new short[hidden * accumulator];
+        _outputWeights = new short[hidden];
+        _kernel = kernel;
+    }
+
+    /** A network with the same weights as NETWORK, computing with
+     *  KERNEL. */
+    Network(Network network, Kernel kernel) {
+        _inputBias = network._inputBias;
+        _inputWeights = network._inputWeights;
+        _hiddenBias = network._hiddenBias;
+        _hiddenWeights = network._hiddenWeights;
+        _outputWeights = network._outputWeights;
+        _outputBias = network._outputBias;
+        _kernel = kernel;
+    }
+
+    /** Return the default network, which scores a position as the number
+     *  of red pieces minus the number of blue pieces. */
+    static Network material() {
+        Network net = new Network(DEFAULT_ACCUMULATOR, DEFAULT_HIDDEN,
+                                  Kernel.get());
+        int size = DEFAULT_ACCUMULATOR;
+        for (int b = 0; b < BitBoard.SQUARES; b += 1) {
+            net._inputWeights[feature(RED, b) * size] = 1;
+            net._inputWeights[feature(BLUE, b) * size + 1] = 1;
+        }
+        net._hiddenWeights[0] = 1 << HIDDEN_SHIFT;
+        net._hiddenWeights[size + 1] = 1 << HIDDEN_SHIFT;
+        net._outputWeights[0] = 1;
+        net._outputWeights[1] = -1;
+        return net;
+    }
+
+    /** Return the network whose weights are in the file named NAME. */
+    static Network load(String name) {
+        try (DataInputStream in = new DataInputStream(
+                 new BufferedInputStream(new FileInputStream(name)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                || in.readInt() != INPUTS) {
+                throw error("%s is not a network weights file", name);
+            }
+            int accumulator = in.readInt(), hidden = in.readInt();
+            if (accumulator <= 0 || hidden <= 0) {
+                throw error("bad layer sizes in %s", name);
+            }
+            Network net = new Network(accumulator, hidden, Kernel.get());
+            read(in, net._inputBias);
+            read(in, net._inputWeights);
+            for (int j = 0; j < hidden; j += 1) {
+                net._hiddenBias[j] = in.readInt();
+            }
+            read(in, net._hiddenWeights);
+            net._outputBias = in.readInt();
+            read(in, net._outputWeights);
+            return net;
+        } catch (IOException excp) {
+            throw error("could not read network weights from %s", name);
+        }
+    }
+
+    /** Fill DATA from IN. */
+    private static void read(DataInputStream in, short[] data)
+        throws IOException {
+        for (int i = 0; i < data.length; i += 1) {
+            data[i] = in.readShort();
+        }
+    }
+
+    /** Write my weights to the file named NAME, in the form read by
+     *  load. */
+    void write(String name) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(name)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(INPUTS);
+            out.writeInt(_inputBias.length);
+            out.writeInt(_hiddenBias.length);
+            write(out, _inputBias);
+            write(out, _inputWeights);
+            for (int bias : _hiddenBias) {
+                out.writeInt(bias);
+            }
+            write(out, _hiddenWeights);
+            out.writeInt(_outputBias);
+            write(out, _outputWeights);
+        }
+    }
+
+    /** Write DATA to OUT. */
+    private static void write(DataOutputStream out, short[] data)
+        throws IOException {
+        for (short x : data) {
+            out.writeShort(x);
+        }
+    }
+
+    /** Return the input feature for a square with bit index BIT (as in
+     *  BitBoard) containing CONTENTS, or -1 if CONTENTS is EMPTY. */
+    static int feature(PieceColor contents, int bit) {
+        switch (contents) {
+        case RED:
+            return bit;
+        case BLUE:
+            return BitBoard.SQUARES + bit;
+        case BLOCKED:
+            return 2 * BitBoard.SQUARES + bit;
+        default:
+            return -1;
+        }
+    }
+
+    /** Return the name of the kernel I compute with. */
+    String kernelName() {
+        return _kernel.name();
+    }
+
+    /** Return a new Accumulator for me, initially for an empty board. */
+    Accumulator newAccumulator() {
+        return new Accumulator();
+    }
+
+    /** The accumulated first-layer output for one position, together
+     *  with space for evaluating it.  Not safe for use by several threads
+     *  at once. */
+    class Accumulator {
+
+        /** A new accumulator for a board with no pieces or blocks. */
+        Accumulator() {
+            _values = _inputBias.clone();
+            _activations = new short[_inputBias.length];
+            _hidden = new short[_hiddenBias.length];
+        }
+
+        /** Recompute my values from scratch for the position on BOARD. */
+        void refresh(Board board) {
+            System.arraycopy(_inputBias, 0, _values, 0, _values.length);
+            for (PieceColor color : new PieceColor[] { RED, BLUE, BLOCKED }) {
+                for (long s = board.bits(color); s != 0; s &= s - 1) {
+                    int bit = Long.numberOfTrailingZeros(s);
+                    _kernel.add(_values, _inputWeights,
+                                feature(color, bit) * _values.length);
+                }
+            }
+        }
+
+        /** Update my values for a change of the contents of the square
+         *  with bit index BIT from OLD to V. */
+        void change(int bit, PieceColor old, PieceColor v) {
+            int f = feature(old, bit);
+            if (f >= 0) {
+                _kernel.sub(_values, _inputWeights, f * _values.length);
+            }
+            f = feature(v, bit);
+            if (f >= 0) {
+                _kernel.add(_values, _inputWeights, f * _values.length);
+            }
+        }
+
+        /** Return the network's score for my position. */
+        int evaluate() {
+            _kernel.activate(_values, _activations);
+            int size = _activations.length;
+            for (int j = 0; j < _hidden.length; j += 1) {
+                int sum = _hiddenBias[j]
+                    + _kernel.dot(_activations, _hiddenWeights, j * size);
+                _hidden[j] = (short) Math.min(Math.max(sum >> HIDDEN_SHIFT,
+                                                       0),
+                                              Kernel.ACTIVATION_MAX);
+            }
+            return _outputBias + _kernel.dot(_hidden, _outputWeights, 0);
+        }
+
+        /** The accumulated first-layer sums. */
+        private final short[] _values;
+        /** Clipped first-layer outputs. */
+        private final short[] _activations;
+        /** Clipped hidden-layer outputs. */
+        private final short[] _hidden;
+    }
+
+    /** Report to REPORTER how many positions per second I evaluate with
+     *  each available kernel (the fastest first, so that the compiler
+     *  optimizes its calls before seeing any other kernel), both
+     *  incrementally (updating the accumulator for a move, evaluating,
+     *  and restoring it, as at the leaves of a search) and from
+     *  scratch.  Each measurement uses
+     *  positions from random games and takes about MILLIS milliseconds,
+     *  after a warm-up of the same length. */
+    void benchmark(int millis, Reporter reporter) {
+        List<Board> positions = new ArrayList<>();
+        List<Board> children = new ArrayList<>();
+        Random random = new Random(0);
+        Board board = new Board();
+        while (positions.size() < BENCHMARK_POSITIONS) {
+            List<Move> moves = board.possibleMoves(board.whoseMove());
+            if (board.getWinner() != null || moves.isEmpty()) {
+                board.clear();
+                continue;
+            }
+            positions.add(new Board(board));
+            board.makeMove(moves.get(random.nextInt(moves.size())));
+            children.add(new Board(board));
+        }
+        for (Kernel kernel : new Kernel[] { Kernel.get(), new Kernel() }) {
+            Network net = new Network(this, kernel);
+            net.rate(positions, children, millis, true);
+            net.rate(positions, children, millis, false);
+            reporter.msg("[eval] %s: %d incremental evals/sec,"
+                         + " %d full evals/sec", kernel.name(),
+                         net.rate(positions, children, millis, true),
+                         net.rate(positions, children, millis, false));
+            if (kernel.getClass() == Kernel.class) {
+                break;
+            }
+        }
+    }
+
+    /** Return the number of evaluations per second of the positions in
+     *  CHILDREN during about MILLIS milliseconds.  If INCREMENTAL, each
+     *  is evaluated by updating an accumulator for the corresponding
+     *  position in POSITIONS and restoring it afterwards; otherwise, the
+     *  accumulator is computed from scratch. */
+    private long rate(List<Board> positions, List<Board> children,
+                      int millis, boolean incremental) {
+        int n = positions.size();
+        Accumulator[] accs = new Accumulator[n];
+        int[][] changes = new int[n][];
+        for (int i = 0; i < n; i += 1) {
+            accs[i] = newAccumulator();
+            accs[i].refresh(positions.get(i));
+            changes[i] = changes(positions.get(i), children.get(i));
+        }
+        long count = 0, sink = 0;
+        long start = System.nanoTime(), end = start + millis * 1_000_000L;
+        long now = start;
+        while (now < end) {
+            for (int i = 0; i < n; i += 1) {
+                Accumulator acc = accs[i];
+                if (incremental) {
+                    int[] change = changes[i];
+                    for (int k = 0; k < change.length; k += 3) {
+                        acc.change(change[k], COLORS[change[k + 1]],
+                                   COLORS[change[k + 2]]);
+                    }
+                    sink += acc.evaluate();
+                    for (int k = 0; k < change.length; k += 3) {
+                        acc.change(change[k], COLORS[change[k + 2]],
+                                   COLORS[change[k + 1]]);
+                    }
+                } else {
+                    acc.refresh(children.get(i));
+                    sink += acc.evaluate();
+                }
+            }
+            count += n;
+            now = System.nanoTime();
+        }
+        Utils.debug(2, "[eval] checksum %d", sink);
+        return count * 1_000_000_000L / Math.max(1, now - start);
+    }
+
+    /** Return the squares whose contents differ between BOARD0 and
+     *  BOARD1 as triples of a bit index and the ordinals of its contents
+     *  on BOARD0 and BOARD1. */
+    private static int[] changes(Board board0, Board board1) {
+        int[] result = new int[0];
+        for (int b = 0; b < BitBoard.SQUARES; b += 1) {
+            int sq = BitBoard.square(b);
+            PieceColor old = board0.get(sq), v = board1.get(sq);
+            if (old != v) {
+                result = Arrays.copyOf(result, result.length + 3);
+                result[result.length - 3] = b;
+                result[result.length - 2] = old.ordinal();
+                result[result.length - 1] = v.ordinal();
+            }
+        }
+        return result;
+    }
+
+    /** Number of positions used by benchmark. */
+    private static final int BENCHMARK_POSITIONS = 4096;
+    /** The PieceColors, by ordinal. */
+    private static final PieceColor[] COLORS = PieceColor.values();
+
+    /** First-layer biases and weights: the weights for feature F are
+     *  _inputWeights[F * _inputBias.length ...]. */
+    private final short[] _inputBias, _inputWeights;
+    /** Hidden-layer biases. */
+    private final int[] _hiddenBias;
+    /** Hidden-layer weights: those for output J are _hiddenWeights[J *
+     *  _inputBias.length ...]. */
+    private final short[] _hiddenWeights;
+    /** Output weights. */
+    private final short[] _outputWeights;
+    /** Output bias. */
+    private int _outputBias;
+    /** Arithmetic used for evaluation. */
+    private final Kernel _kernel;
+}
@@ -0,0 +1,348 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static ataxx.PieceColor.*;
+import static ataxx.GameException.error;
+
+/** A read-only table of statistics about the positions reached in a
+ *  collection of game archives: for each position, how often it occurred,
+ *  how the games containing it ended, and how often each move was played
+ *  from it.  Positions are identified by their canonical keys (see
+ *  Board.canonicalKey), so that games that are reflections of each other
+ *  (as with symmetric blocks) are merged.
+ *
+ *  The table is stored as a file of fixed-size position records sorted by
+ *  key, followed by the move records they refer to, and is memory-mapped
+ *  and searched by bisection when queried.
+ *  @author Aayush Gupta
+ */
+class OpeningIndex {
+
+    /** Identifies an index file ("ATXI"). */
+    private static final int MAGIC = 0x41545849;
+    /** Current file format version. */
+    private static final int VERSION = 2;
+    /** Size of the file header in bytes: magic, version, and the number
+     *  of position and move records. */
+    private static final int HEADER_SIZE = 16;
+    /** Size of a position record in bytes: key, visits, red wins, blue
+     *  wins, draws, index of first move record, number of moves. */
+    private static final int POSITION_SIZE = 32;
+    /** Size of a move record in bytes: move code and count. */
+    private static final int MOVE_SIZE = 8;
+    /** Number of distinct move codes (see Move.code). */
+    private static final int MOVE_CODES = Board.EXTENDED_SIDE
+        * Board.EXTENDED_SIDE * Board.EXTENDED_SIDE * Board.EXTENDED_SIDE;
+
+    /** Build an index of the games in the archives named ARCHIVES, using
+     *  THREADS threads and reporting to REPORTER, and write it to the file
+     *  named OUT.  Returns an exit code: 0 if all games were valid and
+     *  the index was written, and 1 otherwise. */
+    static int build(List<String> archives, String out, int threads,
+                     Reporter reporter) {
+        Replayer replayer = new Replayer(threads, reporter, Builder::new);
+        Replayer.Tally tally = replayer.run(archives);
+        Builder positions = (Builder) tally.recorder;
+        try {
+            positions.write(out);
+        } catch (IOException excp) {
+            reporter.err("Could not write %s", out);
+            return 1;
+        }
+        reporter.msg("[index] %d positions written to %s",
+                     positions.size(), out);
+        return tally.invalid == 0 ? 0 : 1;
+    }
+
+    /** The index stored in the file named NAME. */
+    OpeningIndex(String name) {
+        _name = name;
+        try (FileChannel chan = FileChannel.open(Paths.get(name),
+                                                  StandardOpenOption.READ)) {
+            if (chan.size() > Integer.MAX_VALUE) {
+                throw error("opening index %s is too large", name);
+            }
+            _data = chan.map(FileChannel.MapMode.READ_ONLY, 0, chan.size());
+        } catch (IOException excp) {
+            throw error("could not read opening index %s", name);
+        }
+        if (_data.limit() < HEADER_SIZE || _data.getInt(0) != MAGIC
+            || _data.getInt(4) != VERSION) {
+            throw error("%s is not an opening index", name);
+        }
+        _numPositions = _data.getInt(8);
+        _numMoves = _data.getInt(12);
+        if (_numPositions < 0 || _numMoves < 0) {
+            throw error("opening index %s is damaged", name);
+        }
+        _movesStart = HEADER_SIZE + (long) _numPositions * POSITION_SIZE;
+        if (_data.limit() < _movesStart + (long) _numMoves * MOVE_SIZE) {
+            throw error("opening index %s is truncated", name);
+        }
+    }
+
+    /** Return the statistics recorded for the position on BOARD, or null
+     *  if it does not occur in the index.  Moves are given as they apply
+     *  to BOARD itself, rather than to its canonical form. */
+    Entry lookup(Board board) {
+        Symmetry sym = board.canonicalSymmetry();
+        long key = board.key(sym);
+        int lo = 0, hi = _numPositions - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long k = _data.getLong(HEADER_SIZE + mid * POSITION_SIZE);
+            if (k < key) {
+                lo = mid + 1;
+            } else if (k > key) {
+                hi = mid - 1;
+            } else {
+                return entry(HEADER_SIZE + mid * POSITION_SIZE,
+                             sym.inverse());
+            }
+        }
+        return null;
+    }
+
+    /** Return the Entry for the position record at byte POS of my data,
+     *  transforming its moves by SYM. */
+    private Entry entry(int pos, Symmetry sym) {
+        int first = _data.getInt(pos + 24), num = _data.getInt(pos + 28);
+        if (first < 0 || num < 0 || (long) first + num > _numMoves) {
+            throw error("opening index %s is damaged", _name);
+        }
+        Move[] moves = new Move[num];
+        int[] counts = new int[num];
+        for (int k = 0; k < num; k += 1) {
+            int m = (int) (_movesStart + (long) (first + k) * MOVE_SIZE);
+            int code = _data.getInt(m);
+            if (code < 0 || code >= MOVE_CODES
+                || Move.fromCode(code) == null) {
+                throw error("opening index %s is damaged", _name);
+            }
+            moves[k] = sym.move(Move.fromCode(code));
+            counts[k] = _data.getInt(m + 4);
+        }
+        return new Entry(_data.getInt(pos + 8), _data.getInt(pos + 12),
+                         _data.getInt(pos + 16), _data.getInt(pos + 20),
+                         moves, counts);
+    }
+
+    /** Statistics for a single position. */
+    static class Entry {
+
+        /** A position seen VISITS times, in games of which RED, BLUE, and
+         *  DRAWS were won by red, won by blue, and drawn.  MOVES[k] was
+         *  played COUNTS[k] times, in decreasing order of COUNTS. */
+        Entry(int visits, int red, int blue, int draws,
+              Move[] moves, int[] counts) {
+            _visits = visits;
+            _red = red;
+            _blue = blue;
+            _draws = draws;
+            _moves = moves;
+            _counts = counts;
+        }
+
+        /** Return the number of times my position was seen. */
+        int visits() {
+            return _visits;
+        }
+
+        /** Return the number of games containing my position that were
+         *  won by WHO, or drawn if WHO is EMPTY. */
+        int results(PieceColor who) {
+            switch (who) {
+            case RED:
+                return _red;
+            case BLUE:
+                return _blue;
+            default:
+                return _draws;
+            }
+        }
+
+        /** Return the moves played from my position, most frequent first. */
+        Move[] moves() {
+            return _moves;
+        }
+
+        /** Return the number of times moves()[K] was played. */
+        int count(int k) {
+            return _counts[k];
+        }
+
+        /** Number of visits. */
+        private final int _visits;
+        /** Game results. */
+        private final int _red, _blue, _draws;
+        /** Moves played. */
+        private final Move[] _moves;
+        /** Frequencies of _moves. */
+        private final int[] _counts;
+    }
+
+    /** Accumulates position statistics from replayed games. */
+    private static class Builder implements Replayer.Recorder {
+
+        @Override
+        public void record(long key, Move move, PieceColor winner) {
+            Stats stats = _positions.computeIfAbsent(key, (k) -> new Stats());
+            stats.add(move.code(), 1, winner);
+        }
+
+        @Override
+        public void merge(Replayer.Recorder other) {
+            for (Map.Entry<Long, Stats> e
+                     : ((Builder) other)._positions.entrySet()) {
+                Stats mine = _positions.get(e.getKey());
+                if (mine == null) {
+                    _positions.put(e.getKey(), e.getValue());
+                } else {
+                    mine.merge(e.getValue());
+                }
+            }
+        }
+
+        /** Return the number of distinct positions recorded. */
+        int size() {
+            return _positions.size();
+        }
+
+        /** Write my statistics as an index file named NAME. */
+        void write(String name) throws IOException {
+            long[] keys = new long[_positions.size()];
+            int n = 0, numMoves = 0;
+            for (Map.Entry<Long, Stats> e : _positions.entrySet()) {
+                keys[n] = e.getKey();
+                numMoves += e.getValue().numMoves;
+                n += 1;
+            }
+            Arrays.sort(keys);
+            try (DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(new FileOutputStream(name)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(keys.length);
+                out.writeInt(numMoves);
+                List<Stats> order = new ArrayList<>();
+                int first = 0;
+                for (long key : keys) {
+                    Stats stats = _positions.get(key);
+                    stats.sortMoves();
+                    out.writeLong(key);
+                    out.writeInt(stats.visits);
+                    out.writeInt(stats.red);
+                    out.writeInt(stats.blue);
+                    out.writeInt(stats.draws);
+                    out.writeInt(first);
+                    out.writeInt(stats.numMoves);
+                    first += stats.numMoves;
+                    order.add(stats);
+                }
+                for (Stats stats : order) {
+                    for (int k = 0; k < stats.numMoves; k += 1) {
+                        out.writeInt(stats.codes[k]);
+                        out.writeInt(stats.counts[k]);
+                    }
+                }
+            }
+        }
+
+        /** Statistics by canonical position key. */
+        private final HashMap<Long, Stats> _positions = new HashMap<>();
+    }
+
+    /** Mutable statistics for one position during building. */
+    private static class Stats {
+        /** Number of visits and results of games. */
+        int visits, red, blue, draws;
+        /** Number of distinct moves recorded. */
+        int numMoves;
+        /** Codes of the moves recorded. */
+        int[] codes = new int[2];
+        /** COUNTS[k] is the number of times CODES[k] was played. */
+        int[] counts = new int[2];
+
+        /** Record that the move with code CODE was played VISITS times, in
+         *  games won by WINNER (EMPTY for draws). */
+        void add(int code, int visits0, PieceColor winner) {
+            visits += visits0;
+            if (winner == RED) {
+                red += visits0;
+            } else if (winner == BLUE) {
+                blue += visits0;
+            } else {
+                draws += visits0;
+            }
+            addMove(code, visits0);
+        }
+
+        /** Add N plays of the move with code CODE. */
+        void addMove(int code, int n) {
+            for (int k = 0; k < numMoves; k += 1) {
+                if (codes[k] == code) {
+                    counts[k] += n;
+                    return;
+                }
+            }
+            if (numMoves == codes.length) {
+                codes = Arrays.copyOf(codes, 2 * numMoves);
+                counts = Arrays.copyOf(counts, 2 * numMoves);
+            }
+            codes[numMoves] = code;
+            counts[numMoves] = n;
+            numMoves += 1;
+        }
+
+        /** Add the statistics in OTHER to mine. */
+        void merge(Stats other) {
+            visits += other.visits;
+            red += other.red;
+            blue += other.blue;
+            draws += other.draws;
+            for (int k = 0; k < other.numMoves; k += 1) {
+                addMove(other.codes[k], other.counts[k]);
+            }
+        }
+
+        /** Order my moves by decreasing frequency. */
+        void sortMoves() {
+            for (int i = 1; i < numMoves; i += 1) {
+                int code = codes[i], count = counts[i];
+                int j;
+                for (j = i; j > 0 && counts[j - 1] < count; j -= 1) {
+                    codes[j] = codes[j - 1];
+                    counts[j] = counts[j - 1];
+                }
+                codes[j] = code;
+                counts[j] = count;
+            }
+        }
+    }
+
+    /** Name of the index file. */
+    private final String _name;
+    /** Contents of the index file. */
+    private final MappedByteBuffer _data;
+    /** Number of position and move records. */
+    private final int _numPositions, _numMoves;
+    /** Byte offset of the first move record. */
+    private final long _movesStart;
+}
@@ -0,0 +1,188 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static ataxx.PieceColor.*;
+import static org.junit.Assert.*;
+
+/** Tests of building, reading, and validating opening indices.
+ *  @author Aayush Gupta
+ */
+public class OpeningIndexTest {
+
+    /** Number of games indexed. */
+    private static final int GAMES = 60;
+    /** Size of the file header and of a position record in bytes. */
+    private static final int HEADER_SIZE = 16, POSITION_SIZE = 32;
+
+    /** Return a reporter that discards its messages. */
+    private static Reporter quiet() {
+        PrintStream discard = new PrintStream(new ByteArrayOutputStream());
+        return new TextReporter(discard, discard);
+    }
+
+    /** Check that reading the index FILE, and looking up the starting
+     *  position in it, fails with a message containing REASON. */
+    private static void checkRefused(Path file, String reason) {
+        try {
+            new OpeningIndex(file.toString()).lookup(new Board());
+            fail("accepted " + reason);
+        } catch (GameException excp) {
+            assertTrue(excp.getMessage(),
+                       excp.getMessage().contains(reason));
+        }
+    }
+
+    /** Write CONTENTS, changed by putting the int VALUE at each byte
+     *  offset in POSITIONS, to FILE. */
+    private static void write(Path file, byte[] contents, int value,
+                              int... positions) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(contents.clone());
+        for (int pos : positions) {
+            data.putInt(pos, value);
+        }
+        Files.write(file, data.array());
+    }
+
+    @Test
+    public void testIndex() throws IOException {
+        Random random = new Random(27);
+        long[] wins = new long[1 + PieceColor.values().length];
+        List<String> games = new ArrayList<>();
+        Map<Move, Integer> firstMoves = new HashMap<>();
+        for (int k = 0; k < GAMES; k += 1) {
+            String game = ReplayerTest.randomGame(random, false, wins);
+            games.add(game);
+            firstMoves.merge(Move.move(game.split(" ")[0]), 1, Integer::sum);
+        }
+        games.add("a7-b6 g7-f6");
+        Path archive = Files.createTempFile("games", ".txt");
+        Path file = Files.createTempFile("openings", ".idx");
+        try {
+            Files.write(archive, games, StandardCharsets.US_ASCII);
+            assertEquals(0, OpeningIndex.build(List.of(archive.toString()),
+                                               file.toString(), 2, quiet()));
+            OpeningIndex index = new OpeningIndex(file.toString());
+
+            OpeningIndex.Entry start = index.lookup(new Board());
+            assertNotNull(start);
+            assertEquals("unfinished games not indexed", GAMES,
+                         start.visits());
+            assertEquals(wins[1 + RED.ordinal()], start.results(RED));
+            assertEquals(wins[1 + BLUE.ordinal()], start.results(BLUE));
+            assertEquals(wins[1 + EMPTY.ordinal()], start.results(EMPTY));
+            Move[] moves = start.moves();
+            assertEquals(firstMoves.size(), moves.length);
+            for (int k = 0; k < moves.length; k += 1) {
+                assertEquals(moves[k].toString(),
+                             (int) firstMoves.get(moves[k]), start.count(k));
+                assertTrue("most frequent first",
+                           k == 0 || start.count(k - 1) >= start.count(k));
+            }
+
+            Board after = new Board();
+            after.makeMove(moves[0]);
+            int visits = 0;
+            for (int k = 0; k < moves.length; k += 1) {
+                Board board = new Board();
+                board.makeMove(moves[k]);
+                if (board.canonicalKey() == after.canonicalKey()) {
+                    visits += start.count(k);
+                }
+            }
+            OpeningIndex.Entry next = index.lookup(after);
+            assertEquals("reflections counted together", visits,
+                         next.visits());
+            for (Symmetry sym : Symmetry.values()) {
+                Board image = Board.fromPosition(
+                    SymmetryTest.image(after.toPosition(), sym));
+                OpeningIndex.Entry reflected = index.lookup(image);
+                assertEquals(sym + " visits", next.visits(),
+                             reflected.visits());
+                for (int k = 0; k < next.moves().length; k += 1) {
+                    assertEquals(sym + " moves", sym.move(next.moves()[k]),
+                                 reflected.moves()[k]);
+                    assertTrue(image.legalMove(reflected.moves()[k]));
+                }
+            }
+            assertNull(index.lookup(
+                Board.fromPosition(SymmetryTest.POSITION)));
+        } finally {
+            Files.delete(archive);
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testDamaged() throws IOException {
+        Random random = new Random(27);
+        long[] wins = new long[1 + PieceColor.values().length];
+        Path archive = Files.createTempFile("games", ".txt");
+        Path file = Files.createTempFile("openings", ".idx");
+        try {
+            Files.write(archive,
+                        List.of(ReplayerTest.randomGame(random, false, wins),
+                                ReplayerTest.randomGame(random, false, wins)),
+                        StandardCharsets.US_ASCII);
+            OpeningIndex.build(List.of(archive.toString()), file.toString(),
+                               1, quiet());
+            byte[] contents = Files.readAllBytes(file);
+            ByteBuffer data = ByteBuffer.wrap(contents);
+            int numPositions = data.getInt(8), numMoves = data.getInt(12);
+            int movesStart = HEADER_SIZE + numPositions * POSITION_SIZE;
+            assertEquals(movesStart + 8 * numMoves, contents.length);
+            int[] firsts = new int[numPositions];
+            int[] codes = new int[numMoves];
+            for (int k = 0; k < numPositions; k += 1) {
+                firsts[k] = HEADER_SIZE + k * POSITION_SIZE + 24;
+            }
+            for (int k = 0; k < numMoves; k += 1) {
+                codes[k] = movesStart + 8 * k;
+            }
+
+            write(file, contents, 0, 0);
+            checkRefused(file, "not an opening index");
+            write(file, contents, 3, 4);
+            checkRefused(file, "not an opening index");
+            write(file, contents, Integer.MAX_VALUE, 8);
+            checkRefused(file, "truncated");
+            write(file, contents, Integer.MAX_VALUE, 12);
+            checkRefused(file, "truncated");
+            write(file, contents, -1, 12);
+            checkRefused(file, "damaged");
+            write(file, contents, numMoves, firsts);
+            checkRefused(file, "damaged");
+            write(file, contents, -1, codes);
+            checkRefused(file, "damaged");
+            Files.write(file, new byte[HEADER_SIZE - 1]);
+            checkRefused(file, "not an opening index");
+            try (RandomAccessFile out =
+                 new RandomAccessFile(file.toFile(), "rw")) {
+                out.setLength(Integer.MAX_VALUE + 1L);
+            }
+            checkRefused(file, "too large");
+        } finally {
+            Files.delete(archive);
+            Files.delete(file);
+        }
+        checkRefused(file, "could not read");
+    }
+}
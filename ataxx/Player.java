@@ -36,12 +36,47 @@ abstract class Player {
         return _game.getBoard();
     }
 
+    /** Restart any random-number generator I use with SEED, and forget
+     *  anything I have learned from earlier moves, so that I behave as
+     *  if newly created with SEED. */
+    void reseed(long seed) {
+    }
+
     /** Return a legal move or command for my side. Assumes that
      *  board.whoseMove() == myColor() and that the game is not over. */
     abstract String getMove();
 
+    /** Ask me to finish choosing my current move as soon as possible,
+     *  or, if CANCEL, to stop choosing it and leave the choice to the
+     *  user.  May be called from any thread.  Only automated players
+     *  take notice. */
+    void stop(boolean cancel) {
+        _cancelled = cancel;
+        _stopRequested = true;
+    }
+
+    /** Return true iff stop has been called since the last call to
+     *  clearStop. */
+    boolean stopRequested() {
+        return _stopRequested;
+    }
+
+    /** Return true iff stop has been called with CANCEL true since the
+     *  last call to clearStop. */
+    boolean cancelled() {
+        return _cancelled;
+    }
+
+    /** Forget any earlier calls to stop.  Automated players call this as
+     *  they start choosing a move. */
+    void clearStop() {
+        _stopRequested = _cancelled = false;
+    }
+
     /** The game I am playing in. */
     private final Game _game;
     /** The color of my pieces. */
     private final PieceColor _myColor;
+    /** Set by stop. */
+    private volatile boolean _stopRequested, _cancelled;
 }
@@ -0,0 +1,156 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+import java.util.Random;
+
+import static ataxx.PieceColor.*;
+
+/** A batch of positions to be examined together.  Positions are stored
+ *  as a structure of arrays, one array of bit sets (as in BitBoard) for
+ *  each of red pieces, blue pieces, and blocks, so that the kernel can
+ *  load the same set for several positions into one vector register.
+ *  Computing the features of a whole batch with one call also spares
+ *  the overhead of a call per position.
+ *
+ *  The features computed for each position are, for each side, its
+ *  number of pieces, its mobility (the number of empty squares it can
+ *  move to), and its frontier (the number of its pieces adjacent to an
+ *  empty square).
+ *  @author Aayush Gupta
+ */
+class PositionBatch {
+
+    /** Feature numbers. */
+    static final int RED_PIECES = 0, BLUE_PIECES = 1, RED_MOBILITY = 2,
+        BLUE_MOBILITY = 3, RED_FRONTIER = 4, BLUE_FRONTIER = 5;
+    /** Number of features. */
+    static final int FEATURES = 6;
+
+    /** An empty batch that can hold up to CAPACITY positions, whose
+     *  features are computed with KERNEL. */
+    PositionBatch(int capacity, Kernel kernel) {
+        _red = new long[capacity];
+        _blue = new long[capacity];
+        _blocks = new long[capacity];
+        _features = new int[FEATURES * capacity];
+        _scratch = new long[3][capacity];
+        _kernel = kernel;
+    }
+
+    /** An empty batch that can hold up to CAPACITY positions. */
+    PositionBatch(int capacity) {
+        this(capacity, Kernel.get());
+    }
+
+    /** Return the number of positions in me. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the maximum number of positions in me. */
+    int capacity() {
+        return _red.length;
+    }
+
+    /** Remove all positions. */
+    void clear() {
+        _size = 0;
+    }
+
+    /** Add the position on BOARD, returning its index, assuming that I am
+     *  not full. */
+    int add(Board board) {
+        return add(board.bits(RED), board.bits(BLUE), board.bits(BLOCKED));
+    }
+
+    /** Add the position on BITBOARD, returning its index, assuming that I
+     *  am not full. */
+    int add(BitBoard bitboard) {
+        return add(bitboard.bits(RED), bitboard.bits(BLUE),
+                   bitboard.bits(BLOCKED));
+    }
+
+    /** Add the position with red pieces, blue pieces, and blocks on the
+     *  squares in RED, BLUE, and BLOCKS, returning its index. */
+    private int add(long red, long blue, long blocks) {
+        if (_size == capacity()) {
+            throw new IllegalStateException("batch is full");
+        }
+        _red[_size] = red;
+        _blue[_size] = blue;
+        _blocks[_size] = blocks;
+        _size += 1;
+        return _size - 1;
+    }
+
+    /** Compute the features of all my positions. */
+    void computeFeatures() {
+        _kernel.features(_red, _blue, _blocks, 0, _size, _features,
+                         capacity(), _scratch);
+    }
+
+    /** Return feature F of position I, as of the last call to
+     *  computeFeatures. */
+    int feature(int f, int i) {
+        return _features[f * capacity() + i];
+    }
+
+    /** Report to REPORTER how many positions per second have their
+     *  features computed in batches of BATCH positions, with each
+     *  available kernel, measuring for about MILLIS milliseconds after a
+     *  warm-up of the same length. */
+    static void benchmark(int batch, int millis, Reporter reporter) {
+        Random random = new Random(0);
+        BitBoard pos = new BitBoard();
+        Board board = new Board();
+        pos.set(board);
+        int[] moves = new int[BitBoard.MAX_MOVES];
+        for (Kernel kernel : new Kernel[] { Kernel.get(), new Kernel() }) {
+            PositionBatch positions = new PositionBatch(batch, kernel);
+            while (positions.size() < batch) {
+                if (pos.winner() != null) {
+                    pos.set(board);
+                }
+                positions.add(pos);
+                pos.play(moves[random.nextInt(pos.moves(moves))]);
+            }
+            positions.rate(millis);
+            reporter.msg("[batch] %s: %d positions/sec", kernel.name(),
+                         positions.rate(millis));
+            if (kernel.getClass() == Kernel.class) {
+                break;
+            }
+        }
+    }
+
+    /** Return the number of positions per second whose features are
+     *  computed by repeatedly computing mine for about MILLIS
+     *  milliseconds. */
+    private long rate(int millis) {
+        long count = 0;
+        long start = System.nanoTime(), end = start + millis * 1_000_000L;
+        long now = start;
+        while (now < end) {
+            computeFeatures();
+            count += _size;
+            now = System.nanoTime();
+        }
+        return count * 1_000_000_000L / Math.max(1, now - start);
+    }
+
+    /** Sets of squares holding red pieces, blue pieces, and blocks in
+     *  each position. */
+    private final long[] _red, _blue, _blocks;
+    /** Features of the positions: feature F of position I is
+     *  _features[F * capacity() + I]. */
+    private final int[] _features;
+    /** Space for the kernel's intermediate results. */
+    private final long[][] _scratch;
+    /** Arithmetic used to compute features. */
+    private final Kernel _kernel;
+    /** Number of positions. */
+    private int _size;
+}
@@ -0,0 +1,164 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/** Distributes snapshots of a changing board to any number of
+ *  subscribers.  Each subscriber names the Executor on which it is to be
+ *  called and a minimum interval between calls.  Snapshots published
+ *  while a delivery to a subscriber is pending or under way replace the
+ *  one waiting, so that a burst of changes (as in fast play between AIs)
+ *  results in at most one call per interval, always with the latest
+ *  position, and a subscriber is never called again before its last
+ *  call has returned, even on an Executor with many threads.
+ *  Publishing never waits for a subscriber, so a slow display cannot
+ *  slow the game.
+ *  @author Aayush Gupta
+ */
+class Publisher {
+
+    /** Send POSITION to all my subscribers, as described above. */
+    void publish(Snapshot position) {
+        _latest = position;
+        for (Subscription sub : _subscribers) {
+            sub.offer(position);
+        }
+    }
+
+    /** Arrange to pass published snapshots to SUBSCRIBER by way of
+     *  EXECUTOR, no more than once every MILLIS milliseconds, starting
+     *  with the one last published, if any.  If MILLIS is 0 and EXECUTOR
+     *  runs tasks immediately, each snapshot is delivered before publish
+     *  returns.  Returns a Subscription that can be used to cancel
+     *  delivery. */
+    Subscription subscribe(Consumer<Snapshot> subscriber, Executor executor,
+                           long millis) {
+        Subscription sub = new Subscription(subscriber, executor, millis);
+        _subscribers.add(sub);
+        Snapshot latest = _latest;
+        if (latest != null) {
+            sub.offer(latest);
+        }
+        return sub;
+    }
+
+    /** A registration made by subscribe. */
+    class Subscription {
+
+        /** A subscription delivering to SUBSCRIBER on EXECUTOR at most once
+         *  per MILLIS milliseconds. */
+        private Subscription(Consumer<Snapshot> subscriber,
+                             Executor executor, long millis) {
+            _subscriber = subscriber;
+            _executor = executor;
+            _interval = TimeUnit.MILLISECONDS.toNanos(millis);
+            _last = System.nanoTime() - _interval;
+        }
+
+        /** Stop delivering snapshots.  A delivery already under way may
+         *  still complete, but none starts afterward. */
+        void cancel() {
+            _cancelled = true;
+            _subscribers.remove(this);
+            _pending.set(null);
+        }
+
+        /** Queue POSITION for delivery, replacing any snapshot already
+         *  waiting, and schedule a delivery if none is scheduled or under
+         *  way. */
+        private void offer(Snapshot position) {
+            if (_cancelled) {
+                return;
+            }
+            _pending.set(position);
+            if (_scheduled.compareAndSet(false, true)) {
+                schedule();
+            }
+        }
+
+        /** Arrange for deliver to be called on my executor once my
+         *  interval has passed since the last delivery. */
+        private void schedule() {
+            long delay = _last + _interval - System.nanoTime();
+            if (delay <= 0) {
+                _executor.execute(this::deliver);
+            } else {
+                timer().schedule(() -> _executor.execute(this::deliver),
+                                 delay, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        /** Pass the waiting snapshot, if any, to my subscriber, and then
+         *  schedule another delivery if one was published meanwhile.
+         *  _scheduled stays set until my subscriber returns, so that no
+         *  other delivery starts before then.  Clearing it before looking
+         *  for another snapshot ensures that one published meanwhile
+         *  either is found here or schedules another delivery itself. */
+        private void deliver() {
+            try {
+                Snapshot position = _pending.getAndSet(null);
+                if (position != null && !_cancelled) {
+                    _last = System.nanoTime();
+                    _subscriber.accept(position);
+                }
+            } finally {
+                _scheduled.set(false);
+                if (_pending.get() != null && !_cancelled
+                    && _scheduled.compareAndSet(false, true)) {
+                    schedule();
+                }
+            }
+        }
+
+        /** Receiver of snapshots. */
+        private final Consumer<Snapshot> _subscriber;
+        /** Executor on which _subscriber is called. */
+        private final Executor _executor;
+        /** Minimum time between deliveries in nanoseconds. */
+        private final long _interval;
+        /** Time (from System.nanoTime) of the last delivery. */
+        private volatile long _last;
+        /** The snapshot awaiting delivery, or null. */
+        private final AtomicReference<Snapshot> _pending =
+            new AtomicReference<>();
+        /** True iff a delivery has been scheduled and not yet
+         *  finished. */
+        private final AtomicBoolean _scheduled = new AtomicBoolean();
+        /** True iff cancel has been called. */
+        private volatile boolean _cancelled;
+    }
+
+    /** Return the thread used to delay deliveries, starting it if
+     *  need be. */
+    private static synchronized ScheduledExecutorService timer() {
+        if (_timer == null) {
+            _timer = Executors.newSingleThreadScheduledExecutor((r) -> {
+                Thread thread = new Thread(r, "publisher");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return _timer;
+    }
+
+    /** Thread on which delayed deliveries are scheduled, shared by all
+     *  Publishers, or null if not yet needed. */
+    private static ScheduledExecutorService _timer;
+
+    /** Current subscriptions. */
+    private final List<Subscription> _subscribers =
+        new CopyOnWriteArrayList<>();
+    /** The last snapshot published, or null. */
+    private volatile Snapshot _latest;
+}
@@ -0,0 +1,182 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/** Tests of the Publisher class, using an Executor that runs its tasks
+ *  only when told to.
+ *  @author Aayush Gupta
+ */
+public class PublisherTest {
+
+    /** An Executor that holds its tasks until run is called. */
+    static class ManualExecutor implements Executor {
+        @Override
+        public void execute(Runnable task) {
+            _tasks.add(task);
+        }
+
+        /** Return the number of tasks waiting. */
+        int waiting() {
+            return _tasks.size();
+        }
+
+        /** Run the tasks waiting, including any they add, and return how
+         *  many were run. */
+        int run() {
+            int n;
+            for (n = 0; !_tasks.isEmpty(); n += 1) {
+                _tasks.poll().run();
+            }
+            return n;
+        }
+
+        /** Tasks waiting to be run. */
+        private final ConcurrentLinkedQueue<Runnable> _tasks =
+            new ConcurrentLinkedQueue<>();
+    }
+
+    /** Return N distinct snapshots. */
+    private static Snapshot[] positions(int n) {
+        Snapshot[] result = new Snapshot[n];
+        Board board = new Board();
+        String[] moves = { "a7-a6", "g7-g6", "a6-a5", "g6-g5", "a5-a4" };
+        for (int k = 0; k < n; k += 1) {
+            result[k] = board.snapshot();
+            board.makeMove(Move.move(moves[k]));
+        }
+        return result;
+    }
+
+    @Test
+    public void testCoalesce() {
+        Snapshot[] p = positions(4);
+        Publisher publisher = new Publisher();
+        ManualExecutor executor = new ManualExecutor();
+        List<Snapshot> received = new ArrayList<>();
+        publisher.subscribe(received::add, executor, 0);
+        publisher.publish(p[0]);
+        publisher.publish(p[1]);
+        publisher.publish(p[2]);
+        assertEquals("one delivery for a burst", 1, executor.waiting());
+        assertEquals(1, executor.run());
+        assertEquals(List.of(p[2]), received);
+        publisher.publish(p[3]);
+        executor.run();
+        assertEquals(List.of(p[2], p[3]), received);
+    }
+
+    @Test
+    public void testLatestOnSubscribe() {
+        Snapshot[] p = positions(2);
+        Publisher publisher = new Publisher();
+        ManualExecutor executor = new ManualExecutor();
+        List<Snapshot> received = new ArrayList<>();
+        publisher.subscribe(received::add, executor, 0);
+        publisher.publish(p[0]);
+        publisher.publish(p[1]);
+        List<Snapshot> late = new ArrayList<>();
+        publisher.subscribe(late::add, executor, 0);
+        executor.run();
+        assertEquals(List.of(p[1]), received);
+        assertEquals(List.of(p[1]), late);
+    }
+
+    @Test
+    public void testCancel() {
+        Snapshot[] p = positions(3);
+        Publisher publisher = new Publisher();
+        ManualExecutor executor = new ManualExecutor();
+        List<Snapshot> received = new ArrayList<>();
+        Publisher.Subscription sub =
+            publisher.subscribe(received::add, executor, 0);
+        List<Snapshot> other = new ArrayList<>();
+        publisher.subscribe(other::add, executor, 0);
+        publisher.publish(p[0]);
+        sub.cancel();
+        publisher.publish(p[1]);
+        executor.run();
+        assertEquals("nothing delivered after cancel", List.of(), received);
+        assertEquals(List.of(p[1]), other);
+
+        received.clear();
+        List<Snapshot> inner = new ArrayList<>();
+        Publisher.Subscription[] self = new Publisher.Subscription[1];
+        self[0] = publisher.subscribe((s) -> {
+            inner.add(s);
+            self[0].cancel();
+            publisher.publish(p[2]);
+        }, executor, 0);
+        executor.run();
+        assertEquals("cancelled during its own delivery", List.of(p[1]),
+                     inner);
+    }
+
+    @Test
+    public void testOneInFlight() {
+        Snapshot[] p = positions(4);
+        Publisher publisher = new Publisher();
+        ManualExecutor executor = new ManualExecutor();
+        List<Snapshot> received = new ArrayList<>();
+        int[] depth = new int[1];
+        publisher.subscribe((s) -> {
+            depth[0] += 1;
+            assertEquals("deliveries overlap", 1, depth[0]);
+            received.add(s);
+            if (s == p[0]) {
+                publisher.publish(p[1]);
+                publisher.publish(p[2]);
+                assertEquals("delivery scheduled while one is under way", 0,
+                             executor.waiting());
+            }
+            depth[0] -= 1;
+        }, executor, 0);
+        publisher.publish(p[0]);
+        assertEquals(2, executor.run());
+        assertEquals(List.of(p[0], p[2]), received);
+
+        received.clear();
+        Publisher direct = new Publisher();
+        direct.subscribe((s) -> {
+            depth[0] += 1;
+            assertEquals("deliveries nest", 1, depth[0]);
+            received.add(s);
+            if (s == p[0]) {
+                direct.publish(p[3]);
+            }
+            depth[0] -= 1;
+        }, Runnable::run, 0);
+        direct.publish(p[0]);
+        assertEquals(List.of(p[0], p[3]), received);
+    }
+
+    @Test
+    public void testThrottle() throws InterruptedException {
+        Snapshot[] p = positions(3);
+        Publisher publisher = new Publisher();
+        ManualExecutor executor = new ManualExecutor();
+        List<Snapshot> received = new ArrayList<>();
+        publisher.subscribe(received::add, executor, 200);
+        publisher.publish(p[0]);
+        assertEquals("first delivery is immediate", 1, executor.run());
+        publisher.publish(p[1]);
+        publisher.publish(p[2]);
+        assertEquals("later ones wait for the interval", 0,
+                     executor.waiting());
+        for (int k = 0; k < 100 && executor.waiting() == 0; k += 1) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, executor.run());
+        assertEquals(List.of(p[0], p[2]), received);
+    }
+}
@@ -5,6 +5,7 @@
 package ataxx;
 
 import java.io.BufferedReader;
+import java.io.PrintStream;
 import java.io.Reader;
 import java.io.IOException;
 
@@ -16,8 +17,14 @@ class ReaderSource implements CommandSource {
     /** A new source that reads from INPUT and prints prompts
      *  if SHOULDPROMPT. */
     ReaderSource(Reader input, boolean shouldPrompt) {
+        this(input, shouldPrompt ? System.out : null);
+    }
+
+    /** A new source that reads from INPUT and prints prompts on PROMPTS,
+     *  if it is not null. */
+    ReaderSource(Reader input, PrintStream prompts) {
         _input = new BufferedReader(input);
-        _shouldPrompt = shouldPrompt;
+        _prompts = prompts;
     }
 
     @Override
@@ -27,9 +34,9 @@ class ReaderSource implements CommandSource {
         }
 
         try {
-            if (_shouldPrompt) {
-                System.out.print(prompt);
-                System.out.flush();
+            if (_prompts != null) {
+                _prompts.print(prompt);
+                _prompts.flush();
             }
             String result = _input.readLine();
             if (result == null) {
@@ -43,7 +50,8 @@ class ReaderSource implements CommandSource {
 
     /** Input source. */
     private BufferedReader _input;
-    /** True if we request a prompt for each getLine. */
-    private boolean _shouldPrompt;
+    /** Where we print a prompt for each getLine, or null if we do
+     *  not. */
+    private PrintStream _prompts;
 }
 
@@ -0,0 +1,470 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+import static ataxx.PieceColor.*;
+
+/** Validates and re-scores archives of recorded games.
+ *
+ *  An archive is a text file containing one game per line.  Each line is
+ *  a sequence of tokens separated by blanks.  Leading tokens of the form
+ *  CR denote blocks (placed as by Board.setBlock), tokens of the form
+ *  C0R0-C1R1 or "-" denote moves, and an optional final token "red",
+ *  "blue", or "draw" claims the outcome of the game.  Blank lines and
+ *  lines starting with "#" are ignored.  For example,
+ *
+ *      b2 c3 a7-b6 g7-f6 ... blue
+ *
+ *  A game is invalid if any token is malformed or illegal in its position,
+ *  if a move follows the end of the game, or if its claimed outcome differs
+ *  from Board.getWinner() after the last move.
+ *
+ *  Archives are memory-mapped and split at line boundaries into chunks that
+ *  are replayed in parallel on a fork-join pool.  Each worker thread reuses
+ *  one Board for all its games, so replaying a game allocates nothing
+ *  beyond the board's own undo history.
+ *  @author Aayush Gupta
+ */
+class Replayer {
+
+    /** Largest region of a file mapped at one time. */
+    private static final int MAX_MAP = 1 << 30;
+
+    /** Chunks smaller than this many bytes are replayed by a single task. */
+    private static final int CHUNK = 1 << 18;
+
+    /** Initial capacity for the positions of one game. */
+    private static final int INIT_GAME_LENGTH = 256;
+
+    /** Maximum number of invalid games described individually. */
+    private static final int MAX_ERRORS = 100;
+
+    /** A Replayer that uses THREADS worker threads and sends its results
+     *  to REPORTER. */
+    Replayer(int threads, Reporter reporter) {
+        this(threads, reporter, null);
+    }
+
+    /** A Replayer that uses THREADS worker threads and sends its results
+     *  to REPORTER.  If RECORDERS is not null, it supplies a Recorder for
+     *  each chunk of the archives, which is given the positions of each
+     *  valid game with a claimed outcome. */
+    Replayer(int threads, Reporter reporter,
+             Supplier<? extends Recorder> recorders) {
+        _threads = threads;
+        _reporter = reporter;
+        _recorders = recorders;
+    }
+
+    /** Receives the positions and moves of replayed games. */
+    interface Recorder {
+
+        /** Record that MOVE was played in the position whose canonical
+         *  key is KEY, where MOVE has been transformed to the canonical
+         *  form of that position, in a game whose outcome was WINNER
+         *  (EMPTY for a draw). */
+        void record(long key, Move move, PieceColor winner);
+
+        /** Add everything recorded by OTHER, which was supplied by the
+         *  same source as me, to my records. */
+        void merge(Recorder other);
+    }
+
+    /** Replay all games in the archives named FILES, report invalid games
+     *  and summary statistics, and return an exit code: 0 if all games
+     *  were valid, and 1 otherwise. */
+    int replay(List<String> files) {
+        return run(files).invalid == 0 ? 0 : 1;
+    }
+
+    /** Replay all games in the archives named FILES, report invalid games
+     *  and summary statistics, and return the combined tally. */
+    Tally run(List<String> files) {
+        ForkJoinPool pool = new ForkJoinPool(_threads);
+        Tally total = new Tally(newRecorder());
+        long start = System.nanoTime();
+        try {
+            for (String name : files) {
+                try {
+                    total.merge(replayFile(pool, name));
+                } catch (IOException excp) {
+                    _reporter.err("Could not read %s", name);
+                    total.invalid += 1;
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        long nanos = Math.max(1, System.nanoTime() - start);
+        report(total, nanos);
+        return total;
+    }
+
+    /** Return a new Recorder from my source, or null if I have none. */
+    private Recorder newRecorder() {
+        return _recorders == null ? null : _recorders.get();
+    }
+
+    /** Replay the archive named NAME on POOL, returning its tally. */
+    private Tally replayFile(ForkJoinPool pool, String name)
+        throws IOException {
+        Tally result = new Tally(newRecorder());
+        try (FileChannel chan = FileChannel.open(Paths.get(name),
+                                                  StandardOpenOption.READ)) {
+            long size = chan.size();
+            long pos = 0;
+            while (pos < size) {
+                long len = Math.min(MAX_MAP, size - pos);
+                MappedByteBuffer buf =
+                    chan.map(FileChannel.MapMode.READ_ONLY, pos, len);
+                int end = (int) len;
+                if (pos + len < size) {
+                    end = lineEnd(buf, 0, end);
+                    if (end == 0) {
+                        throw new IOException("line too long");
+                    }
+                }
+                result.merge(pool.invoke(new Chunk(name, pos, buf, 0, end)));
+                pos += end;
+            }
+        }
+        return result;
+    }
+
+    /** Return the position just past the last newline in BUF[LO .. HI),
+     *  or LO if there is none. */
+    private static int lineEnd(MappedByteBuffer buf, int lo, int hi) {
+        for (int k = hi - 1; k >= lo; k -= 1) {
+            if (buf.get(k) == '\n') {
+                return k + 1;
+            }
+        }
+        return lo;
+    }
+
+    /** Send the statistics in TOTAL, gathered over NANOS nanoseconds, to
+     *  my reporter. */
+    private void report(Tally total, long nanos) {
+        for (String err : total.errors) {
+            _reporter.err("%s", err);
+        }
+        if (total.invalid > total.errors.size()) {
+            _reporter.err("... and %d more invalid games.",
+                          total.invalid - total.errors.size());
+        }
+        double secs = nanos * 1e-9;
+        _reporter.msg("[replay] %d games (%d invalid, %d unfinished), "
+                      + "%d moves in %d msec",
+                      total.games, total.invalid, total.unfinished,
+                      total.moves, nanos / 1_000_000);
+        _reporter.msg("[replay] Red %d, Blue %d, Draw %d",
+                      total.redWins, total.blueWins, total.draws);
+        _reporter.msg("[replay] %.0f moves/sec (%.0f moves/sec per thread)",
+                      total.moves / secs, total.moves / secs / _threads);
+    }
+
+    /** Accumulated statistics for some set of games. */
+    static class Tally {
+
+        /** An empty tally that adds positions to RECORDER, if it is not
+         *  null. */
+        Tally(Recorder recorder) {
+            this.recorder = recorder;
+        }
+
+        /** Number of games, invalid games, games with no claimed outcome,
+         *  and games won by red or blue or drawn. */
+        int games, invalid, unfinished, redWins, blueWins, draws;
+        /** Total number of moves (including passes) replayed. */
+        long moves;
+        /** Descriptions of (at most MAX_ERRORS) invalid games. */
+        final List<String> errors = new ArrayList<>();
+        /** Receiver for the positions of valid games, or null. */
+        final Recorder recorder;
+
+        /** Add the counts in OTHER to mine. */
+        void merge(Tally other) {
+            games += other.games;
+            invalid += other.invalid;
+            unfinished += other.unfinished;
+            redWins += other.redWins;
+            blueWins += other.blueWins;
+            draws += other.draws;
+            moves += other.moves;
+            if (recorder != null) {
+                recorder.merge(other.recorder);
+            }
+            for (String err : other.errors) {
+                if (errors.size() < MAX_ERRORS) {
+                    errors.add(err);
+                }
+            }
+        }
+
+        /** Record an invalid game described by FORMAT and ARGS. */
+        void error(String format, Object... args) {
+            invalid += 1;
+            if (errors.size() < MAX_ERRORS) {
+                errors.add(String.format(format, args));
+            }
+        }
+    }
+
+    /** Replays the complete lines in a region of a mapped archive, splitting
+     *  itself when the region is large. */
+    private class Chunk extends RecursiveTask<Tally> {
+
+        /** The games in BUF[LO .. HI) of the archive named NAME, where
+         *  BUF starts at byte BASE of the archive.  LO is the start of a
+         *  line, and HI is the end of a line or of BUF. */
+        Chunk(String name, long base, MappedByteBuffer buf, int lo, int hi) {
+            _name = name;
+            _base = base;
+            _buf = buf;
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected Tally compute() {
+            if (_hi - _lo > CHUNK) {
+                int mid = lineEnd(_buf, _lo, _lo + (_hi - _lo) / 2);
+                if (mid > _lo) {
+                    Chunk left = new Chunk(_name, _base, _buf, _lo, mid);
+                    Chunk right = new Chunk(_name, _base, _buf, mid, _hi);
+                    left.fork();
+                    Tally result = right.compute();
+                    result.merge(left.join());
+                    return result;
+                }
+            }
+            Tally result = new Tally(newRecorder());
+            Board board = BOARDS.get();
+            int start = _lo;
+            while (start < _hi) {
+                int end = start;
+                while (end < _hi && _buf.get(end) != '\n') {
+                    end += 1;
+                }
+                replayLine(board, start, end, result);
+                start = end + 1;
+            }
+            return result;
+        }
+
+        /** Replay the game recorded in _buf[START .. END) on BOARD, adding
+         *  its statistics to RESULT. */
+        private void replayLine(Board board, int start, int end,
+                                Tally result) {
+            int k = skipBlanks(start, end);
+            if (k == end || _buf.get(k) == '#') {
+                return;
+            }
+            result.games += 1;
+            board.clear();
+            _length = 0;
+            PieceColor claim = null;
+            while (k < end) {
+                int t = k;
+                while (t < end && !isBlank(_buf.get(t))) {
+                    t += 1;
+                }
+                if (claim != null) {
+                    result.error("%s@%d: moves after outcome", _name,
+                                 _base + start);
+                    return;
+                }
+                claim = outcome(k, t);
+                if (claim == null && !play(board, k, t)) {
+                    result.error("%s@%d: bad or illegal token '%s'", _name,
+                                 _base + start, token(k, t));
+                    return;
+                } else if (claim == null) {
+                    result.moves += t - k == 2 ? 0 : 1;
+                }
+                k = skipBlanks(t, end);
+            }
+            PieceColor winner = board.getWinner();
+            if (claim == null) {
+                result.unfinished += 1;
+            } else if (winner != claim) {
+                result.error("%s@%d: claimed %s, but %s", _name,
+                             _base + start, outcomeName(claim),
+                             winner == null ? "game is not over"
+                             : "outcome is " + outcomeName(winner));
+            } else {
+                if (winner == RED) {
+                    result.redWins += 1;
+                } else if (winner == BLUE) {
+                    result.blueWins += 1;
+                } else {
+                    result.draws += 1;
+                }
+                if (result.recorder != null) {
+                    for (int i = 0; i < _length; i += 1) {
+                        result.recorder.record(_keys[i],
+                                               Move.fromCode(_moves[i]),
+                                               winner);
+                    }
+                }
+            }
+        }
+
+        /** Add MOVE, about to be played on BOARD, to the record of the
+         *  current game, if I am recording positions. */
+        private void remember(Board board, Move move) {
+            if (_recorders == null) {
+                return;
+            }
+            if (_length == _keys.length) {
+                _keys = Arrays.copyOf(_keys, 2 * _length);
+                _moves = Arrays.copyOf(_moves, 2 * _length);
+            }
+            Symmetry sym = board.canonicalSymmetry();
+            _keys[_length] = board.key(sym);
+            _moves[_length] = sym.move(move).code();
+            _length += 1;
+        }
+
+        /** Apply the block or move denoted by _buf[START .. END) to BOARD.
+         *  Return false if it is malformed or illegal. */
+        private boolean play(Board board, int start, int end) {
+            int len = end - start;
+            if (len == 2) {
+                char c = (char) _buf.get(start), r = (char) _buf.get(start + 1);
+                if (!isSquare(c, r) || !board.legalBlock(c, r)) {
+                    return false;
+                }
+                board.setBlock(c, r);
+                return true;
+            }
+            Move move;
+            if (len == 1 && _buf.get(start) == '-') {
+                move = Move.pass();
+            } else if (len == 5 && _buf.get(start + 2) == '-') {
+                char c0 = (char) _buf.get(start),
+                    r0 = (char) _buf.get(start + 1),
+                    c1 = (char) _buf.get(start + 3),
+                    r1 = (char) _buf.get(start + 4);
+                if (!isSquare(c0, r0) || !isSquare(c1, r1)) {
+                    return false;
+                }
+                move = Move.move(c0, r0, c1, r1);
+            } else {
+                return false;
+            }
+            if (move == null || board.getWinner() != null
+                || !board.legalMove(move)) {
+                return false;
+            }
+            remember(board, move);
+            board.makeMove(move);
+            return true;
+        }
+
+        /** Return the outcome claimed by _buf[START .. END): RED, BLUE, or
+         *  EMPTY (a draw), or null if it is not an outcome. */
+        private PieceColor outcome(int start, int end) {
+            if (matches(start, end, "red")) {
+                return RED;
+            } else if (matches(start, end, "blue")) {
+                return BLUE;
+            } else if (matches(start, end, "draw")) {
+                return EMPTY;
+            } else {
+                return null;
+            }
+        }
+
+        /** Return true iff _buf[START .. END) contains exactly WORD. */
+        private boolean matches(int start, int end, String word) {
+            if (end - start != word.length()) {
+                return false;
+            }
+            for (int k = 0; k < word.length(); k += 1) {
+                if (_buf.get(start + k) != word.charAt(k)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** Return the first non-blank position in _buf[START .. END), or
+         *  END if there is none. */
+        private int skipBlanks(int start, int end) {
+            while (start < end && isBlank(_buf.get(start))) {
+                start += 1;
+            }
+            return start;
+        }
+
+        /** Return the text of _buf[START .. END). */
+        private String token(int start, int end) {
+            StringBuilder result = new StringBuilder();
+            for (int k = start; k < end; k += 1) {
+                result.append((char) _buf.get(k));
+            }
+            return result.toString();
+        }
+
+        /** Version of my serialized form.  Chunks are Serializable only
+         *  because all ForkJoinTasks are, and are never serialized. */
+        private static final long serialVersionUID = 1L;
+
+        /** Name of the archive being replayed. */
+        private final String _name;
+        /** Position of _buf within the archive. */
+        private final long _base;
+        /** The mapped archive contents. */
+        private final MappedByteBuffer _buf;
+        /** Bounds of my region of _buf. */
+        private final int _lo, _hi;
+
+        /** Canonical keys of the positions of the current game. */
+        private long[] _keys = new long[INIT_GAME_LENGTH];
+        /** Codes of the canonical moves played from _keys. */
+        private int[] _moves = new int[INIT_GAME_LENGTH];
+        /** Number of positions recorded in the current game. */
+        private int _length;
+    }
+
+    /** Return true iff CH separates tokens. */
+    private static boolean isBlank(byte ch) {
+        return ch == ' ' || ch == '\t' || ch == '\r';
+    }
+
+    /** Return true iff C R designates a square on the board. */
+    private static boolean isSquare(char c, char r) {
+        return c >= 'a' && c <= 'g' && r >= '1' && r <= '7';
+    }
+
+    /** Return the archive designation of outcome WINNER. */
+    private static String outcomeName(PieceColor winner) {
+        return winner == EMPTY ? "draw" : winner.toString().toLowerCase();
+    }
+
+    /** One reusable board for each worker thread. */
+    private static final ThreadLocal<Board> BOARDS =
+        ThreadLocal.withInitial(Board::new);
+
+    /** Source of Recorders for each chunk, or null. */
+    private final Supplier<? extends Recorder> _recorders;
+    /** Number of worker threads. */
+    private final int _threads;
+    /** Destination for results. */
+    private final Reporter _reporter;
+}
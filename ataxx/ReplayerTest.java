@@ -0,0 +1,146 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static ataxx.PieceColor.*;
+import static org.junit.Assert.*;
+
+/** Tests of the Replayer class on an archive of random games large enough
+ *  to be split into several chunks.
+ *  @author Aayush Gupta
+ */
+public class ReplayerTest {
+
+    /** Size in bytes of the archive replayed: several times the size of
+     *  the chunks that Replayer replays without splitting. */
+    private static final int ARCHIVE_SIZE = 1 << 20;
+
+    /** Invalid or unfinished games, with the number of moves replayed
+     *  from each and the description of each invalid one. */
+    private static final String[][] BAD_GAMES = {
+        { "a7-b6 a7-a4 red", "1", "bad or illegal token 'a7-a4'" },
+        { "a7-b6 red g7-f6", "1", "moves after outcome" },
+        { "a7-b6 g7-f6 blue", "2", "claimed blue, but game is not over" },
+        { "a7-b6 g7-f6", "2", null },
+    };
+
+    /** Counts the positions recorded from valid games. */
+    private static class Counter implements Replayer.Recorder {
+        @Override
+        public void record(long key, Move move, PieceColor winner) {
+            count += 1;
+        }
+
+        @Override
+        public void merge(Replayer.Recorder other) {
+            count += ((Counter) other).count;
+        }
+
+        /** Number of positions recorded. */
+        private long count;
+    }
+
+    /** Return a game of random moves chosen by RANDOM, played to its end
+     *  and in archive form, with a block at c3 if BLOCK.  Adds the number
+     *  of moves to WINS[0] and counts the outcome in
+     *  WINS[1 + WINNER.ordinal()]. */
+    static String randomGame(Random random, boolean block,
+                             long[] wins) {
+        Board board = new Board();
+        StringBuilder game = new StringBuilder();
+        if (block) {
+            board.setBlock("c3");
+            game.append("c3 ");
+        }
+        while (board.getWinner() == null) {
+            List<Move> moves = board.possibleMoves(board.whoseMove());
+            Move move = moves.isEmpty() ? Move.pass()
+                : moves.get(random.nextInt(moves.size()));
+            board.makeMove(move);
+            game.append(move).append(' ');
+            wins[0] += 1;
+        }
+        PieceColor winner = board.getWinner();
+        wins[1 + winner.ordinal()] += 1;
+        return game.append(winner == EMPTY ? "draw"
+                           : winner.toString().toLowerCase()).toString();
+    }
+
+    @Test
+    public void testChunkedReplay() throws IOException {
+        Random random = new Random(26);
+        long[] wins = new long[1 + PieceColor.values().length];
+        List<String> lines = new ArrayList<>();
+        Set<String> errors = new HashSet<>();
+        int games, bad, moves;
+        long offset;
+        lines.add("# Random games");
+        lines.add("");
+        offset = lines.get(0).length() + 2;
+        games = bad = moves = 0;
+        while (offset < ARCHIVE_SIZE) {
+            String game;
+            if (games % 40 == 39) {
+                String[] entry = BAD_GAMES[bad % BAD_GAMES.length];
+                game = entry[0];
+                moves += Integer.parseInt(entry[1]);
+                if (entry[2] != null) {
+                    errors.add(String.format("@%d: %s", offset, entry[2]));
+                }
+                bad += 1;
+            } else {
+                game = randomGame(random, games % 3 == 0, wins);
+            }
+            lines.add((games % 5 == 0 ? " " : "") + game);
+            offset += lines.get(lines.size() - 1).length() + 1;
+            games += 1;
+        }
+
+        Path file = Files.createTempFile("replay", ".txt");
+        Replayer.Tally tally;
+        try {
+            Files.write(file, lines, StandardCharsets.US_ASCII);
+            PrintStream discard =
+                new PrintStream(new ByteArrayOutputStream());
+            Replayer replayer =
+                new Replayer(4, new TextReporter(discard, discard),
+                             Counter::new);
+            tally = replayer.run(List.of(file.toString()));
+        } finally {
+            Files.delete(file);
+        }
+
+        assertEquals(games, tally.games);
+        assertEquals(errors.size(), tally.invalid);
+        assertEquals(bad / BAD_GAMES.length, tally.unfinished);
+        assertEquals(wins[0] + moves, tally.moves);
+        assertEquals(wins[1 + RED.ordinal()], tally.redWins);
+        assertEquals(wins[1 + BLUE.ordinal()], tally.blueWins);
+        assertEquals(wins[1 + EMPTY.ordinal()], tally.draws);
+        assertEquals("positions of valid games recorded", wins[0],
+                     ((Counter) tally.recorder).count);
+        Set<String> reported = new HashSet<>();
+        for (String err : tally.errors) {
+            assertTrue(err, err.startsWith(file.toString()));
+            reported.add(err.substring(file.toString().length()));
+        }
+        assertEquals("invalid games found at their offsets", errors,
+                     reported);
+    }
+}
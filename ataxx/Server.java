@@ -0,0 +1,124 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** A server that plays a separate session of Ataxx, with its own Game,
+ *  with each client that connects to a port on the local host.  A
+ *  session reads commands from its connection and writes prompts,
+ *  messages, and errors back on it, exactly as a text-mode session does
+ *  on the standard input and output, and ends when the client quits or
+ *  disconnects.
+ *
+ *  Sessions spend nearly all their time waiting for their clients, so
+ *  each runs on a thread of its own: a virtual thread where the Java
+ *  runtime provides them (Java 21 on), which costs little while it
+ *  waits.  Searches by the sessions' AIs, and their analysis for hints,
+ *  run instead on a fixed pool of ordinary threads, so that however many
+ *  sessions there are, no more searches run at once than there are
+ *  threads in the pool.  A session's analysis ends with the session.
+ *  @author Aayush Gupta
+ */
+class Server {
+
+    /** A server listening on PORT that runs at most THREADS searches at
+     *  once, and reports on its progress to REPORTER. */
+    Server(int port, int threads, Reporter reporter) {
+        _port = port;
+        _reporter = reporter;
+        _searches = Executors.newFixedThreadPool(threads, (r) -> {
+            Thread thread = new Thread(r, "search");
+            thread.setDaemon(true);
+            return thread;
+        });
+        _sessions = threadPerTaskExecutor("session");
+    }
+
+    /** Accept connections and start a session for each, until the server
+     *  fails.  Returns an exit code for the program. */
+    int run() {
+        try (ServerSocket listener =
+                 new ServerSocket(_port, 0, InetAddress.getLoopbackAddress())) {
+            _reporter.msg("Serving Ataxx on port %d.",
+                          listener.getLocalPort());
+            while (true) {
+                Socket socket = listener.accept();
+                _sessions.execute(() -> session(socket));
+            }
+        } catch (IOException excp) {
+            _reporter.err("Server failed: %s", excp.getMessage());
+            return 1;
+        }
+    }
+
+    /** Play a session with the client connected by SOCKET, closing SOCKET
+     *  when it ends. */
+    private void session(Socket socket) {
+        int id = _count.incrementAndGet();
+        Utils.debug(1, "[serve] session %d from %s", id,
+                    socket.getRemoteSocketAddress());
+        try (socket) {
+            PrintStream out =
+                new PrintStream(new BufferedOutputStream(socket
+                                                         .getOutputStream()),
+                                true, StandardCharsets.UTF_8);
+            CommandSource source =
+                new ReaderSource(new InputStreamReader(socket.getInputStream(),
+                                                       StandardCharsets.UTF_8),
+                                 out);
+            Game game = new Game(source, (b) -> { },
+                                 new TextReporter(out, out), out, out,
+                                 false);
+            game.setSearchExecutor(_searches);
+            game.play();
+        } catch (IOException excp) {
+            /* The client has gone; nothing to be done. */
+        } catch (RuntimeException excp) {
+            _reporter.err("Session %d failed: %s", id, excp);
+        }
+        Utils.debug(1, "[serve] session %d ended", id);
+    }
+
+    /** Return an executor that runs each task on a new virtual thread, or,
+     *  if this Java runtime has none, on a new or reused ordinary daemon
+     *  thread named NAME.  The virtual-thread executor is found by
+     *  reflection, so that this class compiles and runs on older
+     *  runtimes. */
+    static ExecutorService threadPerTaskExecutor(String name) {
+        try {
+            return (ExecutorService)
+                Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+                .invoke(null);
+        } catch (ReflectiveOperationException excp) {
+            return Executors.newCachedThreadPool((r) -> {
+                Thread thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /** Port on which to listen. */
+    private final int _port;
+    /** Outlet for the server's own messages. */
+    private final Reporter _reporter;
+    /** Pool on which all sessions' AIs search. */
+    private final ExecutorService _searches;
+    /** Runs sessions. */
+    private final ExecutorService _sessions;
+    /** Number of sessions started. */
+    private final AtomicInteger _count = new AtomicInteger();
+}
@@ -0,0 +1,194 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+import static ataxx.PieceColor.*;
+
+/** An immutable record of the position on a Board at some moment: the
+ *  sets of red, blue, and blocked squares (as bit sets indexed as in
+ *  BitBoard), the player to move, the number of consecutive jumps, the
+ *  winner, if any, and the number of moves made and the last of them.
+ *  Since a Snapshot never changes, it may be handed to other threads (for
+ *  display or analysis) and read there without locking, while the Board
+ *  it came from goes on changing.  Snapshots are obtained from
+ *  Board.snapshot.
+ *  @author Aayush Gupta
+ */
+final class Snapshot {
+
+    /** A snapshot of a position with red pieces, blue pieces, and blocks
+     *  on the squares in RED, BLUE, and BLOCKS, with TOMOVE to move after
+     *  JUMPS consecutive jumps and NUMMOVES moves, the last of which was
+     *  LASTMOVE (null if none), whose winner is WINNER (null if the game
+     *  is not over), and whose hash key is KEY. */
+    Snapshot(long red, long blue, long blocks, PieceColor toMove, int jumps,
+             int numMoves, Move lastMove, PieceColor winner, long key) {
+        _red = red;
+        _blue = blue;
+        _blocks = blocks;
+        _whoseMove = toMove;
+        _numJumps = jumps;
+        _numMoves = numMoves;
+        _lastMove = lastMove;
+        _winner = winner;
+        _key = key;
+    }
+
+    /** Return the contents of square C R, where squares outside a1-g7
+     *  are BLOCKED. */
+    PieceColor get(char c, char r) {
+        if (c < 'a' || c > 'g' || r < '1' || r > Board.SIDEC) {
+            return BLOCKED;
+        }
+        long bit = 1L << ((r - '1') * Board.SIDE + c - 'a');
+        if ((_red & bit) != 0) {
+            return RED;
+        } else if ((_blue & bit) != 0) {
+            return BLUE;
+        } else if ((_blocks & bit) != 0) {
+            return BLOCKED;
+        } else {
+            return EMPTY;
+        }
+    }
+
+    /** Return the set of squares containing COLOR. */
+    long bits(PieceColor color) {
+        switch (color) {
+        case RED:
+            return _red;
+        case BLUE:
+            return _blue;
+        case BLOCKED:
+            return _blocks;
+        default:
+            return BitBoard.ALL & ~(_red | _blue | _blocks);
+        }
+    }
+
+    /** Return the number of squares containing COLOR. */
+    int numPieces(PieceColor color) {
+        return Long.bitCount(bits(color));
+    }
+
+    /** Return the player to move. */
+    PieceColor whoseMove() {
+        return _whoseMove;
+    }
+
+    /** Return the number of consecutive jumps. */
+    int numJumps() {
+        return _numJumps;
+    }
+
+    /** Return the number of moves made since the start of the game. */
+    int numMoves() {
+        return _numMoves;
+    }
+
+    /** Return the last move made, or null if none has been. */
+    Move lastMove() {
+        return _lastMove;
+    }
+
+    /** Return the winner (EMPTY for a draw), or null if the game is not
+     *  over. */
+    PieceColor getWinner() {
+        return _winner;
+    }
+
+    /** Return the hash key of the position (see Board.key). */
+    long key() {
+        return _key;
+    }
+
+    /** Return true iff player WHO has a move, ignoring whose move it
+     *  is. */
+    boolean canMove(PieceColor who) {
+        long empty = bits(EMPTY);
+        return (BitBoard.grow(BitBoard.grow(bits(who))) & empty) != 0;
+    }
+
+    /** Return true iff MOVE is legal for the player to move. */
+    boolean legalMove(Move move) {
+        if (move == null) {
+            return false;
+        } else if (move.isPass()) {
+            return !canMove(_whoseMove);
+        }
+        return legalMove(move.col0(), move.row0(), move.col1(), move.row1());
+    }
+
+    /** Return true iff C0 R0 - C1 R1 is legal for the player to move. */
+    boolean legalMove(char c0, char r0, char c1, char r1) {
+        return Math.abs(c1 - c0) <= 2 && Math.abs(r1 - r0) <= 2
+            && get(c0, r0) == _whoseMove && get(c1, r1) == EMPTY;
+    }
+
+    /** Return the position in the form read by Board.setPosition. */
+    String toPosition() {
+        StringBuilder out = new StringBuilder();
+        for (char r = Board.SIDEC; r >= '1'; r -= 1) {
+            if (r != Board.SIDEC) {
+                out.append('/');
+            }
+            int run = 0;
+            for (char c = 'a'; c <= 'g'; c += 1) {
+                PieceColor p = get(c, r);
+                if (p == EMPTY) {
+                    run += 1;
+                    continue;
+                }
+                if (run > 0) {
+                    out.append(run);
+                    run = 0;
+                }
+                out.append(p == RED ? 'r' : p == BLUE ? 'b' : 'x');
+            }
+            if (run > 0) {
+                out.append(run);
+            }
+        }
+        out.append(' ').append(_whoseMove == RED ? 'r' : 'b');
+        out.append(' ').append(_numJumps);
+        return out.toString();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof Snapshot)) {
+            return false;
+        }
+        Snapshot other = (Snapshot) obj;
+        return _red == other._red && _blue == other._blue
+            && _blocks == other._blocks && _whoseMove == other._whoseMove
+            && _numJumps == other._numJumps;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(_key);
+    }
+
+    @Override
+    public String toString() {
+        return toPosition();
+    }
+
+    /** Squares containing red and blue pieces and blocks. */
+    private final long _red, _blue, _blocks;
+    /** Player to move. */
+    private final PieceColor _whoseMove;
+    /** Number of consecutive jumps. */
+    private final int _numJumps;
+    /** Number of moves made. */
+    private final int _numMoves;
+    /** Last move made, or null. */
+    private final Move _lastMove;
+    /** Winner, or null. */
+    private final PieceColor _winner;
+    /** Hash key of the position. */
+    private final long _key;
+}
@@ -0,0 +1,296 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static ataxx.PieceColor.*;
+import static ataxx.GameException.error;
+
+/** Runs the AI on a suite of test positions whose best moves or values
+ *  are known, and reports how many it solves and how quickly.
+ *
+ *  A suite file contains one problem per line.  Each line gives a
+ *  position, either as the blocks and moves that lead to it in the format
+ *  of a game archive (see Replayer) or in the form read by
+ *  Board.setPosition, followed by fields separated by ";":
+ *
+ *      bm MOVE ...   any of the MOVEs is a solution
+ *      score N       the value of the position for the side to move is N
+ *      id NAME       NAME identifies the problem in reports
+ *
+ *  for example,
+ *
+ *      b2 a7-a6 g7-f7 ; bm a6-c6 a6-c7 ; id "simple"
+ *
+ *  Blank lines and lines starting with "#" are ignored.
+ *
+ *  Each problem is searched to increasing depths under a node or time
+ *  budget.  It is solved if the deepest search completed has a solution
+ *  as its best move (or the required value), and its time to solution is
+ *  the time at which the search first found a solution and kept it from
+ *  then on.  Problems are searched in parallel on a pool of threads,
+ *  each with its own transposition table, which is cleared before each
+ *  problem.
+ *  @author Aayush Gupta
+ */
+class Suite {
+
+    /** Time allowed per problem when neither a node nor a time budget is
+     *  given, in milliseconds. */
+    static final long DEFAULT_MILLIS = 1000;
+
+    /** Seed for the random-number generators of the AIs. */
+    private static final long SEED = 0;
+
+    /** A suite runner that uses THREADS threads, searches each problem
+     *  until it has visited NODES nodes or for MILLIS milliseconds
+     *  (whichever comes first, with 0 meaning no limit, and both 0 meaning
+     *  DEFAULT_MILLIS milliseconds), and sends its results to
+     *  REPORTER. */
+    Suite(int threads, long nodes, long millis, Reporter reporter) {
+        _threads = threads;
+        _nodes = nodes;
+        _millis = nodes == 0 && millis == 0 ? DEFAULT_MILLIS : millis;
+        _reporter = reporter;
+    }
+
+    /** Run the problems in the suite file named NAME and report the
+     *  results.  Returns an exit code: 0 if the file could be read, and 1
+     *  otherwise. */
+    int run(String name) {
+        List<Problem> problems;
+        try {
+            problems = read(name);
+        } catch (IOException excp) {
+            _reporter.err("Could not read %s", name);
+            return 1;
+        } catch (GameException excp) {
+            _reporter.err("%s", excp.getMessage());
+            return 1;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(_threads);
+        List<Future<Result>> futures = new ArrayList<>();
+        for (Problem problem : problems) {
+            futures.add(pool.submit(() -> solve(problem)));
+        }
+        List<Result> results = new ArrayList<>();
+        try {
+            for (int k = 0; k < problems.size(); k += 1) {
+                Result result = futures.get(k).get();
+                report(problems.get(k), result);
+                results.add(result);
+            }
+        } catch (InterruptedException | ExecutionException excp) {
+            throw new Error("suite search failed", excp);
+        } finally {
+            pool.shutdown();
+        }
+        summarize(results);
+        return 0;
+    }
+
+    /** Return the problems in the suite file named NAME. */
+    private static List<Problem> read(String name) throws IOException {
+        List<Problem> problems = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new FileReader(name))) {
+            int lineNum = 0;
+            for (String line = in.readLine(); line != null;
+                 line = in.readLine()) {
+                lineNum += 1;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    problems.add(new Problem(line, lineNum));
+                } catch (GameException excp) {
+                    throw error("%s:%d: %s", name, lineNum,
+                                excp.getMessage());
+                }
+            }
+        }
+        return problems;
+    }
+
+    /** Search PROBLEM and return the result. */
+    private Result solve(Problem problem) {
+        Game game = GAMES.get();
+        game.table().clear();
+        AI ai = new AI(game, RED, SEED);
+        Result result = new Result();
+        long start = System.nanoTime();
+        ai.findMove(problem.board, _nodes, _millis,
+                    (depth, move, score, nodes, pv) -> {
+                        if (problem.solvedBy(move, score)) {
+                            if (result.millis < 0) {
+                                result.millis =
+                                    (System.nanoTime() - start) / 1_000_000;
+                                result.depth = depth;
+                            }
+                        } else {
+                            result.millis = -1;
+                        }
+                        result.move = move;
+                        result.score = problem.forMover(score);
+                    });
+        result.nodes = ai.nodes();
+        return result;
+    }
+
+    /** Report RESULT, the outcome of PROBLEM. */
+    private void report(Problem problem, Result result) {
+        if (result.millis >= 0) {
+            _reporter.msg("[suite] %s: solved at depth %d in %d msec",
+                          problem.id, result.depth, result.millis);
+        } else {
+            _reporter.msg("[suite] %s: not solved (found %s, value %d)",
+                          problem.id, result.move, result.score);
+        }
+    }
+
+    /** Report the solve rate and times to solution in RESULTS. */
+    void summarize(List<Result> results) {
+        long[] times = new long[results.size()];
+        int solved = 0;
+        long nodes = 0;
+        for (Result result : results) {
+            if (result.millis >= 0) {
+                times[solved] = result.millis;
+                solved += 1;
+            }
+            nodes += result.nodes;
+        }
+        _reporter.msg("[suite] solved %d of %d (%.1f%%), %d nodes",
+                      solved, results.size(),
+                      100.0 * solved / Math.max(1, results.size()), nodes);
+        if (solved > 0) {
+            times = Arrays.copyOf(times, solved);
+            Arrays.sort(times);
+            _reporter.msg("[suite] time to solution: median %d msec, "
+                          + "90th percentile %d msec, max %d msec",
+                          percentile(times, 50), percentile(times, 90),
+                          times[solved - 1]);
+        }
+    }
+
+    /** Return the Pth percentile (by nearest rank) of SORTED, which is
+     *  in increasing order and not empty. */
+    static long percentile(long[] sorted, int p) {
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    /** A test position and its solution. */
+    static class Problem {
+
+        /** The problem described by LINE, which is line LINENUM of a
+         *  suite file. */
+        Problem(String line, int lineNum) {
+            String[] fields = line.split(";");
+            board = Bench.position(fields[0]);
+            id = "line " + lineNum;
+            for (int k = 1; k < fields.length; k += 1) {
+                String[] words = fields[k].trim().split("\\s+");
+                switch (words[0]) {
+                case "bm":
+                    best = new Move[words.length - 1];
+                    for (int i = 1; i < words.length; i += 1) {
+                        best[i - 1] = Move.move(words[i]);
+                        if (best[i - 1] == null
+                            || !board.legalMove(best[i - 1])) {
+                            throw error("illegal best move: %s", words[i]);
+                        }
+                    }
+                    break;
+                case "score":
+                    try {
+                        score = Integer.valueOf(words[words.length - 1]);
+                    } catch (NumberFormatException excp) {
+                        throw error("bad score: %s", fields[k].trim());
+                    }
+                    break;
+                case "id":
+                    id = fields[k].trim().substring(2).trim()
+                        .replace("\"", "");
+                    break;
+                default:
+                    throw error("unknown field: %s", fields[k].trim());
+                }
+            }
+            if (best == null && score == null) {
+                throw error("no bm or score given");
+            }
+            if (board.getWinner() != null
+                || !board.canMove(board.whoseMove())) {
+                throw error("no moves in position");
+            }
+        }
+
+        /** Return true iff MOVE, with value SCORE (positive if good for
+         *  red), solves me. */
+        boolean solvedBy(Move move, int score) {
+            if (best != null && !Arrays.asList(best).contains(move)) {
+                return false;
+            }
+            return this.score == null || this.score == forMover(score);
+        }
+
+        /** Return SCORE, a value positive if good for red, as a value for
+         *  the player to move in my position. */
+        int forMover(int score) {
+            return board.whoseMove() == RED ? score : -score;
+        }
+
+        /** The position. */
+        final Board board;
+        /** Name used in reports. */
+        String id;
+        /** The solutions, or null if any move will do. */
+        Move[] best;
+        /** Required value for the player to move, or null if any. */
+        Integer score;
+    }
+
+    /** The outcome of searching a Problem. */
+    static class Result {
+        /** Time at which the search found the solution and kept it, or -1
+         *  if it did not solve the problem. */
+        long millis = -1;
+        /** Depth of the first search that found the solution. */
+        int depth;
+        /** Best move and its value for the player to move, from the
+         *  deepest search completed. */
+        Move move;
+        /** Value of move for the player to move. */
+        int score;
+        /** Number of nodes searched. */
+        long nodes;
+    }
+
+    /** A game, and with it a transposition table, for each worker
+     *  thread. */
+    private static final ThreadLocal<Game> GAMES =
+        ThreadLocal.withInitial(() -> new Game(null, (b) -> { },
+                                               new TextReporter(), false));
+
+    /** Number of worker threads. */
+    private final int _threads;
+    /** Node budget per problem, or 0. */
+    private final long _nodes;
+    /** Time budget per problem in milliseconds, or 0. */
+    private final long _millis;
+    /** Destination of reports. */
+    private final Reporter _reporter;
+}
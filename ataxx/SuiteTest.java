@@ -0,0 +1,129 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static ataxx.PieceColor.*;
+import static org.junit.Assert.*;
+
+/** Tests of the Suite class.
+ *  @author Aayush Gupta
+ */
+public class SuiteTest {
+
+    /** Check that LINE is rejected as a suite problem. */
+    private static void checkError(String line) {
+        try {
+            new Suite.Problem(line, 1);
+            fail("accepted " + line);
+        } catch (GameException excp) {
+            /* Expected */
+        }
+    }
+
+    @Test
+    public void testBestMoves() {
+        Suite.Problem problem =
+            new Suite.Problem("b2 a7-a6 g7-f7 ; bm a6-c6 a6-c7 ; "
+                              + "id \"simple\"", 3);
+        assertEquals("simple", problem.id);
+        assertEquals(BLOCKED, problem.board.get('b', '6'));
+        assertEquals(RED, problem.board.whoseMove());
+        assertEquals(2, problem.best.length);
+        assertNull(problem.score);
+        assertTrue(problem.solvedBy(Move.move("a6-c6"), -50));
+        assertTrue(problem.solvedBy(Move.move("a6-c7"), 0));
+        assertFalse(problem.solvedBy(Move.move("g1-g2"), 0));
+    }
+
+    @Test
+    public void testScore() {
+        Suite.Problem problem = new Suite.Problem("a7-b7 ; score -2", 4);
+        assertEquals("line 4", problem.id);
+        assertNull(problem.best);
+        assertEquals(-2, (int) problem.score);
+        assertEquals("score is for blue, to move", -2, problem.forMover(2));
+        assertTrue(problem.solvedBy(Move.move("g7-f7"), 2));
+        assertFalse(problem.solvedBy(Move.move("g7-f7"), -2));
+
+        problem = new Suite.Problem("r5b/7/7/7/7/7/b5r b 0 ; bm g7-f7 ; "
+                                    + "score 0 ; id pos", 1);
+        assertEquals("pos", problem.id);
+        assertTrue(problem.solvedBy(Move.move("g7-f7"), 0));
+        assertFalse(problem.solvedBy(Move.move("g7-f7"), 1));
+        assertFalse(problem.solvedBy(Move.move("a1-a2"), 0));
+    }
+
+    @Test
+    public void testMalformed() {
+        checkError("b2 a7-b6 g7-f7 ; bm a1-b1");
+        checkError("a7-a6 g7-f7");
+        checkError("a7-a6 ; id nothing");
+        checkError("a7-b7 ; bm a7-a6");
+        checkError("a7-b7 ; bm g7-g4");
+        checkError("a7-b7 ; score many");
+        checkError("a7-b7 ; avoid g7-f7");
+        checkError("a7-b7 h8 ; score 0");
+    }
+
+    @Test
+    public void testPercentile() {
+        long[] times = { 10, 20, 30, 40, 50, 60, 70, 80, 90, 100 };
+        assertEquals(50, Suite.percentile(times, 50));
+        assertEquals(90, Suite.percentile(times, 90));
+        assertEquals(100, Suite.percentile(times, 100));
+        assertEquals(10, Suite.percentile(times, 0));
+        assertEquals(2, Suite.percentile(new long[] { 1, 2, 3 }, 50));
+        assertEquals(3, Suite.percentile(new long[] { 1, 2, 3 }, 90));
+        assertEquals(7, Suite.percentile(new long[] { 7 }, 90));
+    }
+
+    @Test
+    public void testSummary() {
+        List<String> messages = new ArrayList<>();
+        Reporter reporter = new Reporter() {
+            @Override
+            public void announceWin(PieceColor side) {
+            }
+
+            @Override
+            public void announceMove(Move move, PieceColor player) {
+            }
+
+            @Override
+            public void msg(String format, Object... args) {
+                messages.add(String.format(format, args));
+            }
+
+            @Override
+            public void err(String format, Object... args) {
+                messages.add(String.format(format, args));
+            }
+        };
+        Suite suite = new Suite(1, 0, 0, reporter);
+        List<Suite.Result> results = new ArrayList<>();
+        long[] millis = { 300, -1, 100, 200, -1 };
+        for (long m : millis) {
+            Suite.Result result = new Suite.Result();
+            result.millis = m;
+            result.nodes = 1000;
+            results.add(result);
+        }
+        suite.summarize(results);
+        assertEquals(List.of("[suite] solved 3 of 5 (60.0%), 5000 nodes",
+                             "[suite] time to solution: median 200 msec, "
+                             + "90th percentile 300 msec, max 300 msec"),
+                     messages);
+
+        messages.clear();
+        suite.summarize(results.subList(1, 2));
+        assertEquals(List.of("[suite] solved 0 of 1 (0.0%), 1000 nodes"),
+                     messages);
+    }
+}
@@ -0,0 +1,110 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+/** The eight symmetries of the square board: the reflections that
+ *  Board.setBlock uses to place blocks (across the middle column, the
+ *  middle row, or both), the reflections across the two diagonals, and
+ *  the rotations by a quarter turn.  A position and its images are
+ *  equivalent for the side to move, so caches and indices can merge them.
+ *  @author Aayush Gupta
+ */
+enum Symmetry {
+
+    /** The identity transformation. */
+    IDENTITY(false, false, false),
+    /** Reflection across the middle column (a <-> g). */
+    FLIP_COLUMNS(false, true, false),
+    /** Reflection across the middle row (1 <-> 7). */
+    FLIP_ROWS(false, false, true),
+    /** Reflection across both middle lines (rotation by 180 degrees). */
+    ROTATE_180(false, true, true),
+    /** Reflection across the a1-g7 diagonal. */
+    TRANSPOSE(true, false, false),
+    /** Reflection across the a7-g1 diagonal. */
+    ANTI_TRANSPOSE(true, true, true),
+    /** Rotation by a quarter turn clockwise. */
+    ROTATE_90(true, false, true),
+    /** Rotation by a quarter turn counterclockwise. */
+    ROTATE_270(true, true, false);
+
+    /** The transformation that exchanges columns with rows iff SWAP, and
+     *  then reflects columns iff FLIPCOLS and rows iff FLIPROWS. */
+    Symmetry(boolean swap, boolean flipCols, boolean flipRows) {
+        _swap = swap;
+        _flipCols = flipCols;
+        _flipRows = flipRows;
+    }
+
+    /** Return the column of the image of square C R under me. */
+    char col(char c, char r) {
+        char c1 = _swap ? (char) (r - '1' + 'a') : c;
+        return _flipCols ? (char) ('a' + 'g' - c1) : c1;
+    }
+
+    /** Return the row of the image of square C R under me. */
+    char row(char c, char r) {
+        char r1 = _swap ? (char) (c - 'a' + '1') : r;
+        return _flipRows ? (char) ('1' + Move.SIDEC - r1) : r1;
+    }
+
+    /** Return the linearized index of the image of the square with
+     *  linearized index SQ, which must be on the board proper. */
+    int square(int sq) {
+        return IMAGES[ordinal()][sq];
+    }
+
+    /** Return the image of MOVE under me. */
+    Move move(Move move) {
+        if (move.isPass()) {
+            return move;
+        }
+        char c0 = move.col0(), r0 = move.row0(),
+            c1 = move.col1(), r1 = move.row1();
+        return Move.move(col(c0, r0), row(c0, r0), col(c1, r1), row(c1, r1));
+    }
+
+    /** Return the transformation that undoes me. */
+    Symmetry inverse() {
+        return INVERSES[ordinal()];
+    }
+
+    /** True iff I exchange rows and columns. */
+    private final boolean _swap;
+    /** True iff I reflect columns. */
+    private final boolean _flipCols;
+    /** True iff I reflect rows. */
+    private final boolean _flipRows;
+
+    /** IMAGES[t][sq] is the index of the image of square SQ under the
+     *  transformation with ordinal T. */
+    private static final int[][] IMAGES;
+
+    /** INVERSES[t] is the inverse of the transformation with ordinal T. */
+    private static final Symmetry[] INVERSES;
+
+    static {
+        int size = Board.EXTENDED_SIDE * Board.EXTENDED_SIDE;
+        IMAGES = new int[values().length][size];
+        for (Symmetry t : values()) {
+            for (char c = 'a'; c <= 'g'; c += 1) {
+                for (char r = '1'; r <= Move.SIDEC; r += 1) {
+                    IMAGES[t.ordinal()][Board.index(c, r)] =
+                        Board.index(t.col(c, r), t.row(c, r));
+                }
+            }
+        }
+        INVERSES = new Symmetry[values().length];
+        int a1 = Board.index('a', '1'), b1 = Board.index('b', '1');
+        for (Symmetry t : values()) {
+            for (Symmetry u : values()) {
+                if (u.square(t.square(a1)) == a1
+                    && u.square(t.square(b1)) == b1) {
+                    INVERSES[t.ordinal()] = u;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static ataxx.PieceColor.*;
+import static ataxx.Symmetry.*;
+import static org.junit.Assert.*;
+
+/** Tests of the Symmetry class and of the canonical keys and moves that
+ *  Board and TranspositionTable derive from it.
+ *  @author Aayush Gupta
+ */
+public class SymmetryTest {
+
+    /** A position with no symmetry, with red to move after one jump. */
+    static final String POSITION = "rx3b1/1r5/2bb3/7/4r2/7/b4rr r 1";
+
+    /** Return the image under SYM of POSITION, which is in the form read
+     *  by Board.setPosition, in the same form. */
+    static String image(String position, Symmetry sym) {
+        Board board = Board.fromPosition(position);
+        char[][] squares = new char[Board.SIDE][Board.SIDE];
+        for (char c = 'a'; c <= 'g'; c += 1) {
+            for (char r = '1'; r <= '7'; r += 1) {
+                squares[sym.row(c, r) - '1'][sym.col(c, r) - 'a'] =
+                    "rbx-".charAt(List.of(RED, BLUE, BLOCKED, EMPTY)
+                                  .indexOf(board.get(c, r)));
+            }
+        }
+        StringBuilder result = new StringBuilder();
+        for (int r = Board.SIDE - 1; r >= 0; r -= 1) {
+            int empty = 0;
+            for (int c = 0; c < Board.SIDE; c += 1) {
+                if (squares[r][c] == '-') {
+                    empty += 1;
+                    continue;
+                }
+                if (empty > 0) {
+                    result.append(empty);
+                }
+                empty = 0;
+                result.append(squares[r][c]);
+            }
+            if (empty > 0) {
+                result.append(empty);
+            }
+            result.append(r > 0 ? "/" : "");
+        }
+        return String.format("%s %c %d", result,
+                             board.whoseMove() == RED ? 'r' : 'b',
+                             board.numJumps());
+    }
+
+    @Test
+    public void testImages() {
+        String[] expected = { "b3", "f3", "b5", "f5", "c2", "e6", "c6",
+                              "e2" };
+        Set<String> images = new HashSet<>();
+        for (Symmetry sym : Symmetry.values()) {
+            String sq = "" + sym.col('b', '3') + sym.row('b', '3');
+            assertEquals(sym.toString(), expected[sym.ordinal()], sq);
+            images.add(sq);
+        }
+        assertEquals("eight distinct transformations", 8, images.size());
+        assertEquals("a1 turns clockwise to a7", "a7",
+                     "" + ROTATE_90.col('a', '1') + ROTATE_90.row('a', '1'));
+    }
+
+    @Test
+    public void testInverses() {
+        for (Symmetry t : Symmetry.values()) {
+            assertSame(t, t.inverse().inverse());
+            for (char c = 'a'; c <= 'g'; c += 1) {
+                for (char r = '1'; r <= '7'; r += 1) {
+                    int sq = Board.index(c, r);
+                    assertEquals(t + " then inverse", sq,
+                                 t.inverse().square(t.square(sq)));
+                    assertEquals(Board.index(t.col(c, r), t.row(c, r)),
+                                 t.square(sq));
+                }
+            }
+        }
+        assertSame(ROTATE_270, ROTATE_90.inverse());
+        assertSame(FLIP_COLUMNS, FLIP_COLUMNS.inverse());
+        assertSame(ANTI_TRANSPOSE, ANTI_TRANSPOSE.inverse());
+    }
+
+    @Test
+    public void testComposition() {
+        int a1 = Board.index('a', '1'), b1 = Board.index('b', '1');
+        for (Symmetry t : Symmetry.values()) {
+            for (Symmetry u : Symmetry.values()) {
+                Symmetry tu = null;
+                for (Symmetry v : Symmetry.values()) {
+                    if (v.square(a1) == u.square(t.square(a1))
+                        && v.square(b1) == u.square(t.square(b1))) {
+                        tu = v;
+                    }
+                }
+                assertNotNull(t + " then " + u, tu);
+                for (char c = 'a'; c <= 'g'; c += 1) {
+                    for (char r = '1'; r <= '7'; r += 1) {
+                        int sq = Board.index(c, r);
+                        assertEquals(tu.square(sq), u.square(t.square(sq)));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMoves() {
+        Board board = Board.fromPosition(POSITION);
+        assertEquals(Move.move("f6-d7"), ROTATE_90.move(Move.move("b6-a4")));
+        for (Symmetry t : Symmetry.values()) {
+            assertSame(Move.pass(), t.move(Move.pass()));
+            Board image = Board.fromPosition(image(POSITION, t));
+            for (char c0 = 'a'; c0 <= 'g'; c0 += 1) {
+                for (char r0 = '1'; r0 <= '7'; r0 += 1) {
+                    for (int d = 0; d < 25; d += 1) {
+                        char c1 = (char) (c0 + d % 5 - 2),
+                            r1 = (char) (r0 + d / 5 - 2);
+                        if (d == 12 || c1 < 'a' || c1 > 'g' || r1 < '1'
+                            || r1 > '7') {
+                            continue;
+                        }
+                        Move move = Move.move(c0, r0, c1, r1);
+                        Move moved = t.move(move);
+                        assertEquals(move, t.inverse().move(moved));
+                        assertEquals(t + " " + move, board.legalMove(move),
+                                     image.legalMove(moved));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testKeys() {
+        Board board = Board.fromPosition(POSITION);
+        Set<Long> keys = new HashSet<>();
+        for (Symmetry t : Symmetry.values()) {
+            Board image = Board.fromPosition(image(POSITION, t));
+            assertEquals(t.toString(), board.key(t), image.key());
+            assertEquals(board.canonicalKey(), image.canonicalKey());
+            keys.add(image.key());
+        }
+        assertEquals("images differ", 8, keys.size());
+        Board other = Board.fromPosition(POSITION.replace(" r ", " b "));
+        assertNotEquals(board.canonicalKey(), other.canonicalKey());
+    }
+
+    @Test
+    public void testTableAcrossImages() {
+        Board board = Board.fromPosition(POSITION);
+        Move best = Move.move("e3-d4");
+        assertTrue(board.legalMove(best));
+        TranspositionTable table = new TranspositionTable(10);
+        Symmetry sym = board.canonicalSymmetry();
+        table.store(board.key(sym), 4, TranspositionTable.EXACT, 7,
+                    sym.move(best));
+        for (Symmetry t : Symmetry.values()) {
+            Board image = Board.fromPosition(image(POSITION, t));
+            Symmetry isym = image.canonicalSymmetry();
+            int slot = table.find(image.key(isym));
+            assertTrue(t + " finds entry", slot >= 0);
+            assertEquals(4, table.depth(slot));
+            assertEquals(7, table.score(slot));
+            Move move = isym.inverse().move(table.move(slot));
+            assertEquals(t + " remaps move", t.move(best), move);
+            assertTrue(image.legalMove(move));
+        }
+    }
+}
@@ -4,6 +4,8 @@
 
 package ataxx;
 
+import java.io.PrintStream;
+
 import static ataxx.PieceColor.*;
 
 /** An object that formats and sends messages and errors by printing them.
@@ -11,6 +13,18 @@ import static ataxx.PieceColor.*;
  */
 class TextReporter implements Reporter {
 
+    /** A reporter printing messages on the standard output and errors on
+     *  the standard error. */
+    TextReporter() {
+        this(System.out, System.err);
+    }
+
+    /** A reporter printing messages on OUT and errors on ERR. */
+    TextReporter(PrintStream out, PrintStream err) {
+        _out = out;
+        _err = err;
+    }
+
     @Override
     public void announceWin(PieceColor side) {
         if (side == EMPTY) {
@@ -27,14 +41,19 @@ class TextReporter implements Reporter {
 
     @Override
     public void msg(String format, Object... args) {
-        System.out.printf(format, args);
-        System.out.println();
+        _out.printf(format, args);
+        _out.println();
     }
 
     @Override
     public void err(String format, Object... args) {
-        System.err.printf(format, args);
-        System.err.println();
+        _err.printf(format, args);
+        _err.println();
     }
 
+    /** Destination of messages. */
+    private final PrintStream _out;
+    /** Destination of errors. */
+    private final PrintStream _err;
+
 }
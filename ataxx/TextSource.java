@@ -4,6 +4,7 @@
 
 package ataxx;
 
+import java.io.PrintStream;
 import java.io.Reader;
 import java.util.Scanner;
 import java.util.ArrayList;
@@ -17,18 +18,25 @@ class TextSource implements CommandSource {
     /** A source of commands read from the concatenation of the content of
      *  READERS. */
     TextSource(List<Reader> readers) {
+        this(readers, System.out);
+    }
+
+    /** A source of commands read from the concatenation of the content of
+     *  READERS, which prints prompts on PROMPTS. */
+    TextSource(List<Reader> readers, PrintStream prompts) {
+        _prompts = prompts;
         if (readers.isEmpty()) {
             throw new IllegalArgumentException("must be at least one reader");
         }
         _readers = new ArrayList<>(readers);
-        _inp = new Scanner(readers.remove(0));
+        _inp = new Scanner(_readers.remove(0));
     }
 
     @Override
     public String getCommand(String prompt) {
         if (prompt != null) {
-            System.out.print(prompt);
-            System.out.flush();
+            _prompts.print(prompt);
+            _prompts.flush();
         }
         if (_inp.hasNextLine()) {
             return _inp.nextLine();
@@ -40,6 +48,8 @@ class TextSource implements CommandSource {
         }
     }
 
+    /** Where prompts are printed. */
+    private final PrintStream _prompts;
     /** Source of command input. */
     private Scanner _inp;
     /** Readers to use after the first. */
@@ -0,0 +1,99 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+/** Decides how long a search for one move may take under a time control
+ *  (see Clock).
+ *
+ *  The time remaining is divided among the moves the player is expected
+ *  still to make, which is taken to be half the number of empty squares,
+ *  since every extend fills one of them, plus most of the increment.
+ *  This gives a target time for the search.  A search proceeds by
+ *  increasing depths, and after each depth, stop decides whether to
+ *  start another.  The target is stretched while the search is unstable
+ *  (its best move changes or its value swings from one depth to the
+ *  next), and shrinks back as it settles.  A hard limit on the whole
+ *  search, which is never more than a fraction of the time remaining,
+ *  guards against a deeper search that takes much longer than expected.
+ *  @author Aayush Gupta
+ */
+class TimeManager {
+
+    /** Fewest moves assumed to be left in a game. */
+    private static final int MIN_MOVES_LEFT = 6;
+    /** Time in milliseconds reserved for each move for overhead outside
+     *  the search. */
+    private static final long OVERHEAD = 20;
+    /** Largest fraction of the time remaining that one search may use. */
+    private static final double MAX_FRACTION = 0.4;
+    /** Largest factor by which the target may be stretched. */
+    private static final double MAX_STRETCH = 3.0;
+    /** Amount added to the stretch factor when the best move changes. */
+    private static final double MOVE_CHANGE = 0.6;
+    /** Amount added to the stretch factor when the value swings. */
+    private static final double SCORE_SWING = 0.3;
+    /** A change in value by at least this much is a swing. */
+    private static final int SWING = 2;
+    /** Factor by which the excess stretch decays after each depth. */
+    private static final double DECAY = 0.7;
+
+    /** A manager for a search by a player with REMAINING milliseconds
+     *  left and INCREMENT milliseconds added per move, from a position
+     *  with EMPTY empty squares. */
+    TimeManager(long remaining, long increment, int empty) {
+        long usable = Math.max(0, remaining - OVERHEAD);
+        int movesLeft = Math.max(MIN_MOVES_LEFT, (empty + 1) / 2);
+        _hard = Math.max(1, (long) (usable * MAX_FRACTION));
+        _target = Math.max(1, Math.min(_hard,
+                                       usable / movesLeft
+                                       + increment * 3 / 4));
+        _stretch = 1.0;
+    }
+
+    /** Return the time in milliseconds after which the search must stop,
+     *  even in the middle of a depth. */
+    long hardMillis() {
+        return _hard;
+    }
+
+    /** Return the time in milliseconds that a search is expected to
+     *  take. */
+    long targetMillis() {
+        return _target;
+    }
+
+    /** Report that a search to the next depth, ending ELAPSED
+     *  milliseconds after the search began, found MOVE with value SCORE,
+     *  and return true iff the search should stop rather than go deeper.
+     *  It stops when the stretched target has passed, or when more than
+     *  half of it has, since the next depth would probably take longer
+     *  than all before it. */
+    boolean stop(Move move, int score, long elapsed) {
+        if (_move != null) {
+            _stretch = 1.0 + (_stretch - 1.0) * DECAY;
+            if (!move.equals(_move)) {
+                _stretch += MOVE_CHANGE;
+            }
+            if (Math.abs((long) score - _score) >= SWING) {
+                _stretch += SCORE_SWING;
+            }
+            _stretch = Math.min(MAX_STRETCH, _stretch);
+        }
+        _move = move;
+        _score = score;
+        return elapsed * 2 >= Math.min(_hard, _target * _stretch);
+    }
+
+    /** Limit on the time for the whole search. */
+    private final long _hard;
+    /** Expected time for the search. */
+    private final long _target;
+    /** Factor by which the target is currently stretched. */
+    private double _stretch;
+    /** Best move and value from the previous depth, if any. */
+    private Move _move;
+    /** Value from the previous depth. */
+    private int _score;
+}
@@ -0,0 +1,78 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+import java.io.PrintStream;
+
+/** Times the moves chosen by the AIs of one game and reports the times
+ *  and search speeds (the --timing option).  Each game has its own, so
+ *  that games played at once in one program (as by --batch) keep
+ *  separate totals.
+ *  @author Aayush Gupta
+ */
+class Timing {
+
+    /** A timer that reports on OUT if ENABLED, and otherwise does
+     *  nothing. */
+    Timing(boolean enabled, PrintStream out) {
+        _enabled = enabled;
+        _out = out;
+    }
+
+    /** Start timing an operation. */
+    void start() {
+        if (_enabled) {
+            _startTime = System.currentTimeMillis();
+        }
+    }
+
+    /** End the timing started with the last call to start(), in which
+     *  NODES positions were searched.  Report result if we are timing. */
+    void end(long nodes) {
+        if (_enabled) {
+            long time = System.currentTimeMillis() - _startTime;
+            _out.printf("[%d msec, %d nodes, %d nodes/sec]%n", time,
+                        nodes, nodes * 1000 / Math.max(1, time));
+            _maxTime = Math.max(_maxTime, time);
+            _totalTime += time;
+            _totalNodes += nodes;
+            _numTimedOps += 1;
+        }
+    }
+
+    /** Report total time statistics, if timing. */
+    void report() {
+        if (_enabled && _numTimedOps > 0) {
+            _out.printf("[Total time: %d msec for %d operations. "
+                        + "Avg: %d msec/operation. "
+                        + "Max: %d msec. "
+                        + "%d nodes/sec]%n", _totalTime,
+                        _numTimedOps, _totalTime / _numTimedOps,
+                        _maxTime,
+                        _totalNodes * 1000 / Math.max(1, _totalTime));
+        }
+    }
+
+    /** True iff timing. */
+    private final boolean _enabled;
+
+    /** Destination of reports. */
+    private final PrintStream _out;
+
+    /** Accumulated time. */
+    private long _totalTime;
+
+    /** Accumulated number of positions searched. */
+    private long _totalNodes;
+
+    /** Last start time. */
+    private long _startTime;
+
+    /** Number of operations timed. */
+    private int _numTimedOps;
+
+    /** Maximum operation time. */
+    private long _maxTime;
+}
@@ -0,0 +1,319 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import static ataxx.GameException.error;
+
+/** A fixed-size hash table of search results, indexed by position key.
+ *  Each entry records the depth to which a position was searched, its
+ *  value or a bound on it, and the best move found.  Callers use canonical
+ *  keys (Board.canonicalKey) and store moves transformed to the canonical
+ *  form of the position, so that one entry serves all images of a
+ *  position.
+ *
+ *  The table is direct-mapped: each key has a single slot, and storing
+ *  a result for a position always replaces an entry in its slot for a
+ *  different position.  A table is meant to live across searches:
+ *  entries from earlier moves remain usable until so replaced.  Each
+ *  search (see newSearch) marks the entries it stores with a generation
+ *  number.  Within a search, a result for a position does not replace a
+ *  deeper one for the same position, but a result from a later search
+ *  does, so that deep results from earlier moves, whose bounds may no
+ *  longer suit the current search, are not kept forever.
+ *
+ *  A table may also outlive the program.  Its contents are kept in a
+ *  buffer laid out exactly as a table file: a header giving the format
+ *  version, the table size, the current generation, and a CRC32 checksum
+ *  of the entries, followed by the entries themselves.  A table not
+ *  loaded from a file keeps this buffer on the heap, so that save needs
+ *  no conversion, but just writes the buffer out.  save writes a table
+ *  to a file, and load memory-maps one, so that the table is thereafter
+ *  updated in the file itself.  A mapped file is marked as being
+ *  modified until the table is next flushed, and a file so marked or
+ *  whose checksum is wrong is refused by load.
+ *  @author Aayush Gupta
+ */
+class TranspositionTable {
+
+    /** Log base 2 of the number of entries in a default-sized table. */
+    static final int DEFAULT_BITS = 18;
+
+    /** Bound type: the stored score is the exact value. */
+    static final int EXACT = 0;
+    /** Bound type: the value is at least the stored score. */
+    static final int LOWER = 1;
+    /** Bound type: the value is at most the stored score. */
+    static final int UPPER = 2;
+
+    /** A table with 2**BITS entries, kept in memory. */
+    TranspositionTable(int bits) {
+        this(ByteBuffer.allocate(HEADER_SIZE + (ENTRY_SIZE << bits)), bits,
+             null);
+        _buffer.putInt(MAGIC_OFFSET, MAGIC);
+        _buffer.putInt(VERSION_OFFSET, VERSION);
+        _buffer.putInt(BITS_OFFSET, bits);
+    }
+
+    /** A table with 2**BITS entries kept in BUFFER, which is laid out as
+     *  a table file and is mapped from the file named FILE, if FILE is
+     *  not null. */
+    private TranspositionTable(ByteBuffer buffer, int bits, String file) {
+        _buffer = buffer;
+        _entries = buffer.slice(HEADER_SIZE, ENTRY_SIZE << bits)
+            .asLongBuffer();
+        _mask = (1 << bits) - 1;
+        _file = file;
+        _generation = buffer.getInt(GENERATION_OFFSET);
+    }
+
+    /** Return the table in the file named NAME, which is memory-mapped so
+     *  that changes to the table are made to the file. */
+    static TranspositionTable load(String name) {
+        MappedByteBuffer buffer;
+        try (FileChannel chan =
+             FileChannel.open(Paths.get(name), StandardOpenOption.READ,
+                              StandardOpenOption.WRITE)) {
+            if (chan.size() < HEADER_SIZE || chan.size() > Integer.MAX_VALUE) {
+                throw error("%s is not a hash file", name);
+            }
+            buffer = chan.map(FileChannel.MapMode.READ_WRITE, 0, chan.size());
+        } catch (IOException excp) {
+            throw error("could not open hash file %s", name);
+        }
+        if (buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+            throw error("%s is not a hash file", name);
+        }
+        if (buffer.getInt(VERSION_OFFSET) != VERSION) {
+            throw error("%s has an unsupported hash file version", name);
+        }
+        int bits = buffer.getInt(BITS_OFFSET);
+        if (bits < 0 || bits > MAX_BITS
+            || buffer.limit() != HEADER_SIZE + (ENTRY_SIZE << bits)) {
+            throw error("hash file %s has the wrong size", name);
+        }
+        TranspositionTable table = new TranspositionTable(buffer, bits, name);
+        if (buffer.getInt(CLEAN_OFFSET) == 0
+            || buffer.getLong(CHECKSUM_OFFSET) != table.checksum()) {
+            throw error("hash file %s is damaged or was not saved", name);
+        }
+        table._clean = true;
+        return table;
+    }
+
+    /** Return the name of the file I am mapped from, or null if I am kept
+     *  only in memory. */
+    String file() {
+        return _file;
+    }
+
+    /** Write my contents to the file named NAME, in the form read by
+     *  load.  If NAME is the file I am mapped from, just make sure the
+     *  file is up to date. */
+    void save(String name) {
+        if (_file != null
+            && Paths.get(name).toAbsolutePath().normalize().equals(path())) {
+            flush();
+            return;
+        }
+        ByteBuffer contents = _buffer.duplicate();
+        contents.putInt(CLEAN_OFFSET, 1);
+        contents.putLong(CHECKSUM_OFFSET, checksum());
+        contents.clear();
+        try (FileChannel chan =
+             FileChannel.open(Paths.get(name), StandardOpenOption.WRITE,
+                              StandardOpenOption.CREATE,
+                              StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (contents.hasRemaining()) {
+                chan.write(contents);
+            }
+        } catch (IOException excp) {
+            throw error("could not write hash file %s", name);
+        }
+        if (_file != null) {
+            _buffer.putInt(CLEAN_OFFSET, _clean ? 1 : 0);
+        }
+    }
+
+    /** If I am mapped from a file, bring the file up to date and mark it
+     *  as complete.  The next change marks it as modified again. */
+    void flush() {
+        if (_file == null || _clean) {
+            return;
+        }
+        MappedByteBuffer mapped = (MappedByteBuffer) _buffer;
+        mapped.putLong(CHECKSUM_OFFSET, checksum());
+        mapped.putInt(CLEAN_OFFSET, 1);
+        mapped.force();
+        _clean = true;
+    }
+
+    /** Note that my contents are about to change, marking my file (if
+     *  any) as modified if it was complete. */
+    private void modify() {
+        if (_clean) {
+            _clean = false;
+            _buffer.putInt(CLEAN_OFFSET, 0);
+            ((MappedByteBuffer) _buffer).force();
+        }
+    }
+
+    /** Return the absolute path of the file I am mapped from. */
+    private Path path() {
+        return Paths.get(_file).toAbsolutePath().normalize();
+    }
+
+    /** Return the checksum of my entries. */
+    private long checksum() {
+        CRC32 crc = new CRC32();
+        crc.update(_buffer.slice(HEADER_SIZE,
+                                 _buffer.limit() - HEADER_SIZE));
+        return crc.getValue();
+    }
+
+    /** Remove all entries. */
+    void clear() {
+        modify();
+        for (int i = 0; i < _entries.limit(); i += 1) {
+            _entries.put(i, 0);
+        }
+        setGeneration(0);
+    }
+
+    /** Start a new search, so that entries stored by previous searches
+     *  may be replaced by shallower ones. */
+    void newSearch() {
+        setGeneration((_generation + 1) & GENERATION_MASK);
+    }
+
+    /** Set the current generation to GENERATION. */
+    private void setGeneration(int generation) {
+        modify();
+        _generation = generation;
+        _buffer.putInt(GENERATION_OFFSET, generation);
+    }
+
+    /** Return the slot holding the entry for KEY, or -1 if there is
+     *  none. */
+    int find(long key) {
+        int slot = (int) key & _mask;
+        if (key(slot) == key && data(slot) != 0) {
+            return slot;
+        }
+        return -1;
+    }
+
+    /** Return the key stored in SLOT. */
+    private long key(int slot) {
+        return _entries.get(2 * slot);
+    }
+
+    /** Return the packed data stored in SLOT. */
+    private long data(int slot) {
+        return _entries.get(2 * slot + 1);
+    }
+
+    /** Return the score stored in SLOT. */
+    int score(int slot) {
+        return (int) data(slot);
+    }
+
+    /** Return the depth stored in SLOT. */
+    int depth(int slot) {
+        return (int) (data(slot) >>> DEPTH_SHIFT) & DEPTH_MASK;
+    }
+
+    /** Return the bound type (EXACT, LOWER, or UPPER) stored in SLOT. */
+    int bound(int slot) {
+        return (int) (data(slot) >>> BOUND_SHIFT) & BOUND_MASK;
+    }
+
+    /** Return the move stored in SLOT. */
+    Move move(int slot) {
+        return Move.fromCode((int) (data(slot) >>> MOVE_SHIFT) & MOVE_MASK);
+    }
+
+    /** Return the generation of the search that stored SLOT. */
+    private int generation(int slot) {
+        return (int) (data(slot) >>> GENERATION_SHIFT) & GENERATION_MASK;
+    }
+
+    /** Record that the position with key KEY, searched to DEPTH, has a
+     *  value related to SCORE as indicated by BOUND, and that MOVE was
+     *  the best move found.  Replaces any entry for a different position
+     *  in the same slot, and any shallower entry for the same one or one
+     *  stored by an earlier search. */
+    void store(long key, int depth, int bound, int score, Move move) {
+        int slot = (int) key & _mask;
+        if (key(slot) == key && data(slot) != 0 && depth(slot) > depth
+            && generation(slot) == _generation) {
+            return;
+        }
+        modify();
+        _entries.put(2 * slot, key);
+        _entries.put(2 * slot + 1, (score & SCORE_MASK)
+                     | ((long) depth << DEPTH_SHIFT)
+                     | ((long) bound << BOUND_SHIFT)
+                     | ((long) move.code() << MOVE_SHIFT)
+                     | ((long) _generation << GENERATION_SHIFT)
+                     | VALID);
+    }
+
+    /** Identifies a hash file ("ATXT"). */
+    private static final int MAGIC = 0x41545854;
+    /** Current hash file format version.  Must change whenever the
+     *  layout of entries or the computation of keys changes. */
+    private static final int VERSION = 1;
+    /** Byte offsets of the fields of the header: magic number, version,
+     *  log base 2 of the number of entries, generation, nonzero iff the
+     *  checksum is up to date, and checksum of the entries. */
+    private static final int MAGIC_OFFSET = 0, VERSION_OFFSET = 4,
+        BITS_OFFSET = 8, GENERATION_OFFSET = 12, CLEAN_OFFSET = 16,
+        CHECKSUM_OFFSET = 24;
+    /** Size of the header in bytes. */
+    private static final int HEADER_SIZE = 32;
+    /** Size of an entry (key and packed data) in bytes. */
+    private static final int ENTRY_SIZE = 16;
+    /** Largest log base 2 of the number of entries that fits in a
+     *  buffer. */
+    private static final int MAX_BITS = 26;
+
+    /** Mask for the score field. */
+    private static final long SCORE_MASK = 0xffffffffL;
+    /** Position and width of the depth field. */
+    private static final int DEPTH_SHIFT = 32, DEPTH_MASK = 0xff;
+    /** Position and width of the bound field. */
+    private static final int BOUND_SHIFT = 40, BOUND_MASK = 0x3;
+    /** Position and width of the move-code field. */
+    private static final int MOVE_SHIFT = 42, MOVE_MASK = 0xffff;
+    /** Position and width of the generation field. */
+    private static final int GENERATION_SHIFT = 58, GENERATION_MASK = 0x1f;
+    /** Bit set in all occupied entries. */
+    private static final long VALID = 1L << 63;
+
+    /** Header and entries, laid out as in a table file. */
+    private final ByteBuffer _buffer;
+    /** The entries: the key of slot S is at index 2S, and its packed
+     *  score, depth, bound, move code, and generation at 2S + 1. */
+    private final LongBuffer _entries;
+    /** Mask selecting a slot from a key. */
+    private final int _mask;
+    /** Name of the file I am mapped from, or null. */
+    private final String _file;
+    /** Generation of the current search. */
+    private int _generation;
+    /** True iff I am mapped from a file and have not changed since it
+     *  was last marked complete. */
+    private boolean _clean;
+}
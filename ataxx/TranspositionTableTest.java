@@ -0,0 +1,189 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/** Tests of the TranspositionTable class, and of its hash files in
+ *  particular.
+ *  @author Aayush Gupta
+ */
+public class TranspositionTableTest {
+
+    /** Log base 2 of the number of entries in the tables tested. */
+    private static final int BITS = 8;
+    /** Byte offsets in a hash file of the version, the flag marking the
+     *  file complete, and the entries. */
+    private static final int VERSION_OFFSET = 4, CLEAN_OFFSET = 16,
+        HEADER_SIZE = 32;
+    /** Keys stored in the tables tested, which fall in distinct slots. */
+    private static final long[] KEYS = {
+        0x123456789abcdef0L, 0x0fedcba987654301L, 0x5555aaaa5555aa02L,
+    };
+    /** Moves stored with KEYS. */
+    private static final String[] MOVES = { "a7-b6", "g1-e3", "-" };
+
+    /** Return a table holding an entry for each of KEYS. */
+    private static TranspositionTable filled() {
+        TranspositionTable table = new TranspositionTable(BITS);
+        table.newSearch();
+        for (int k = 0; k < KEYS.length; k += 1) {
+            table.store(KEYS[k], k + 1, k % 3, 100 * k - 150,
+                        Move.move(MOVES[k]));
+        }
+        return table;
+    }
+
+    /** Check that TABLE holds the entries stored by filled(). */
+    private static void checkFilled(TranspositionTable table) {
+        for (int k = 0; k < KEYS.length; k += 1) {
+            int slot = table.find(KEYS[k]);
+            assertTrue("entry " + k, slot >= 0);
+            assertEquals(k + 1, table.depth(slot));
+            assertEquals(k % 3, table.bound(slot));
+            assertEquals(100 * k - 150, table.score(slot));
+            assertEquals(Move.move(MOVES[k]), table.move(slot));
+        }
+        assertEquals("no entry for others", -1, table.find(KEYS[0] + 1));
+    }
+
+    /** Check that load refuses the hash file FILE with a message
+     *  containing REASON. */
+    private static void checkRefused(Path file, String reason) {
+        try {
+            TranspositionTable.load(file.toString());
+            fail("loaded " + reason);
+        } catch (GameException excp) {
+            assertTrue(excp.getMessage(),
+                       excp.getMessage().contains(reason));
+        }
+    }
+
+    /** Write the int VALUE at byte POS of FILE. */
+    private static void putInt(Path file, long pos, int value)
+        throws IOException {
+        try (RandomAccessFile out = new RandomAccessFile(file.toFile(),
+                                                         "rw")) {
+            out.seek(pos);
+            out.writeInt(value);
+        }
+    }
+
+    /** Flip the bits of the byte at POS of FILE. */
+    private static void flipByte(Path file, long pos) throws IOException {
+        try (RandomAccessFile out = new RandomAccessFile(file.toFile(),
+                                                         "rw")) {
+            out.seek(pos);
+            int b = out.read();
+            out.seek(pos);
+            out.write(~b);
+        }
+    }
+
+    @Test
+    public void testMemory() {
+        TranspositionTable table = filled();
+        assertNull("kept in memory", table.file());
+        checkFilled(table);
+        table.store(KEYS[1], 1, TranspositionTable.EXACT, 0, Move.pass());
+        assertEquals("shallower result kept out", 2,
+                     table.depth(table.find(KEYS[1])));
+        table.newSearch();
+        table.store(KEYS[1], 1, TranspositionTable.EXACT, 0, Move.pass());
+        assertEquals("replaced by a later search", 1,
+                     table.depth(table.find(KEYS[1])));
+        table.clear();
+        assertEquals(-1, table.find(KEYS[0]));
+    }
+
+    @Test
+    public void testSaveLoad() throws IOException {
+        Path file = Files.createTempFile("table", ".hash");
+        try {
+            filled().save(file.toString());
+            assertEquals(HEADER_SIZE + (16 << BITS), Files.size(file));
+            TranspositionTable table =
+                TranspositionTable.load(file.toString());
+            assertEquals(file.toString(), table.file());
+            checkFilled(table);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testDamaged() throws IOException {
+        Path file = Files.createTempFile("table", ".hash");
+        try {
+            filled().save(file.toString());
+            flipByte(file, HEADER_SIZE + 16 * (KEYS[0] & 0xff) + 3);
+            checkRefused(file, "damaged");
+            flipByte(file, HEADER_SIZE + 16 * (KEYS[0] & 0xff) + 3);
+            checkFilled(TranspositionTable.load(file.toString()));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testUnflushed() throws IOException {
+        Path file = Files.createTempFile("table", ".hash");
+        try {
+            new TranspositionTable(BITS).save(file.toString());
+            TranspositionTable table =
+                TranspositionTable.load(file.toString());
+            table.newSearch();
+            for (int k = 0; k < KEYS.length; k += 1) {
+                table.store(KEYS[k], k + 1, k % 3, 100 * k - 150,
+                            Move.move(MOVES[k]));
+            }
+            checkRefused(file, "not saved");
+            table.flush();
+            checkFilled(TranspositionTable.load(file.toString()));
+            table.store(KEYS[0] + 1, 1, TranspositionTable.EXACT, 0,
+                        Move.pass());
+            checkRefused(file, "not saved");
+            table.save(file.toString());
+            assertTrue(TranspositionTable.load(file.toString())
+                       .find(KEYS[0] + 1) >= 0);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testHeader() throws IOException {
+        Path file = Files.createTempFile("table", ".hash");
+        try {
+            filled().save(file.toString());
+            putInt(file, VERSION_OFFSET, 2);
+            checkRefused(file, "unsupported hash file version");
+            putInt(file, VERSION_OFFSET, 1);
+            putInt(file, CLEAN_OFFSET, 0);
+            checkRefused(file, "not saved");
+            putInt(file, CLEAN_OFFSET, 1);
+            putInt(file, 0, 0);
+            checkRefused(file, "not a hash file");
+            filled().save(file.toString());
+            try (RandomAccessFile out =
+                 new RandomAccessFile(file.toFile(), "rw")) {
+                out.setLength(out.length() - 16);
+            }
+            checkRefused(file, "wrong size");
+            Files.write(file, new byte[HEADER_SIZE - 1]);
+            checkRefused(file, "not a hash file");
+        } finally {
+            Files.delete(file);
+        }
+        checkRefused(file, "could not open");
+    }
+}
@@ -15,7 +15,13 @@ public class UnitTest {
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
         textui.runClasses(CommandTest.class, MoveTest.class,
-                          BoardTest.class);
+                          BoardTest.class, ClockTest.class,
+                          SuiteTest.class, PublisherTest.class,
+                          BroadcasterTest.class, SymmetryTest.class,
+                          MoveServiceTest.class, GameTest.class,
+                          ReplayerTest.class, DataGenTest.class,
+                          TranspositionTableTest.class, AnalyzerTest.class,
+                          OpeningIndexTest.class);
     }
 
 }
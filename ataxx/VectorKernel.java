@@ -0,0 +1,201 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/** A Kernel that uses the SIMD operations of the jdk.incubator.vector
+ *  module.  Only Kernel.get refers to this class, and only by name, so
+ *  that the program still runs (with the scalar kernel) when the module
+ *  is not present.  Elements left over after the last full vector are
+ *  handled by ordinary loops.
+ *  @author Aayush Gupta
+ */
+class VectorKernel extends Kernel {
+
+    /** Vectors of 16-bit values for element-wise operations. */
+    private static final VectorSpecies<Short> SHORTS =
+        ShortVector.SPECIES_PREFERRED;
+    /** Vectors of 32-bit values for accumulating products. */
+    private static final VectorSpecies<Integer> INTS =
+        IntVector.SPECIES_PREFERRED;
+    /** Vectors of 16-bit values with as many lanes as INTS, for
+     *  widening to INTS. */
+    private static final VectorSpecies<Short> NARROW_SHORTS =
+        VectorSpecies.of(short.class,
+                         VectorShape.forBitSize(INTS.vectorBitSize() / 2));
+    /** Vectors of bit sets. */
+    private static final VectorSpecies<Long> LONGS =
+        LongVector.SPECIES_PREFERRED;
+    /** Vectors of 32-bit values with as many lanes as LONGS, for
+     *  narrowing LONGS. */
+    private static final VectorSpecies<Integer> NARROW_INTS =
+        VectorSpecies.of(int.class,
+                         VectorShape.forBitSize(LONGS.vectorBitSize() / 2));
+
+    @Override
+    String name() {
+        return "vector (" + SHORTS.vectorBitSize() + " bits)";
+    }
+
+    @Override
+    void add(short[] acc, short[] weights, int offset) {
+        int n = acc.length, i;
+        for (i = 0; i < SHORTS.loopBound(n); i += SHORTS.length()) {
+            ShortVector.fromArray(SHORTS, acc, i)
+                .add(ShortVector.fromArray(SHORTS, weights, offset + i))
+                .intoArray(acc, i);
+        }
+        for (; i < n; i += 1) {
+            acc[i] += weights[offset + i];
+        }
+    }
+
+    @Override
+    void sub(short[] acc, short[] weights, int offset) {
+        int n = acc.length, i;
+        for (i = 0; i < SHORTS.loopBound(n); i += SHORTS.length()) {
+            ShortVector.fromArray(SHORTS, acc, i)
+                .sub(ShortVector.fromArray(SHORTS, weights, offset + i))
+                .intoArray(acc, i);
+        }
+        for (; i < n; i += 1) {
+            acc[i] -= weights[offset + i];
+        }
+    }
+
+    @Override
+    void activate(short[] in, short[] out) {
+        int n = out.length, i;
+        for (i = 0; i < SHORTS.loopBound(n); i += SHORTS.length()) {
+            ShortVector.fromArray(SHORTS, in, i)
+                .max((short) 0).min((short) ACTIVATION_MAX)
+                .intoArray(out, i);
+        }
+        for (; i < n; i += 1) {
+            out[i] = (short) Math.min(Math.max(in[i], 0), ACTIVATION_MAX);
+        }
+    }
+
+    @Override
+    int dot(short[] x, short[] weights, int offset) {
+        int n = x.length, i;
+        IntVector sum = IntVector.zero(INTS);
+        for (i = 0; i < INTS.loopBound(n); i += INTS.length()) {
+            IntVector a = (IntVector) ShortVector.fromArray(NARROW_SHORTS, x, i)
+                .convertShape(VectorOperators.S2I, INTS, 0);
+            IntVector b = (IntVector)
+                ShortVector.fromArray(NARROW_SHORTS, weights, offset + i)
+                .convertShape(VectorOperators.S2I, INTS, 0);
+            sum = sum.add(a.mul(b));
+        }
+        int result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i += 1) {
+            result += x[i] * weights[offset + i];
+        }
+        return result;
+    }
+
+    @Override
+    void features(long[] red, long[] blue, long[] blocks, int from, int to,
+                  int[] out, int stride, long[][] scratch) {
+        int end = from + LONGS.loopBound(to - from);
+        long[] empty = scratch[0], near = scratch[1], sets = scratch[2];
+        count(red, from, end, out, PositionBatch.RED_PIECES * stride);
+        count(blue, from, end, out, PositionBatch.BLUE_PIECES * stride);
+        empty(red, blue, blocks, from, end, empty);
+        grow(red, from, end, sets);
+        grow(sets, from, end, sets);
+        and(sets, empty, from, end, sets);
+        count(sets, from, end, out, PositionBatch.RED_MOBILITY * stride);
+        grow(blue, from, end, sets);
+        grow(sets, from, end, sets);
+        and(sets, empty, from, end, sets);
+        count(sets, from, end, out, PositionBatch.BLUE_MOBILITY * stride);
+        grow(empty, from, end, near);
+        and(red, near, from, end, sets);
+        count(sets, from, end, out, PositionBatch.RED_FRONTIER * stride);
+        and(blue, near, from, end, sets);
+        count(sets, from, end, out, PositionBatch.BLUE_FRONTIER * stride);
+        super.features(red, blue, blocks, end, to, out, stride, scratch);
+    }
+
+    /* The features are computed by a sequence of small loops over arrays
+     * of bit sets, none of which calls a method that takes or returns a
+     * vector.  The JIT compiler gives up inlining into a method that
+     * grows too large, and a vector passed to or from a method that is
+     * not inlined must be allocated as an object, which is slower than
+     * scalar code.  In each loop below, FROM .. TO-1 are the indices of
+     * the sets to process, and TO - FROM is a multiple of the vector
+     * length. */
+
+    /** Set OUT[START + i] to the number of squares in SETS[i], for FROM
+     *  <= i < TO.  (This version of the vector API has no population
+     *  count operation, so this counts bits in parallel within each
+     *  lane.) */
+    private static void count(long[] sets, int from, int to, int[] out,
+                              int start) {
+        for (int i = from; i < to; i += LONGS.length()) {
+            LongVector x = LongVector.fromArray(LONGS, sets, i);
+            x = x.sub(x.lanewise(VectorOperators.LSHR, 1)
+                      .and(0x5555_5555_5555_5555L));
+            x = x.and(0x3333_3333_3333_3333L)
+                .add(x.lanewise(VectorOperators.LSHR, 2)
+                     .and(0x3333_3333_3333_3333L));
+            x = x.add(x.lanewise(VectorOperators.LSHR, 4))
+                .and(0x0f0f_0f0f_0f0f_0f0fL);
+            x.mul(0x0101_0101_0101_0101L)
+                .lanewise(VectorOperators.LSHR, 56)
+                .convertShape(VectorOperators.L2I, NARROW_INTS, 0)
+                .reinterpretAsInts().intoArray(out, start + i);
+        }
+    }
+
+    /** Set OUT[i] to the set of empty squares in the position with red
+     *  pieces RED[i], blue pieces BLUE[i], and blocks BLOCKS[i], for FROM
+     *  <= i < TO. */
+    private static void empty(long[] red, long[] blue, long[] blocks,
+                              int from, int to, long[] out) {
+        for (int i = from; i < to; i += LONGS.length()) {
+            LongVector.fromArray(LONGS, red, i)
+                .or(LongVector.fromArray(LONGS, blue, i))
+                .or(LongVector.fromArray(LONGS, blocks, i))
+                .not().and(BitBoard.ALL)
+                .intoArray(out, i);
+        }
+    }
+
+    /** Set OUT[i] to BitBoard.grow(SETS[i]), for FROM <= i < TO. */
+    private static void grow(long[] sets, int from, int to, long[] out) {
+        for (int i = from; i < to; i += LONGS.length()) {
+            LongVector x = LongVector.fromArray(LONGS, sets, i);
+            LongVector horiz =
+                x.or(x.lanewise(VectorOperators.LSHL, 1)
+                     .and(BitBoard.NOT_FIRST_COL))
+                .or(x.lanewise(VectorOperators.LSHR, 1)
+                    .and(BitBoard.NOT_LAST_COL));
+            horiz.or(horiz.lanewise(VectorOperators.LSHL, Board.SIDE))
+                .or(horiz.lanewise(VectorOperators.LSHR, Board.SIDE))
+                .and(BitBoard.ALL)
+                .intoArray(out, i);
+        }
+    }
+
+    /** Set OUT[i] to the intersection of A[i] and B[i], for FROM <= i <
+     *  TO. */
+    private static void and(long[] a, long[] b, int from, int to,
+                            long[] out) {
+        for (int i = from; i < to; i += LONGS.length()) {
+            LongVector.fromArray(LONGS, a, i)
+                .and(LongVector.fromArray(LONGS, b, i))
+                .intoArray(out, i);
+        }
+    }
+}
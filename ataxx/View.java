@@ -4,11 +4,28 @@
 
 package ataxx;
 
+import java.util.concurrent.Executor;
+
 /** An updateable view of an Ataxx board.
  *  @author P. N. Hilfinger */
 interface View {
 
-    /** Update the current view of the game according to BOARD. */
-    void update(Board board);
+    /** Update the current view of the game according to POSITION, a
+     *  snapshot of its board, which the view may keep and read from any
+     *  thread. */
+    void update(Snapshot position);
+
+    /** Return the Executor on which update is to be called.  By default,
+     *  update is called directly by the thread changing the board. */
+    default Executor executor() {
+        return Runnable::run;
+    }
+
+    /** Return the minimum time in milliseconds between calls to update.
+     *  Changes made in between are combined, so that update sees only
+     *  the latest position.  By default, update sees every change. */
+    default long frameMillis() {
+        return 0;
+    }
 
 }
@@ -0,0 +1,76 @@
+/* Skeleton code copyright (C) 2008, 2022 Paul N. Hilfinger and the
+ * Regents of the University of California.  Do not distribute this or any
+ * derivative work without permission. */
+
+package ataxx;
+
+import static ataxx.PieceColor.*;
+
+/** Warms up the Java runtime for searching (the warmup command and the
+ *  --warmup option).  A freshly started program runs the search
+ *  interpreted until the runtime has compiled it, so that an AI's first
+ *  move is much slower than later ones.  A warm-up searches the
+ *  benchmark positions (see Bench) over and over on a background thread,
+ *  using an AI and transposition table of its own, so that it does not
+ *  change any game's play, until the search speed stops rising (two
+ *  successive rounds differ by less than TOLERANCE) or its time runs out,
+ *  and then reports the speed reached.
+ *  @author Aayush Gupta
+ */
+class Warmup {
+
+    /** Default time limit in milliseconds. */
+    static final long DEFAULT_MILLIS = 2000;
+    /** Depth of each search. */
+    private static final int DEPTH = 3;
+    /** Fraction by which the search speeds of successive rounds may
+     *  differ once speed is steady. */
+    private static final double TOLERANCE = 0.1;
+    /** Seed for the AI's random-number generator. */
+    private static final long SEED = 0;
+
+    /** Start warming up for at most MILLIS milliseconds on a background
+     *  thread, reporting the result to REPORTER. */
+    static void start(long millis, Reporter reporter) {
+        Thread thread = new Thread(() -> run(millis, reporter), "warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Warm up for at most MILLIS milliseconds, as described above,
+     *  reporting the result to REPORTER. */
+    static void run(long millis, Reporter reporter) {
+        Game game = new Game(null, (b) -> { }, reporter, false);
+        AI ai = new AI(game, RED, SEED);
+        Board[] positions = Bench.positions();
+        long start = System.nanoTime();
+        long deadline = start + millis * 1_000_000;
+        long rate = 0;
+        int rounds = 0;
+        boolean steady = false;
+        while (!steady && System.nanoTime() - deadline < 0) {
+            long nodes = 0;
+            long roundStart = System.nanoTime();
+            for (Board board : positions) {
+                game.table().clear();
+                ai.reseed(SEED);
+                ai.findMove(board, DEPTH);
+                nodes += ai.nodes();
+            }
+            long nanos = Math.max(1, System.nanoTime() - roundStart);
+            long previous = rate;
+            rate = nodes * 1_000_000_000L / nanos;
+            rounds += 1;
+            steady = Math.abs(rate - previous) < TOLERANCE * previous;
+            Utils.debug(1, "[warmup] round %d: %d nodes/sec", rounds, rate);
+        }
+        long msec = (System.nanoTime() - start) / 1_000_000;
+        if (steady) {
+            reporter.msg("[warmup] steady at %d nodes/sec after %d rounds, "
+                         + "%d msec", rate, rounds, msec);
+        } else {
+            reporter.msg("[warmup] not yet steady after %d rounds, %d msec: "
+                         + "%d nodes/sec", rounds, msec, rate);
+        }
+    }
+}